@@ -0,0 +1,75 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+/**
+ * The application's beans wired by hand, without Spring or a network.
+ */
+final class BenchmarkFixtures {
+
+    static final Duration SESSION_TIMEOUT = Duration.ofMinutes(30);
+    static final Duration EXPIRY_TICK = Duration.ofSeconds(5);
+
+    private BenchmarkFixtures() {}
+
+    /**
+     * The controllers still report progress on System.out; keep it out of the results.
+     */
+    static void silenceStdout() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    static KeyController keyController() {
+        // No keystore, no spares, no rotation: just the one key
+        return new KeyController(new RsaKeyRing(null, null, 0, Duration.ZERO, Duration.ZERO, Duration.ZERO, System::currentTimeMillis));
+    }
+
+    static SessionService sessionService() {
+        return new SessionService(SESSION_TIMEOUT, EXPIRY_TICK, System::currentTimeMillis, false);
+    }
+
+    static CustomerController customerController(SessionController sessionController) {
+        try {
+            PdfCache cache = new PdfCache(true, DataSize.ofMegabytes(64), DataSize.ofMegabytes(16), Duration.ofMinutes(10),
+                    false, System.getProperty("java.io.tmpdir"), DataSize.ofMegabytes(0), "");
+            DocumentMetadataIndex metadata = new DocumentMetadataIndex(Duration.ofMinutes(30), Duration.ofMinutes(1), 100_000);
+            return new CustomerController(sessionController, new LaserFicheClient(new RestTemplate()), cache, metadata,
+                    laserFicheGuard(), new PdfMemoryBudget(DataSize.ofMegabytes(256), DataSize.ofMegabytes(2), 100,
+                            Duration.ofSeconds(2)), new StaticListableBeanFactory().getBeanProvider(LaserFicheAsyncClient.class),
+                    new StaticListableBeanFactory().getBeanProvider(PdfPrefetcher.class),
+                    new StaticListableBeanFactory().getBeanProvider(PdfSendfileStore.class),
+                    new SimpleMeterRegistry());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static LaserFicheGuard laserFicheGuard() {
+        return new LaserFicheGuard(10, 1, 50, 100, Duration.ofSeconds(2), Duration.ofSeconds(5), 0.9, 20, 10, 0.5,
+                Duration.ofSeconds(30), System::currentTimeMillis);
+    }
+
+    /**
+     * One of the sample documents in the application's {@code pdfs/} resources.
+     */
+    static byte[] samplePdf(String name) {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream("/pdfs/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No sample PDF " + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
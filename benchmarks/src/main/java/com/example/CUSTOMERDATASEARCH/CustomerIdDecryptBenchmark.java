@@ -0,0 +1,87 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Customer-ID decryption as done on every API call: the original
+ * per-call Cipher lookup and copies against {@link CustomerIdDecryptor},
+ * directly and through {@code CustomerController.decryptCustomerId}.
+ *
+ * Run with {@code -prof gc} to see the allocation rate per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CustomerIdDecryptBenchmark {
+
+    private SecretKey key;
+    private String encryptedId;
+    private CustomerIdDecryptor decryptor;
+    private CustomerController controller;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(256);
+        key = generator.generateKey();
+        decryptor = new CustomerIdDecryptor();
+        BenchmarkFixtures.silenceStdout();
+        controller = BenchmarkFixtures.customerController(new SessionController(BenchmarkFixtures.keyController(),
+                BenchmarkFixtures.sessionService()));
+
+        byte[] iv = new byte[12];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        byte[] cipherText = cipher.doFinal("1234567".getBytes(StandardCharsets.UTF_8));
+        byte[] combined = new byte[iv.length + cipherText.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(cipherText, 0, combined, iv.length, cipherText.length);
+        encryptedId = Base64.getUrlEncoder().withoutPadding().encodeToString(combined);
+    }
+
+    @Benchmark
+    public int original() throws Exception {
+        // CustomerController.decryptCustomerId before the pooled decryptor
+        byte[] combined = Base64.getUrlDecoder().decode(encryptedId);
+        byte[] iv = Arrays.copyOfRange(combined, 0, 12);
+        byte[] cipherText = Arrays.copyOfRange(combined, 12, combined.length);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        byte[] plainBytes = cipher.doFinal(cipherText);
+        return Integer.parseInt(new String(plainBytes, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public int pooled() throws Exception {
+        return decryptor.decrypt(encryptedId, key);
+    }
+
+    @Benchmark
+    public int controller() {
+        return controller.decryptCustomerId(encryptedId, key);
+    }
+}
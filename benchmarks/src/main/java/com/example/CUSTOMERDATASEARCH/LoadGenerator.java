@@ -0,0 +1,522 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToLongFunction;
+
+/**
+ * End-to-end load against the service, the way the browser drives it: fetch
+ * the RSA public key, start a session with an RSA-OAEP wrapped AES key, then
+ * for each document encrypt a customer ID and call {@code /info} and
+ * {@code /download}. Each of {@code --users} virtual users runs that loop
+ * back to back for {@code --duration}, starting a new session every
+ * {@code --downloads-per-session} documents. Requests in the first
+ * {@code --warmup} are not counted.
+ *
+ * Throughput and latency percentiles are printed per step and, with
+ * {@code --json=FILE}, written as JSON for comparison between releases.
+ * In-process runs also report the JVM's CPU time (in total and on Tomcat's
+ * threads), GC time and heap allocation per GB of documents downloaded.
+ *
+ * Without {@code --target} the service is started in-process against a
+ * {@link MockLaserFiche} (configured with the mock's own options), and
+ * {@code --name.with.dots=value} options are passed to it as properties:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.example.CUSTOMERDATASEARCH.LoadGenerator \
+ *     --users=100 --duration=60s --latency=300ms --pdf.download.async.enabled=true
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    static final String KEYS = "keys";
+    static final String SESSION = "session";
+    static final String INFO = "info";
+    static final String DOWNLOAD = "download";
+    static final String CLOSE = "close";
+
+    private static final List<String> STEPS = List.of(KEYS, SESSION, INFO, DOWNLOAD, CLOSE);
+
+    private final String baseUrl;
+    private final int users;
+    private final Duration duration;
+    private final Duration warmup;
+    private final int customerIds;
+    private final int downloadsPerSession;
+    private final boolean info;
+    private final boolean measureProcess;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private volatile long countFrom;
+    private volatile long stopAt;
+
+    LoadGenerator(String baseUrl, int users, Duration duration, Duration warmup, int customerIds,
+                  int downloadsPerSession, boolean info, boolean measureProcess) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.users = users;
+        this.duration = duration;
+        this.warmup = warmup;
+        this.customerIds = customerIds;
+        this.downloadsPerSession = Math.max(1, downloadsPerSession);
+        this.info = info;
+        this.measureProcess = measureProcess;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        PrintStream console = System.out;
+        MockLaserFiche mock = null;
+        ConfigurableApplicationContext service = null;
+        try {
+            String target = options.getString("target", null);
+            if (target == null) {
+                mock = options.startMock(0);
+                // The service logs every session to stdout
+                BenchmarkFixtures.silenceStdout();
+                service = startService(mock, options.getApplicationArgs());
+                int port = ((ServletWebServerApplicationContext) service).getWebServer().getPort();
+                target = "http://127.0.0.1:" + port + "/customerdatasearch";
+            }
+
+            LoadGenerator generator = new LoadGenerator(target,
+                    options.getInt("users", 50),
+                    options.getDuration("duration", Duration.ofSeconds(60)),
+                    options.getDuration("warmup", Duration.ofSeconds(10)),
+                    options.getInt("ids", 1000),
+                    options.getInt("downloads-per-session", 10),
+                    options.getBoolean("info", true),
+                    service != null);
+            console.printf("Driving %s with %d users for %s (+%s warm-up)%n",
+                    target, generator.users, generator.duration, generator.warmup);
+            Map<String, Object> report = generator.run();
+            if (mock != null) {
+                report.put("mock", mock.getCounts());
+            }
+
+            print(console, report);
+            String json = options.getString("json", null);
+            if (json != null) {
+                new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(new File(json), report);
+                console.println("Results written to " + json);
+            }
+        } finally {
+            if (service != null) {
+                service.close();
+            }
+            if (mock != null) {
+                mock.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startService(MockLaserFiche mock, List<String> applicationArgs) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.com.example.CUSTOMERDATASEARCH", "WARN");
+        properties.put("laserfiche.api.url", mock.getUrl());
+        // Only used with --pdf.sendfile.enabled=true, which needs a directory set
+        properties.put("pdf.sendfile.dir", Path.of(System.getProperty("java.io.tmpdir"),
+                "loadgen-pdf-sendfile-" + ProcessHandle.current().pid()).toString());
+        // Command-line arguments so they win over application.properties; the user's win over ours
+        for (String arg : applicationArgs) {
+            int equals = arg.indexOf('=');
+            properties.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        String[] args = properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(CustomerdatasearchApplication.class).run(args);
+    }
+
+    /**
+     * Run the users to completion and summarise what they recorded.
+     */
+    Map<String, Object> run() throws Exception {
+        long start = System.nanoTime();
+        countFrom = start + warmup.toNanos();
+        stopAt = countFrom + duration.toNanos();
+
+        List<Recorder> recorders = new ArrayList<>();
+        ProcessSample measured;
+        List<Future<?>> running = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < users; i++) {
+                Recorder recorder = new Recorder();
+                recorders.add(recorder);
+                running.add(executor.submit(() -> {
+                    runUser(recorder);
+                    return null;
+                }));
+            }
+            ProcessSample before = null;
+            ProcessSample after = null;
+            if (measureProcess) {
+                sleepUntil(countFrom);
+                before = ProcessSample.now();
+                sleepUntil(stopAt);
+                after = ProcessSample.now();
+            }
+            for (Future<?> user : running) {
+                user.get();
+            }
+            measured = before != null ? after.minus(before) : null;
+        }
+        double seconds = duration.toNanos() / 1e9;
+
+        Map<String, Object> steps = new LinkedHashMap<>();
+        for (String step : STEPS) {
+            LongList latencies = new LongList();
+            long errors = 0;
+            long bytes = 0;
+            for (Recorder recorder : recorders) {
+                latencies.addAll(recorder.latencies.get(step));
+                errors += recorder.errors.getOrDefault(step, 0L);
+                bytes += recorder.bytes.getOrDefault(step, 0L);
+            }
+            if (latencies.size == 0 && errors == 0) {
+                continue;
+            }
+            steps.put(step, summarise(latencies, errors, bytes, seconds));
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("target", baseUrl);
+        config.put("users", users);
+        config.put("durationSeconds", seconds);
+        config.put("warmupSeconds", warmup.toNanos() / 1e9);
+        config.put("customerIds", customerIds);
+        config.put("downloadsPerSession", downloadsPerSession);
+        config.put("info", info);
+        report.put("config", config);
+        report.put("steps", steps);
+        if (measured != null && steps.get(DOWNLOAD) instanceof Map<?, ?> downloads) {
+            report.put("process", perGigabyte(measured, (Long) downloads.get("bytes")));
+        }
+        return report;
+    }
+
+    private static void sleepUntil(long nanoTime) throws InterruptedException {
+        long remaining = nanoTime - System.nanoTime();
+        if (remaining > 0) {
+            Thread.sleep(Duration.ofNanos(remaining));
+        }
+    }
+
+    /**
+     * What the whole process (service and load generator alike) spent per GB of
+     * documents downloaded; only comparable between in-process runs.
+     */
+    private static Map<String, Object> perGigabyte(ProcessSample used, long downloadBytes) {
+        double gigabytes = Math.max(downloadBytes, 1) / (1024.0 * 1024 * 1024);
+        Map<String, Object> process = new LinkedHashMap<>();
+        process.put("downloadedGB", round(gigabytes));
+        process.put("cpuSecondsPerGB", round(used.cpuNanos() / 1e9 / gigabytes));
+        process.put("connectorCpuSecondsPerGB", round(used.connectorCpuNanos() / 1e9 / gigabytes));
+        process.put("gcMillisPerGB", round(used.gcMillis() / gigabytes));
+        process.put("gcCountPerGB", round(used.gcCount() / gigabytes));
+        process.put("allocatedMBPerGB", round(used.allocatedBytes() / (1024.0 * 1024) / gigabytes));
+        return process;
+    }
+
+    private void runUser(Recorder recorder) {
+        while (System.nanoTime() < stopAt) {
+            String sessionId = startSession(recorder);
+            if (sessionId == null) {
+                continue;
+            }
+            SecretKey key = recorder.sessionKey;
+            String session = URLEncoder.encode(sessionId, StandardCharsets.UTF_8);
+            for (int i = 0; i < downloadsPerSession && System.nanoTime() < stopAt; i++) {
+                String encryptedId = encrypt(key, ThreadLocalRandom.current().nextInt(1, customerIds + 1));
+                if (info) {
+                    discard(recorder, INFO, get("/api/customers/" + encryptedId + "/info?sessionId=" + session));
+                }
+                discard(recorder, DOWNLOAD, get("/api/customers/download/" + encryptedId + "?sessionId=" + session));
+            }
+            discard(recorder, CLOSE, HttpRequest.newBuilder(uri("/session/" + session)).DELETE().build());
+        }
+    }
+
+    private String startSession(Recorder recorder) {
+        HttpResponse<byte[]> publicKey = send(recorder, KEYS, get("/keys/public"));
+        if (publicKey == null) {
+            return null;
+        }
+        try {
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(256);
+            SecretKey aesKey = generator.generateKey();
+
+            PublicKey rsaKey = KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(
+                    Base64.getDecoder().decode(new String(publicKey.body(), StandardCharsets.US_ASCII).trim())));
+            Cipher cipher = Cipher.getInstance("RSA/ECB/OAEPPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, rsaKey);
+            Map<String, String> body = new HashMap<>();
+            body.put("encryptedKey", Base64.getEncoder().encodeToString(cipher.doFinal(aesKey.getEncoded())));
+            publicKey.headers().firstValue(KeyController.KEY_ID_HEADER).ifPresent(keyId -> body.put("keyId", keyId));
+
+            HttpResponse<byte[]> started = send(recorder, SESSION, HttpRequest.newBuilder(uri("/session/start"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)))
+                    .build());
+            if (started == null) {
+                return null;
+            }
+            recorder.sessionKey = aesKey;
+            return mapper.readTree(started.body()).path("sessionId").asText(null);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not start a session", e);
+        }
+    }
+
+    /**
+     * Send and record the request; null unless it got a 2xx answer.
+     */
+    private HttpResponse<byte[]> send(Recorder recorder, String step, HttpRequest request) {
+        return send(recorder, step, request, HttpResponse.BodyHandlers.ofByteArray(), body -> body.length);
+    }
+
+    /**
+     * Send and record the request, counting the body without keeping it.
+     */
+    private void discard(Recorder recorder, String step, HttpRequest request) {
+        send(recorder, step, request, info -> HttpResponse.BodySubscribers.fromSubscriber(
+                new CountingSubscriber(), CountingSubscriber::getBytes), Long::longValue);
+    }
+
+    private <T> HttpResponse<T> send(Recorder recorder, String step, HttpRequest request,
+                                     HttpResponse.BodyHandler<T> handler, ToLongFunction<T> size) {
+        long sent = System.nanoTime();
+        HttpResponse<T> response;
+        try {
+            response = client.send(request, handler);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            response = null;
+        }
+        boolean ok = response != null && response.statusCode() / 100 == 2;
+        if (sent >= countFrom && sent < stopAt) {
+            if (ok) {
+                recorder.latencies.get(step).add(System.nanoTime() - sent);
+                recorder.bytes.merge(step, size.applyAsLong(response.body()), Long::sum);
+            } else {
+                recorder.errors.merge(step, 1L, Long::sum);
+            }
+        }
+        return ok ? response : null;
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(uri(path)).timeout(Duration.ofMinutes(2)).GET().build();
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static String encrypt(SecretKey key, int customerId) {
+        try {
+            byte[] iv = new byte[12];
+            new SecureRandom().nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+            byte[] cipherText = cipher.doFinal(String.valueOf(customerId).getBytes(StandardCharsets.UTF_8));
+            byte[] combined = Arrays.copyOf(iv, iv.length + cipherText.length);
+            System.arraycopy(cipherText, 0, combined, iv.length, cipherText.length);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(combined);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, Object> summarise(LongList latencies, long errors, long bytes, double seconds) {
+        long[] sorted = Arrays.copyOf(latencies.values, latencies.size);
+        Arrays.sort(sorted);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("ok", sorted.length);
+        summary.put("errors", errors);
+        summary.put("bytes", bytes);
+        summary.put("throughputPerSecond", round(sorted.length / seconds));
+        summary.put("megabytesPerSecond", round(bytes / seconds / (1024 * 1024)));
+        summary.put("p50Ms", percentileMillis(sorted, 0.50));
+        summary.put("p90Ms", percentileMillis(sorted, 0.90));
+        summary.put("p99Ms", percentileMillis(sorted, 0.99));
+        summary.put("maxMs", percentileMillis(sorted, 1.0));
+        return summary;
+    }
+
+    private static double percentileMillis(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = Math.max(0, (int) Math.ceil(quantile * sorted.length) - 1);
+        return round(sorted[index] / 1e6);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void print(PrintStream console, Map<String, Object> report) {
+        console.printf("%n%-9s %9s %7s %10s %8s %9s %9s %9s %9s%n",
+                "step", "ok", "errors", "req/s", "MB/s", "p50(ms)", "p90(ms)", "p99(ms)", "max(ms)");
+        ((Map<String, Map<String, Object>>) report.get("steps")).forEach((step, summary) ->
+                console.printf("%-9s %9d %7d %10.2f %8.2f %9.2f %9.2f %9.2f %9.2f%n", step,
+                        summary.get("ok"), summary.get("errors"), summary.get("throughputPerSecond"),
+                        summary.get("megabytesPerSecond"), summary.get("p50Ms"), summary.get("p90Ms"),
+                        summary.get("p99Ms"), summary.get("maxMs")));
+        if (report.get("process") instanceof Map<?, ?> process) {
+            console.printf("Process per GB downloaded: %.2f s CPU (%.2f s on connector threads), %.2f ms GC "
+                            + "(%.2f collections), %.2f MB allocated%n",
+                    process.get("cpuSecondsPerGB"), process.get("connectorCpuSecondsPerGB"), process.get("gcMillisPerGB"), process.get("gcCountPerGB"),
+                    process.get("allocatedMBPerGB"));
+        }
+        if (report.containsKey("mock")) {
+            console.println("Mock Laserfiche: " + report.get("mock"));
+        }
+    }
+
+    /**
+     * Counts a response body and drops it, so the client's own allocations do
+     * not swamp the service's in the process figures.
+     */
+    private static final class CountingSubscriber implements Flow.Subscriber<List<ByteBuffer>> {
+        private long bytes;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            for (ByteBuffer buffer : buffers) {
+                bytes += buffer.remaining();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {}
+
+        @Override
+        public void onComplete() {}
+
+        long getBytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * CPU, GC and heap allocation counters of this JVM.
+     */
+    private record ProcessSample(long cpuNanos, long connectorCpuNanos, long gcMillis, long gcCount,
+                                 long allocatedBytes) {
+
+        static ProcessSample now() {
+            // Tomcat's request and poller threads: the service's side of the traffic
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            long connectorCpuNanos = 0;
+            for (ThreadInfo thread : threads.getThreadInfo(threads.getAllThreadIds())) {
+                if (thread != null && thread.getThreadName().startsWith("http-nio-")) {
+                    connectorCpuNanos += Math.max(0, threads.getThreadCpuTime(thread.getThreadId()));
+                }
+            }
+            long gcMillis = 0;
+            long gcCount = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcMillis += Math.max(0, collector.getCollectionTime());
+                gcCount += Math.max(0, collector.getCollectionCount());
+            }
+            return new ProcessSample(
+                    ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime(),
+                    connectorCpuNanos, gcMillis, gcCount,
+                    ((com.sun.management.ThreadMXBean) threads).getTotalThreadAllocatedBytes());
+        }
+
+        ProcessSample minus(ProcessSample earlier) {
+            return new ProcessSample(cpuNanos - earlier.cpuNanos, connectorCpuNanos - earlier.connectorCpuNanos,
+                    gcMillis - earlier.gcMillis,
+                    gcCount - earlier.gcCount, allocatedBytes - earlier.allocatedBytes);
+        }
+    }
+
+    /**
+     * What one user recorded; only that user's thread touches it until the run ends.
+     */
+    private static final class Recorder {
+        private final Map<String, LongList> latencies = new HashMap<>();
+        private final Map<String, Long> errors = new HashMap<>();
+        private final Map<String, Long> bytes = new HashMap<>();
+        private SecretKey sessionKey;
+
+        Recorder() {
+            STEPS.forEach(step -> latencies.put(step, new LongList()));
+        }
+    }
+
+    private static final class LongList {
+        private long[] values = new long[256];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(LongList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+    }
+}
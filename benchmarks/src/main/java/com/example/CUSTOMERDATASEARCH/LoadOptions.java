@@ -0,0 +1,89 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code --name=value} command line of {@link MockLaserFiche} and
+ * {@link LoadGenerator}. Names with a dot are application properties, handed
+ * to the service when the load generator starts it in-process.
+ */
+final class LoadOptions {
+
+    private final Map<String, String> options = new LinkedHashMap<>();
+    private final List<String> applicationArgs = new ArrayList<>();
+
+    private LoadOptions() {}
+
+    static LoadOptions parse(String[] args) {
+        LoadOptions parsed = new LoadOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int equals = arg.indexOf('=');
+            String name = equals < 0 ? arg.substring(2) : arg.substring(2, equals);
+            String value = equals < 0 ? "true" : arg.substring(equals + 1);
+            if (name.contains(".")) {
+                parsed.applicationArgs.add("--" + name + "=" + value);
+            } else {
+                parsed.options.put(name, value);
+            }
+        }
+        return parsed;
+    }
+
+    String getString(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    boolean has(String name) {
+        return options.containsKey(name);
+    }
+
+    int getInt(String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    double getDouble(String name, double defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    boolean getBoolean(String name, boolean defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    /**
+     * Spring's duration syntax: {@code 200ms}, {@code 30s}, {@code PT1M}.
+     */
+    Duration getDuration(String name, Duration defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : DurationStyle.detectAndParse(value);
+    }
+
+    List<String> getApplicationArgs() {
+        return applicationArgs;
+    }
+
+    /**
+     * A {@link MockLaserFiche} configured by {@code --latency}, {@code --jitter},
+     * {@code --error-rate}, {@code --not-found-rate} and {@code --payload-bytes}.
+     */
+    MockLaserFiche startMock(int port) throws IOException {
+        return new MockLaserFiche(port,
+                getDuration("latency", Duration.ofMillis(100)),
+                getDuration("jitter", Duration.ZERO),
+                getDouble("error-rate", 0.0),
+                getDouble("not-found-rate", 0.0),
+                getInt("payload-bytes", 0));
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stand-in for the Laserfiche {@code GetDocument} endpoint, for load tests
+ * that must not touch the real one.
+ *
+ * It speaks the same JSON contract as {@link CustomerController.LaserFicheRequest}
+ * and {@link CustomerController.LaserFicheResponse}: CaseID n is answered with
+ * the sample PDF {@code pdfs/customer((n - 1) % 5 + 1).pdf} as base64
+ * {@code StreamBytes}, or with a synthetic document of {@code payloadBytes}
+ * when that is set. Each answer is delayed by {@code latency} plus up to
+ * {@code jitter}; {@code errorRate} of calls get HTTP 500 and
+ * {@code notFoundRate} a {@code ResponseCode} 404. HEAD (the health probe)
+ * gets 405 at once. Bodies are encoded up front so the stand-in is never
+ * the bottleneck.
+ *
+ * Embed it through the constructor, or run it on its own:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.example.CUSTOMERDATASEARCH.MockLaserFiche \
+ *     --port=8099 --latency=200ms --jitter=100ms --error-rate=0.01 --payload-bytes=524288
+ * </pre>
+ */
+public final class MockLaserFiche implements AutoCloseable {
+
+    static final String PATH = "/LaserficheLOS/api/Values/GetDocument";
+
+    private static final int SAMPLE_COUNT = 5;
+
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final double errorRate;
+    private final double notFoundRate;
+    private final List<byte[]> bodies;
+    private final byte[] notFoundBody;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpServer server;
+
+    private final LongAdder served = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+
+    public MockLaserFiche(int port, Duration latency, Duration jitter, double errorRate, double notFoundRate,
+                          int payloadBytes) throws IOException {
+        this.latencyNanos = latency.toNanos();
+        this.jitterNanos = jitter.toNanos();
+        this.errorRate = errorRate;
+        this.notFoundRate = notFoundRate;
+        this.bodies = new ArrayList<>();
+        if (payloadBytes > 0) {
+            bodies.add(documentBody(syntheticPdf(payloadBytes)));
+        } else {
+            for (int i = 1; i <= SAMPLE_COUNT; i++) {
+                bodies.add(documentBody(BenchmarkFixtures.samplePdf("customer" + i + ".pdf")));
+            }
+        }
+        this.notFoundBody = "{\"EntryID\":\"\",\"ResponseCode\":\"404\",\"RespondMessage\":\"Document not found\",\"StreamBytes\":\"\"}"
+                .getBytes(StandardCharsets.US_ASCII);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 4096);
+        server.setExecutor(executor);
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    /**
+     * The URL to use as {@code laserfiche.api.url}.
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + PATH;
+    }
+
+    public Map<String, Long> getCounts() {
+        return Map.of("served", served.sum(), "failed", failed.sum(), "notFound", notFound.sum());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().add("Allow", "POST");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            JsonNode request = mapper.readTree(exchange.getRequestBody());
+            int caseId = request.path("CaseID").asInt(1);
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = latencyNanos + (jitterNanos > 0 ? random.nextLong(jitterNanos) : 0);
+            if (delay > 0) {
+                Thread.sleep(Duration.ofNanos(delay));
+            }
+
+            byte[] body;
+            if (random.nextDouble() < errorRate) {
+                failed.increment();
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            } else if (random.nextDouble() < notFoundRate) {
+                notFound.increment();
+                body = notFoundBody;
+            } else {
+                served.increment();
+                body = bodies.get(Math.floorMod(caseId - 1, bodies.size()));
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] documentBody(byte[] pdf) {
+        return ("{\"EntryID\":\"" + pdf.length + "\",\"ResponseCode\":\"200\",\"RespondMessage\":\"Success\",\"StreamBytes\":\""
+                + Base64.getEncoder().encodeToString(pdf) + "\"}").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // The first sample, padded out (or cut) to the requested size
+    private static byte[] syntheticPdf(int size) {
+        byte[] sample = BenchmarkFixtures.samplePdf("customer1.pdf");
+        byte[] pdf = Arrays.copyOf(sample, size);
+        for (int i = sample.length; i < size; i++) {
+            pdf[i] = (byte) ('a' + i % 26);
+        }
+        return pdf;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        MockLaserFiche mock = options.startMock(options.getInt("port", 8099));
+        System.out.println("Mock Laserfiche listening on " + mock.getUrl());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            mock.close();
+            System.out.println("Mock Laserfiche stopped after " + mock.getCounts());
+        }));
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code CustomerController.servePdfBytes} for a cached sample PDF: the
+ * full document, a single range, a multipart range and a revalidation
+ * that ends in 304. The response discards the body, so the score is the
+ * controller's own header, range and copy work.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServePdfBenchmark {
+
+    @Param({"full", "range", "multirange", "notModified"})
+    public String request;
+
+    private CustomerController controller;
+    private PdfDocument document;
+    private MockHttpServletRequest template;
+
+    @Setup
+    public void setUp() {
+        BenchmarkFixtures.silenceStdout();
+        SessionController sessions = new SessionController(BenchmarkFixtures.keyController(),
+                BenchmarkFixtures.sessionService());
+        controller = BenchmarkFixtures.customerController(sessions);
+        document = new PdfDocument(BenchmarkFixtures.samplePdf("customer1.pdf"), "4711", System.currentTimeMillis());
+
+        template = new MockHttpServletRequest("GET", "/api/customers/x/pdf");
+        switch (request) {
+            case "range" -> template.addHeader(HttpHeaders.RANGE, "bytes=0-65535");
+            case "multirange" -> template.addHeader(HttpHeaders.RANGE, "bytes=0-1023,65536-131071,-4096");
+            case "notModified" -> template.addHeader(HttpHeaders.IF_NONE_MATCH, "\"" + document.getContentHash() + "\"");
+            default -> { }
+        }
+    }
+
+    @Benchmark
+    public int serve() throws Exception {
+        DiscardingResponse response = new DiscardingResponse();
+        controller.servePdfBytes(1, LaserFicheClient.DEFAULT_DOCUMENT_TYPE, document, false, template, response, null);
+        return response.getStatus();
+    }
+
+    /**
+     * Counts what would have gone to the client instead of buffering it.
+     */
+    static final class DiscardingResponse extends MockHttpServletResponse {
+
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code SessionService.getSessionKey} from eight threads at once, for each
+ * session backend: spread over many sessions, and all on one hot session
+ * (the same browser tab loading a page of thumbnails), where every lookup
+ * touches the same record.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionContentionBenchmark {
+
+    private static final int SESSIONS = 10_000;
+
+    @Param({"memory", "jdbc", "stateless"})
+    public String backend;
+
+    private SessionService sessions;
+    private String[] sessionIds;
+
+    @Setup
+    public void setUp() {
+        long now = System.currentTimeMillis();
+        sessions = switch (backend) {
+            case "memory" -> BenchmarkFixtures.sessionService();
+            case "jdbc" -> {
+                JdbcDataSource dataSource = new JdbcDataSource();
+                dataSource.setURL("jdbc:h2:mem:contention-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+                JdbcSessionStore store = new JdbcSessionStore(dataSource, new byte[32], SESSIONS * 2,
+                        BenchmarkFixtures.SESSION_TIMEOUT, now);
+                yield new SessionService(store, BenchmarkFixtures.EXPIRY_TICK, System::currentTimeMillis, false, null);
+            }
+            case "stateless" -> new SessionService(BenchmarkFixtures.SESSION_TIMEOUT, BenchmarkFixtures.EXPIRY_TICK,
+                    System::currentTimeMillis, false, new SessionTokenSealer(new byte[32], Duration.ofDays(1),
+                            BenchmarkFixtures.SESSION_TIMEOUT, SESSIONS * 2, System::currentTimeMillis));
+            default -> throw new IllegalArgumentException(backend);
+        };
+
+        SecureRandom random = new SecureRandom();
+        sessionIds = new String[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            byte[] raw = new byte[32];
+            random.nextBytes(raw);
+            SecretKey key = new SecretKeySpec(raw, "AES");
+            sessionIds[i] = sessions.createSession(key);
+        }
+        // Warm the caches so every measured lookup is a hit
+        for (String sessionId : sessionIds) {
+            sessions.getSessionKey(sessionId);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessions.destroy();
+    }
+
+    @Benchmark
+    public SecretKey spread() {
+        return sessions.getSessionKey(sessionIds[ThreadLocalRandom.current().nextInt(SESSIONS)]);
+    }
+
+    @Benchmark
+    public SecretKey hotSession() {
+        return sessions.getSessionKey(sessionIds[0]);
+    }
+}
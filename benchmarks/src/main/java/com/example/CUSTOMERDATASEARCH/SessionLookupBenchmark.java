@@ -0,0 +1,89 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session key lookup per request: the in-memory session map, the shared
+ * JDBC store's near-cache (embedded H2 behind it), and a stateless token,
+ * both opened from scratch and through the verified-token cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionLookupBenchmark {
+
+    private SessionService storedSessions;
+    private SessionService statelessSessions;
+    private SessionService sharedSessions;
+    private SessionTokenSealer sealer;
+    private String sessionId;
+    private String sharedSessionId;
+    private String token;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(256);
+        SecretKey key = generator.generateKey();
+        Duration timeout = Duration.ofMinutes(30);
+
+        storedSessions = new SessionService(timeout, Duration.ofSeconds(5), System::currentTimeMillis, false);
+        sessionId = storedSessions.createSession(key);
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:sessions;DB_CLOSE_DELAY=-1");
+        JdbcSessionStore store = new JdbcSessionStore(dataSource, new byte[32], 50_000, timeout, System.currentTimeMillis());
+        sharedSessions = new SessionService(store, Duration.ofSeconds(5), System::currentTimeMillis, false, null);
+        sharedSessionId = sharedSessions.createSession(key);
+
+        sealer = new SessionTokenSealer(new byte[32], Duration.ofDays(1), timeout, 50_000, System::currentTimeMillis);
+        statelessSessions = new SessionService(timeout, Duration.ofSeconds(5), System::currentTimeMillis, false, sealer);
+        token = statelessSessions.createSession(key);
+    }
+
+    @TearDown
+    public void tearDown() {
+        storedSessions.destroy();
+        statelessSessions.destroy();
+        sharedSessions.destroy();
+    }
+
+    @Benchmark
+    public SecretKey mapLookup() {
+        return storedSessions.getSessionKey(sessionId);
+    }
+
+    @Benchmark
+    public SecretKey nearCacheLookup() {
+        return sharedSessions.getSessionKey(sharedSessionId);
+    }
+
+    @Benchmark
+    public SecretKey unsealCached() {
+        return statelessSessions.getSessionKey(token);
+    }
+
+    @Benchmark
+    public Object unsealUncached() {
+        return sealer.open(token, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-side cost of establishing a session key, single-threaded, so the
+ * score is session starts per second per core: the RSA-OAEP private-key
+ * decrypt against ephemeral ECDH (key pair, agreement and HKDF) on X25519
+ * and P-256, and the same two through {@code SessionController.startSession}
+ * with request parsing, validation and session creation on top.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionStartBenchmark {
+
+    private KeyController keyController;
+    private SessionController sessionController;
+    private Map<String, String> rsaRequest;
+    private Map<String, String> x25519Request;
+    private byte[] encryptedAesKey;
+    private byte[] x25519ClientKey;
+    private byte[] p256ClientKey;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkFixtures.silenceStdout();
+        keyController = BenchmarkFixtures.keyController();
+        sessionController = new SessionController(keyController, BenchmarkFixtures.sessionService());
+
+        byte[] rawAes = new byte[32];
+        new SecureRandom().nextBytes(rawAes);
+        Cipher rsa = Cipher.getInstance("RSA/ECB/OAEPPadding");
+        rsa.init(Cipher.ENCRYPT_MODE, keyController.getKeyPair().getPublic());
+        encryptedAesKey = rsa.doFinal(rawAes);
+
+        x25519ClientKey = KeyPairGenerator.getInstance("X25519").generateKeyPair().getPublic().getEncoded();
+        KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+        ec.initialize(new ECGenParameterSpec("secp256r1"));
+        p256ClientKey = ec.generateKeyPair().getPublic().getEncoded();
+
+        Base64.Encoder base64 = Base64.getEncoder();
+        rsaRequest = Map.of("protocol", KeyController.RSA_OAEP, "encryptedKey", base64.encodeToString(encryptedAesKey));
+        x25519Request = Map.of("protocol", KeyController.ECDH_X25519,
+                "clientPublicKey", base64.encodeToString(x25519ClientKey));
+    }
+
+    @Benchmark
+    public SecretKey rsaOaep() throws Exception {
+        // SessionController.startSession's RSA path
+        Cipher cipher = Cipher.getInstance("RSA/ECB/OAEPPadding");
+        cipher.init(Cipher.DECRYPT_MODE, keyController.getKeyPair().getPrivate());
+        return new SecretKeySpec(cipher.doFinal(encryptedAesKey), "AES");
+    }
+
+    @Benchmark
+    public SecretKey ecdhX25519() throws Exception {
+        return keyController.agreeEcdh(KeyController.ECDH_X25519, x25519ClientKey).aesKey();
+    }
+
+    @Benchmark
+    public SecretKey ecdhP256() throws Exception {
+        return keyController.agreeEcdh(KeyController.ECDH_P256, p256ClientKey).aesKey();
+    }
+
+    @Benchmark
+    public Object controllerRsaOaep() {
+        return sessionController.startSession(rsaRequest).getBody();
+    }
+
+    @Benchmark
+    public Object controllerEcdhX25519() {
+        return sessionController.startSession(x25519Request).getBody();
+    }
+}
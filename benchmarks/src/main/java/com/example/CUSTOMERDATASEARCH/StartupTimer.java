@@ -0,0 +1,195 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from launching the service to its first successful {@code /health},
+ * for the jar built by the {@code fast-startup} profile.
+ *
+ * First a training run with {@code -XX:ArchiveClassesAtExit} starts the
+ * service, waits for {@code /health}, and shuts it down, leaving a CDS
+ * archive of every class loaded on the way. Then each variant is started
+ * {@code --runs} times on a fresh port:
+ * <ul>
+ *   <li>{@code plain}: the jar as it is;</li>
+ *   <li>{@code aot}: with {@code -Dspring.aot.enabled=true}, using the bean
+ *       definitions generated at build time;</li>
+ *   <li>{@code aot+cds}: with the archive as well.</li>
+ * </ul>
+ * The median and best times are printed and written to {@code --report}.
+ *
+ * Uses the JDK only, so the build runs it as a single source file:
+ * <pre>
+ * java StartupTimer.java --jar=target/fast-startup/app.jar --archive=target/fast-startup/app.jsa
+ * </pre>
+ * Options: {@code --path} (default {@code /customerdatasearch/health}),
+ * {@code --runs} (3; 0 only trains), {@code --timeout} in seconds (120),
+ * {@code --report}, {@code --java} (this JVM's). Each run's output goes to a
+ * log file next to the jar.
+ */
+public final class StartupTimer {
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(200))
+            .build();
+
+    private final String java;
+    private final Path jar;
+    private final Path archive;
+    private final String path;
+    private final long timeoutNanos;
+
+    private StartupTimer(String java, Path jar, Path archive, String path, Duration timeout) {
+        this.java = java;
+        this.jar = jar;
+        this.archive = archive;
+        this.path = path;
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        Path jar = Path.of(required(options, "jar")).toAbsolutePath();
+        Path archive = Path.of(required(options, "archive")).toAbsolutePath();
+        int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        StartupTimer timer = new StartupTimer(
+                options.getOrDefault("java", Path.of(System.getProperty("java.home"), "bin", "java").toString()),
+                jar, archive, options.getOrDefault("path", "/customerdatasearch/health"),
+                Duration.ofSeconds(Long.parseLong(options.getOrDefault("timeout", "120"))));
+
+        Files.deleteIfExists(archive);
+        long training = timer.start("training", List.of("-XX:ArchiveClassesAtExit=" + archive,
+                "-Dspring.aot.enabled=true"));
+        if (!Files.exists(archive)) {
+            throw new IllegalStateException("Training run did not write " + archive);
+        }
+        System.out.printf(Locale.ROOT, "Training run: first /health after %d ms, archive %d KB%n",
+                training, Files.size(archive) / 1024);
+        if (runs == 0) {
+            return;
+        }
+
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("plain", List.of());
+        variants.put("aot", List.of("-Dspring.aot.enabled=true"));
+        variants.put("aot+cds", List.of("-XX:SharedArchiveFile=" + archive, "-Xshare:auto",
+                "-Dspring.aot.enabled=true"));
+
+        StringBuilder report = new StringBuilder(String.format(Locale.ROOT,
+                "Time to first successful /health (%d runs each)%n%-9s %12s %12s%n",
+                runs, "variant", "median(ms)", "best(ms)"));
+        long plainMedian = 0;
+        for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+            List<Long> times = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                times.add(timer.start(variant.getKey() + "-" + (i + 1), variant.getValue()));
+            }
+            Collections.sort(times);
+            long median = times.get(times.size() / 2);
+            if (variant.getKey().equals("plain")) {
+                plainMedian = median;
+            }
+            report.append(String.format(Locale.ROOT, "%-9s %12d %12d", variant.getKey(), median, times.get(0)));
+            if (plainMedian > 0 && median != plainMedian) {
+                report.append(String.format(Locale.ROOT, "   (%.0f%% of plain)", 100.0 * median / plainMedian));
+            }
+            report.append(System.lineSeparator());
+        }
+        System.out.print(report);
+        String reportFile = options.get("report");
+        if (reportFile != null) {
+            Files.writeString(Path.of(reportFile), report);
+        }
+    }
+
+    private static String required(Map<String, String> options, String name) {
+        String value = options.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("--" + name + " is required");
+        }
+        return value;
+    }
+
+    /**
+     * Start the jar with {@code jvmArgs}, wait for the first 200 from
+     * {@link #path}, shut it down and return the milliseconds it took.
+     */
+    private long start(String name, List<String> jvmArgs) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.addAll(jvmArgs);
+        command.add("-jar");
+        command.add(jar.toString());
+        command.add("--server.port=" + port);
+        Path log = jar.resolveSibling("startup-" + name.replace('+', '-') + ".log");
+        URI health = URI.create("http://127.0.0.1:" + port + path);
+
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(jar.getParent().toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        try {
+            while (!isHealthy(health)) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(name + " run exited with " + process.exitValue() + ", see " + log);
+                }
+                if (System.nanoTime() - started > timeoutNanos) {
+                    throw new IllegalStateException(name + " run not healthy in time, see " + log);
+                }
+                Thread.sleep(10);
+            }
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        } finally {
+            // SIGTERM, so the JVM exits normally and a training run writes its archive
+            process.destroy();
+            if (!process.waitFor(60, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static boolean isHealthy(URI health) {
+        try {
+            HttpResponse<Void> response = CLIENT.send(HttpRequest.newBuilder(health)
+                    .timeout(Duration.ofSeconds(2)).build(), HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() == 200;
+        } catch (IOException e) {
+            // Not listening yet
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
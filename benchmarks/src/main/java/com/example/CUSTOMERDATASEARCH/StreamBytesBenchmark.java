@@ -0,0 +1,80 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a Laserfiche response whose StreamBytes is one of the sample
+ * PDFs: the streaming Jackson reader the blocking client uses, the
+ * byte-at-a-time decoder behind the async client fed in socket-sized
+ * slices, and the original read-the-tree-then-decode baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamBytesBenchmark {
+
+    private static final int SLICE = 16 * 1024;
+
+    @Param({"customer1.pdf", "customer3.pdf", "customer5.pdf"})
+    public String document;
+
+    private byte[] responseBody;
+    private LaserFicheClient client;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        String streamBytes = Base64.getEncoder().encodeToString(BenchmarkFixtures.samplePdf(document));
+        responseBody = ("{\"EntryID\":\"4711\",\"ResponseCode\":\"200\",\"RespondMessage\":\"OK\","
+                + "\"StreamBytes\":\"" + streamBytes + "\"}").getBytes(StandardCharsets.US_ASCII);
+        client = new LaserFicheClient(new RestTemplate());
+        objectMapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public long jacksonStreaming() throws Exception {
+        return client.readResponse(1, new ByteArrayInputStream(responseBody), OutputStream::nullOutputStream)
+                .getBytesWritten();
+    }
+
+    @Benchmark
+    public long asyncDecoder() throws Exception {
+        long[] decoded = new long[1];
+        StreamBytesDecoder decoder = new StreamBytesDecoder(chunk -> decoded[0] += chunk.remaining());
+        for (int offset = 0; offset < responseBody.length; offset += SLICE) {
+            decoder.feed(ByteBuffer.wrap(responseBody, offset, Math.min(SLICE, responseBody.length - offset)));
+        }
+        decoder.finish();
+        return decoded[0];
+    }
+
+    @Benchmark
+    public int treeThenDecode() throws Exception {
+        // LaserFicheClient before streaming: whole tree, whole string, whole array
+        JsonNode root = objectMapper.readTree(responseBody);
+        return Base64.getDecoder().decode(root.get("StreamBytes").asText()).length;
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes a response body through a non-blocking servlet output stream.
+ *
+ * Producers queue buffers with {@link #offer}; they are written only while
+ * the container says the socket can take more, and the rest of the queue is
+ * written from {@link #onWritePossible()}. Once more than {@code highWaterBytes}
+ * are queued the producer is told to pause and is resumed when the queue has
+ * drained to half of that, so a slow client costs a bounded amount of memory
+ * and no thread at all.
+ */
+final class AsyncPdfResponseWriter implements WriteListener, AsyncListener {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncPdfResponseWriter.class);
+
+    // Largest single write, so one big buffer is not copied into the container in one go
+    private static final int WRITE_SLICE = 32 * 1024;
+
+    private final AsyncContext asyncContext;
+    private final HttpServletResponse response;
+    private final ServletOutputStream out;
+    private final long highWaterBytes;
+    private final long lowWaterBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+    private long queuedBytes;
+    private Runnable beforeFirstWrite;
+    private Runnable resume;
+    private Runnable onComplete;
+    private long bytesWritten;
+    private boolean finished;
+    private boolean closed;
+    private Throwable failure;
+
+    AsyncPdfResponseWriter(AsyncContext asyncContext, long highWaterBytes) throws IOException {
+        this.asyncContext = asyncContext;
+        this.response = (HttpServletResponse) asyncContext.getResponse();
+        this.highWaterBytes = highWaterBytes;
+        this.lowWaterBytes = highWaterBytes / 2;
+        asyncContext.addListener(this);
+        this.out = response.getOutputStream();
+        out.setWriteListener(this);
+    }
+
+    /**
+     * Run {@code action} just before the first body bytes are written, e.g. to
+     * set headers only once there is something to send.
+     */
+    void beforeFirstWrite(Runnable action) {
+        lock.lock();
+        try {
+            beforeFirstWrite = action;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Run {@code action} once the exchange has completed, however it ended.
+     */
+    void whenComplete(Runnable action) {
+        lock.lock();
+        try {
+            onComplete = action;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Body bytes handed to the container so far.
+     */
+    long getBytesWritten() {
+        lock.lock();
+        try {
+            return bytesWritten;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queue {@code chunk} for writing. Returns false when the queue is full;
+     * {@code resume} (if not null) is then run once it has drained. Chunks
+     * offered after the client has gone are dropped.
+     */
+    boolean offer(ByteBuffer chunk, Runnable resume) {
+        lock.lock();
+        try {
+            if (closed) {
+                return true;
+            }
+            queue.add(chunk);
+            queuedBytes += chunk.remaining();
+        } finally {
+            lock.unlock();
+        }
+
+        drain();
+
+        lock.lock();
+        try {
+            if (closed || queuedBytes <= highWaterBytes) {
+                return true;
+            }
+            this.resume = resume;
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * No more chunks will be offered; the exchange completes once they are written.
+     */
+    void finish() {
+        lock.lock();
+        try {
+            finished = true;
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * Give up on the response: sends {@code status} if nothing has been sent
+     * yet, otherwise just ends what was sent.
+     */
+    void abort(int status, String message) {
+        abort(status, message, null, null);
+    }
+
+    /**
+     * {@link #abort(int, String)} with a header, such as {@code Retry-After},
+     * on the error response.
+     */
+    void abort(int status, String message, String header, String value) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            queuedBytes = 0;
+            if (!response.isCommitted()) {
+                if (header != null) {
+                    response.setHeader(header, value);
+                }
+                response.sendError(status, message);
+            }
+        } catch (IOException e) {
+            log.debug("Could not send error {}: {}", status, e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+        asyncContext.complete();
+    }
+
+    /**
+     * Why the client stopped receiving, or null while it still is.
+     */
+    Throwable getFailure() {
+        lock.lock();
+        try {
+            return failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onWritePossible() {
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        failed(t);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        failed(new IOException("Download timed out"));
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        failed(event.getThrowable());
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        Runnable action;
+        lock.lock();
+        try {
+            action = onComplete;
+            onComplete = null;
+        } finally {
+            lock.unlock();
+        }
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    private void drain() {
+        Runnable toResume = null;
+        boolean complete = false;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            // isReady() must be asked before every write; once it says no the
+            // container calls onWritePossible() when the socket has drained
+            while (out.isReady()) {
+                ByteBuffer head = queue.peek();
+                if (head == null) {
+                    if (finished) {
+                        closed = true;
+                        complete = true;
+                    }
+                    break;
+                }
+                if (beforeFirstWrite != null) {
+                    beforeFirstWrite.run();
+                    beforeFirstWrite = null;
+                }
+                int length = Math.min(head.remaining(), WRITE_SLICE);
+                out.write(head.array(), head.arrayOffset() + head.position(), length);
+                head.position(head.position() + length);
+                queuedBytes -= length;
+                bytesWritten += length;
+                if (!head.hasRemaining()) {
+                    queue.poll();
+                }
+            }
+            if (resume != null && queuedBytes <= lowWaterBytes) {
+                toResume = resume;
+                resume = null;
+            }
+        } catch (IOException e) {
+            failure = e;
+            closed = true;
+            queue.clear();
+            queuedBytes = 0;
+            toResume = resume;
+            resume = null;
+            complete = true;
+        } finally {
+            lock.unlock();
+        }
+
+        // Outside the lock: both may call back into other components
+        if (toResume != null) {
+            toResume.run();
+        }
+        if (complete) {
+            asyncContext.complete();
+        }
+    }
+
+    private void failed(Throwable t) {
+        Runnable toResume;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            failure = t;
+            closed = true;
+            queue.clear();
+            queuedBytes = 0;
+            // Let a paused producer run on; it drops what it offers from now on
+            toResume = resume;
+            resume = null;
+        } finally {
+            lock.unlock();
+        }
+        log.debug("Client stopped receiving PDF: {}", t != null ? t.getMessage() : "unknown");
+        if (toResume != null) {
+            toResume.run();
+        }
+        asyncContext.complete();
+    }
+}
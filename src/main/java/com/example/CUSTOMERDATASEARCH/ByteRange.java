@@ -0,0 +1,87 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An inclusive byte range taken from an HTTP {@code Range} header (RFC 9110 section 14).
+ */
+final class ByteRange {
+
+    // More ranges than this is not a PDF viewer, serve the whole document instead
+    static final int MAX_RANGES = 32;
+
+    private final long start;
+    private final long end;
+
+    ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    long getStart() { return start; }
+    long getEnd() { return end; }
+    long getLength() { return end - start + 1; }
+
+    String toContentRange(long totalLength) {
+        return "bytes " + start + "-" + end + "/" + totalLength;
+    }
+
+    /**
+     * Resolve a Range header against a representation of {@code length} bytes.
+     *
+     * @return null when the header should be ignored (absent, malformed, not
+     *         in bytes, or too many ranges), an empty list when no range is
+     *         satisfiable, otherwise the satisfiable ranges in request order
+     */
+    static List<ByteRange> parse(String header, long length) {
+        if (header == null) {
+            return null;
+        }
+        int eq = header.indexOf('=');
+        if (eq < 0 || !header.substring(0, eq).trim().equalsIgnoreCase("bytes")) {
+            return null;
+        }
+
+        String[] specs = header.substring(eq + 1).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String raw : specs) {
+            String spec = raw.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                if (first.isEmpty()) {
+                    // Suffix range: the final N bytes
+                    long suffix = Long.parseLong(last);
+                    if (suffix < 0) {
+                        return null;
+                    }
+                    if (suffix > 0 && length > 0) {
+                        ranges.add(new ByteRange(Math.max(0, length - suffix), length - 1));
+                    }
+                    continue;
+                }
+
+                long start = Long.parseLong(first);
+                long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                if (start < 0 || end < start) {
+                    return null;
+                }
+                if (start < length) {
+                    ranges.add(new ByteRange(start, Math.min(end, length - 1)));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Document sink that tees decoded bytes into an optional downstream sink
+ * (usually the servlet response) and keeps a copy for the cache. The copy is
+ * dropped as soon as it grows past {@code limit}, so per-request heap use stays
+ * bounded however large the document is. With a {@link PdfMemoryBudget}
+ * reservation the copy is also dropped when it outgrows the reservation and
+ * the budget has no more room; the reservation is then given back at once.
+ * A SHA-256 of everything written is kept either way.
+ *
+ * If the downstream client goes away mid-transfer while a copy is still being
+ * kept, the fetch carries on so callers sharing it still get the document.
+ *
+ * Given a relay executor, the downstream is written from the copy on one of
+ * its threads, so the transfer runs at Laserfiche's pace rather than the
+ * client's while a copy is kept. Past that, writes wait for the relay to catch
+ * up and then go downstream directly. {@link #close()} waits for the relay to
+ * finish and gives back the reservation.
+ */
+class CapturingSink implements LaserFicheClient.DocumentSink, AutoCloseable {
+
+    private final LaserFicheClient.DocumentSink downstream;
+    private final int limit;
+    private final PdfMemoryBudget.Reservation reservation;
+    private final Executor relayExecutor;
+
+    // Guards the copy while the relay reads it
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private byte[] buffer;
+    private int size;
+    private boolean overflowed;
+    private OutputStream target;
+    private boolean relaying;
+    private int relayed;
+    private boolean stopping;
+
+    private volatile IOException downstreamFailure;
+    private MessageDigest digest;
+    private String contentHash;
+
+    /**
+     * @param downstream sink to stream to, or null to only capture
+     * @param limit      largest document to keep a copy of
+     */
+    CapturingSink(LaserFicheClient.DocumentSink downstream, int limit) {
+        this(downstream, limit, null);
+    }
+
+    /**
+     * @param reservation what the copy may hold without asking the budget for more, or null
+     */
+    CapturingSink(LaserFicheClient.DocumentSink downstream, int limit, PdfMemoryBudget.Reservation reservation) {
+        this(downstream, limit, reservation, null);
+    }
+
+    /**
+     * @param relayExecutor runs the relay to {@code downstream}, or null to write it inline
+     */
+    CapturingSink(LaserFicheClient.DocumentSink downstream, int limit, PdfMemoryBudget.Reservation reservation,
+                  Executor relayExecutor) {
+        this.downstream = downstream;
+        this.limit = limit;
+        this.reservation = reservation;
+        this.relayExecutor = relayExecutor;
+    }
+
+    @Override
+    public OutputStream open() throws IOException {
+        target = downstream != null ? downstream.open() : null;
+        overflowed = limit <= 0;
+        buffer = overflowed ? null : new byte[Math.min(limit, 64 * 1024)];
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        if (target != null && !overflowed && relayExecutor != null) {
+            relaying = true;
+            try {
+                relayExecutor.execute(this::relay);
+            } catch (RejectedExecutionException e) {
+                relaying = false;
+            }
+        }
+
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                digest.update(b, off, len);
+                if (isRelaying()) {
+                    if (relayCapture(b, off, len)) {
+                        return;
+                    }
+                    // The copy is gone, so the rest goes downstream from here
+                    if (downstreamFailure != null) {
+                        throw downstreamFailure;
+                    }
+                }
+                if (target != null && downstreamFailure == null) {
+                    try {
+                        target.write(b, off, len);
+                    } catch (IOException e) {
+                        downstreamFailed(e);
+                    }
+                }
+                capture(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                // The relay flushes whenever it has caught up
+                if (target != null && downstreamFailure == null && !isRelaying()) {
+                    try {
+                        target.flush();
+                    } catch (IOException e) {
+                        downstreamFailed(e);
+                    }
+                }
+            }
+        };
+    }
+
+    private void downstreamFailed(IOException e) throws IOException {
+        downstreamFailure = e;
+        if (overflowed) {
+            // Nobody else can use this transfer, stop it now
+            throw e;
+        }
+    }
+
+    private void capture(byte[] b, int off, int len) throws IOException {
+        if (overflowed) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (append(b, off, len)) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        dropCopy();
+        if (downstreamFailure != null) {
+            throw downstreamFailure;
+        }
+    }
+
+    /**
+     * Capture while the relay sends the copy downstream. Returns false once the
+     * copy has overflowed, after the relay has sent all of it and stopped.
+     */
+    private boolean relayCapture(byte[] b, int off, int len) throws IOException {
+        lock.lock();
+        try {
+            if (append(b, off, len)) {
+                changed.signalAll();
+                return true;
+            }
+            stopping = true;
+            changed.signalAll();
+            while (relaying) {
+                changed.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the client to catch up");
+        } finally {
+            lock.unlock();
+        }
+        dropCopy();
+        return false;
+    }
+
+    /**
+     * Append to the copy if it stays within the limit and the reservation;
+     * call with the lock held.
+     */
+    private boolean append(byte[] b, int off, int len) {
+        int needed = size + len;
+        // Grown in doubling steps, as the buffer itself grows
+        if (needed > limit || reservation != null && needed > reservation.getBytes()
+                && !reservation.growTo(Math.min(limit, Math.max(needed, 2 * reservation.getBytes())))) {
+            return false;
+        }
+        if (needed > buffer.length) {
+            buffer = Arrays.copyOf(buffer, (int) Math.min(limit, Math.max(needed, 2L * buffer.length)));
+        }
+        System.arraycopy(b, off, buffer, size, len);
+        size = needed;
+        return true;
+    }
+
+    private void dropCopy() {
+        lock.lock();
+        try {
+            overflowed = true;
+            buffer = null;
+        } finally {
+            lock.unlock();
+        }
+        if (reservation != null) {
+            reservation.close();
+        }
+    }
+
+    /**
+     * Write the copy downstream as it grows. Bytes below {@code size} never
+     * change, so they are written outside the lock even if the buffer has been
+     * replaced by a larger one meanwhile.
+     */
+    private void relay() {
+        try {
+            while (true) {
+                byte[] chunk;
+                int from;
+                int to;
+                lock.lock();
+                try {
+                    chunk = buffer;
+                    from = relayed;
+                    to = size;
+                } finally {
+                    lock.unlock();
+                }
+                if (from < to) {
+                    target.write(chunk, from, to - from);
+                    lock.lock();
+                    try {
+                        relayed = to;
+                    } finally {
+                        lock.unlock();
+                    }
+                    continue;
+                }
+
+                // Caught up: send what the container holds while waiting for more
+                target.flush();
+                lock.lock();
+                try {
+                    while (relayed == size && !stopping) {
+                        changed.await();
+                    }
+                    if (relayed == size) {
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (IOException e) {
+            downstreamFailure = e;
+        } catch (InterruptedException e) {
+            downstreamFailure = new InterruptedIOException("Relay interrupted");
+        } finally {
+            lock.lock();
+            try {
+                relaying = false;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean isRelaying() {
+        lock.lock();
+        try {
+            return relaying;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the relay, if any, has written everything downstream, then
+     * give back the reservation.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            stopping = true;
+            changed.signalAll();
+            while (relaying) {
+                changed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (reservation != null) {
+            reservation.close();
+        }
+    }
+
+    /**
+     * Why writing to the downstream sink stopped, or null if it received everything.
+     * With a relay, only final once {@link #close()} has returned.
+     */
+    IOException getDownstreamFailure() {
+        return downstreamFailure;
+    }
+
+    /**
+     * Hash of the complete document in {@link PdfDocument#getContentHash()} form,
+     * or null if nothing was written. Only valid once the transfer has finished.
+     */
+    String getContentHash() {
+        if (contentHash == null && digest != null) {
+            contentHash = Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+        }
+        return contentHash;
+    }
+
+    /**
+     * True once the document has grown past the limit and no copy is kept.
+     */
+    boolean isOverflowed() {
+        lock.lock();
+        try {
+            return overflowed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The complete document, or null if nothing was written or it exceeded the limit.
+     */
+    byte[] getCaptured() {
+        lock.lock();
+        try {
+            return overflowed || buffer == null ? null : Arrays.copyOf(buffer, size);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,55 +1,168 @@
 package com.example.CUSTOMERDATASEARCH;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
-import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.GCMParameterSpec;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @RestController
 @CrossOrigin(origins = "*")
 @RequestMapping("/api/customers")
-public class CustomerController {
+public class CustomerController implements DisposableBean {
 
     private static final Logger log = LoggerFactory.getLogger(CustomerController.class);
 
     @Value("${laserfiche.api.url}")
     private String laserFicheApiUrl;
-    
-    @Value("${laserfiche.api.username}")
-    private String apiUsername;
-    
-    @Value("${laserfiche.api.password}")
-    private String apiPassword;
+
+    @Value("${pdf.download.async.write-buffer:256KB}")
+    private DataSize asyncWriteBuffer;
+
+    @Value("${pdf.download.async.timeout:5m}")
+    private Duration asyncTimeout;
+
+    @Value("${pdf.batch.max-ids:50}")
+    private int batchMaxIds;
+
+    @Value("${pdf.batch.concurrency:4}")
+    private int batchConcurrency;
+
+    // The first is the default for downloads without a type, batches, prefetches and /info
+    @Value("${pdf.documents.types:national id}")
+    private List<String> documentTypes = List.of(LaserFicheClient.DEFAULT_DOCUMENT_TYPE);
+
+    @Value("${pdf.documents.concurrency:4}")
+    private int documentsConcurrency;
+
+    @Value("${pdf.documents.deadline:2s}")
+    private Duration documentsDeadline;
+
+    @Value("${pdf.batch.drain-timeout:30s}")
+    private Duration batchDrainTimeout = Duration.ofSeconds(30);
+
+    // Batch fetches, document lookups, prefetches and client relays wait on Laserfiche
+    // or a client; the per-request semaphores and the prefetcher bound how many run at
+    // once. Drained on shutdown, see destroy()
+    private final ExecutorService batchExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     private final SessionController sessionController;
-    private final RestTemplate restTemplate;
+    private final LaserFicheClient laserFicheClient;
+    private final PdfCache pdfCache;
+    private final DocumentMetadataIndex metadataIndex;
+    private final LaserFicheGuard laserFicheGuard;
+    private final PdfMemoryBudget memoryBudget;
+    // Only present with pdf.download.async.enabled=true
+    private final LaserFicheAsyncClient laserFicheAsyncClient;
+    // Only present with pdf.prefetch.enabled=true
+    private final PdfPrefetcher pdfPrefetcher;
+    // Only present with pdf.sendfile.enabled=true
+    private final PdfSendfileStore pdfSendfileStore;
+
+    // Concurrent fetches of the same CaseID and document type share one upstream call
+    private final SingleFlight<String, SharedFetch> pdfFlights = new SingleFlight<>();
 
-    public CustomerController(SessionController sessionController, RestTemplate restTemplate) {
+    private final CustomerIdDecryptor customerIdDecryptor = new CustomerIdDecryptor();
+
+    private final DownloadMetrics metrics;
+
+    public CustomerController(SessionController sessionController, LaserFicheClient laserFicheClient,
+                              PdfCache pdfCache, DocumentMetadataIndex metadataIndex,
+                              LaserFicheGuard laserFicheGuard, PdfMemoryBudget memoryBudget,
+                              ObjectProvider<LaserFicheAsyncClient> laserFicheAsyncClient,
+                              ObjectProvider<PdfPrefetcher> pdfPrefetcher,
+                              ObjectProvider<PdfSendfileStore> pdfSendfileStore,
+                              MeterRegistry meterRegistry) {
         this.sessionController = sessionController;
-        this.restTemplate = restTemplate;
+        this.laserFicheClient = laserFicheClient;
+        this.pdfCache = pdfCache;
+        this.metadataIndex = metadataIndex;
+        this.laserFicheGuard = laserFicheGuard;
+        this.memoryBudget = memoryBudget;
+        this.laserFicheAsyncClient = laserFicheAsyncClient.getIfAvailable();
+        this.pdfPrefetcher = pdfPrefetcher.getIfAvailable();
+        this.pdfSendfileStore = pdfSendfileStore.getIfAvailable();
+        this.metrics = new DownloadMetrics(meterRegistry);
+
+        FunctionCounter.builder("laserfiche.fetch.coalesced", pdfFlights, SingleFlight::getLeaderCount)
+                .tag("role", "leader").description("Callers that ran the upstream fetch").register(meterRegistry);
+        FunctionCounter.builder("laserfiche.fetch.coalesced", pdfFlights, SingleFlight::getFollowerCount)
+                .tag("role", "follower").description("Callers that shared another caller's fetch").register(meterRegistry);
+        Gauge.builder("laserfiche.fetch.in.flight", pdfFlights, SingleFlight::getInFlightCount)
+                .register(meterRegistry);
+        Gauge.builder("laserfiche.fetch.dedup.ratio", pdfFlights, CustomerController::dedupRatio)
+                .description("Share of fetch callers served by another caller's upstream call").register(meterRegistry);
+    }
+
+    /**
+     * Let batch downloads, lookups and relays in progress finish, for up to
+     * {@code pdf.batch.drain-timeout}, then interrupt whatever is left.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        batchExecutor.shutdown();
+        if (!batchExecutor.awaitTermination(batchDrainTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("Background PDF work still running after {}, interrupting it", batchDrainTimeout);
+            batchExecutor.shutdownNow();
+        }
+    }
+
+    private static double dedupRatio(SingleFlight<?, ?> flights) {
+        long followers = flights.getFollowerCount();
+        long total = flights.getLeaderCount() + followers;
+        return total == 0 ? 0.0 : (double) followers / total;
     }
 
     @GetMapping("/download/{encryptedId}")
+    @RateLimited("download")
     public void downloadCustomerPdf(
             @PathVariable String encryptedId,
             @RequestParam String sessionId,
             @RequestParam(defaultValue = "false") boolean download,
+            @RequestParam(required = false) String type,
+            HttpServletRequest request,
             HttpServletResponse response
     ) {
+        // Finished here unless handed over to downloadAsync
+        DownloadMetrics.Download timing = metrics.startDownload();
+        boolean async = false;
         try {
             // Validate session
-            SecretKey aesKey = sessionController.getSessionKey(sessionId);
+            SecretKey aesKey = lookupSession(sessionId);
             if (aesKey == null) {
+                timing.outcome("forbidden");
                 response.sendError(HttpServletResponse.SC_FORBIDDEN, "Invalid session");
                 return;
             }
@@ -57,113 +170,869 @@ public class CustomerController {
             // Decrypt customer ID (this becomes the CaseID for Laserfiche)
             int customerId = decryptCustomerId(encryptedId, aesKey);
             if (customerId == -1) {
+                timing.outcome("invalid_id");
                 response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid customer ID");
                 return;
             }
 
-            // Fetch PDF from Laserfiche API
-            byte[] pdfBytes = fetchPdfFromLaserFiche(customerId);
-            if (pdfBytes == null || pdfBytes.length == 0) {
-                response.sendError(HttpServletResponse.SC_NOT_FOUND, "PDF not found for customer " + customerId);
+            String documentType = type == null ? defaultDocumentType() : resolveDocumentType(type);
+            if (documentType == null) {
+                timing.outcome("invalid_type");
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown document type");
                 return;
             }
 
-            // Serve PDF directly
-            servePdfBytes(customerId, pdfBytes, download, response);
+            // Serve a document prefetched for this session, or repeat views from the cache
+            String cacheKey = PdfCache.cacheKey(customerId, documentType);
+            PdfDocument cached = pdfPrefetcher != null ? pdfPrefetcher.take(sessionId, cacheKey) : null;
+            if (cached != null) {
+                timing.source(DownloadMetrics.SOURCE_PREFETCH);
+            } else {
+                cached = pdfCache.get(cacheKey);
+                timing.source(cached != null ? DownloadMetrics.SOURCE_CACHE : DownloadMetrics.SOURCE_LASERFICHE);
+            }
+            // The connector sends a sendfile body after we return, so that needs no async writer
+            boolean sendfile = cached != null && pdfSendfileStore != null && pdfSendfileStore.accepts(request, cached);
+            if (laserFicheAsyncClient != null && !sendfile) {
+                downloadAsync(customerId, documentType, cacheKey, cached, download, request, response, timing);
+                async = true;
+                return;
+            }
+            if (cached == null && needsWholeDocument(request)) {
+                // Validators and byte ranges need the complete document before the first byte goes out
+                SharedFetch shared = fetchPdfShared(customerId, documentType, cacheKey, null).getValue();
+                if (shared.result == null) {
+                    timing.outcome("not_found");
+                    response.sendError(HttpServletResponse.SC_NOT_FOUND, "PDF not found for customer " + customerId);
+                    return;
+                }
+                // Still null if the document is too large to hold; it is then streamed in full
+                cached = shared.document;
+            }
+            if (cached != null) {
+                timing.bytes(servePdfBytes(customerId, documentType, cached, download, request, response, null));
+                return;
+            }
+
+            // Stream PDF from Laserfiche API straight to the browser; headers are
+            // only written once the first decoded bytes are available
+            SingleFlight.Outcome<SharedFetch> fetched = fetchPdfShared(customerId, documentType, cacheKey,
+                    () -> openPdfStream(customerId, documentType, download, response));
+            SharedFetch shared = fetched.getValue();
+            LaserFicheClient.FetchResult result = shared.result;
+
+            if (fetched.isShared() && result != null) {
+                if (shared.document != null) {
+                    timing.bytes(servePdfBytes(customerId, documentType, shared.document, download, request, response, null));
+                    return;
+                }
+                // Too large to have been kept in memory; stream our own copy
+                result = fetchPdfFromLaserFiche(customerId, documentType,
+                        () -> openPdfStream(customerId, documentType, download, response));
+            }
 
+            if (result == null || !result.hasDocument()) {
+                timing.outcome("not_found");
+                if (!response.isCommitted()) {
+                    response.sendError(HttpServletResponse.SC_NOT_FOUND, "PDF not found for customer " + customerId);
+                }
+                return;
+            }
+
+            timing.bytes(result.getBytesWritten());
+            log.info("Successfully served PDF for customer {} ({} bytes, download={})",
+                    customerId, result.getBytesWritten(), download);
+
+        } catch (LaserFicheUnavailableException e) {
+            // Only reached on a cache miss: cached documents never wait on Laserfiche
+            timing.outcome("unavailable");
+            log.info("Refused download for encrypted ID {}: {}", encryptedId, e.getMessage());
+            try {
+                if (!response.isCommitted()) {
+                    response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+                    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Document service busy, retry later");
+                }
+            } catch (IOException ignored) {}
         } catch (Exception e) {
+            timing.outcome("error");
             log.error("Error serving customer PDF for encrypted ID: {}", encryptedId, e);
             try {
-                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Server error");
+                if (!response.isCommitted()) {
+                    response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Server error");
+                }
             } catch (IOException ignored) {}
+        } finally {
+            if (!async) {
+                timing.finish();
+            }
         }
     }
 
-    private byte[] fetchPdfFromLaserFiche(int caseId) {
+    /**
+     * Non-blocking form of the download. The request thread only starts the
+     * work: Laserfiche is read on the async client's I/O threads and the
+     * browser is written from container callbacks whenever its socket can take
+     * more, so a slow client holds queued bytes rather than a thread.
+     */
+    private void downloadAsync(int customerId, String documentType, String cacheKey, PdfDocument cached, boolean download,
+                               HttpServletRequest request, HttpServletResponse response,
+                               DownloadMetrics.Download timing) throws IOException {
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(asyncTimeout.toMillis());
+        AsyncPdfResponseWriter writer = new AsyncPdfResponseWriter(asyncContext, asyncWriteBuffer.toBytes());
+        writer.whenComplete(() -> {
+            if (writer.getFailure() != null) {
+                timing.outcome("client_aborted");
+            }
+            timing.bytes(writer.getBytesWritten());
+            timing.finish();
+        });
+
+        if (cached != null) {
+            servePdfBytes(customerId, documentType, cached, download, request, response, writer);
+            return;
+        }
+
+        // Validators and byte ranges need the complete document before the first byte goes out
+        boolean wholeDocument = needsWholeDocument(request);
+        if (!wholeDocument) {
+            writer.beforeFirstWrite(() -> setPdfHeaders(customerId, documentType, download, response));
+        }
+        pdfFlights.executeAsync(cacheKey, () -> fetchPdfAsync(customerId, documentType, cacheKey,
+                        wholeDocument ? null : writer))
+                .whenComplete((fetched, failure) -> {
+                    try {
+                        if (failure != null) {
+                            throw failure instanceof CompletionException ? failure.getCause() : failure;
+                        }
+                        SharedFetch shared = fetched.getValue();
+                        if (shared.result == null) {
+                            timing.outcome("not_found");
+                            writer.abort(HttpServletResponse.SC_NOT_FOUND, "PDF not found for customer " + customerId);
+                        } else if (!fetched.isShared() && !wholeDocument) {
+                            writer.finish();
+                            log.info("Successfully served PDF for customer {} ({} bytes, download={})",
+                                    customerId, shared.result.getBytesWritten(), download);
+                        } else if (shared.document != null) {
+                            servePdfBytes(customerId, documentType, shared.document, download, request, response, writer);
+                        } else {
+                            // Too large to have been kept in memory; stream our own copy
+                            writer.beforeFirstWrite(() -> setPdfHeaders(customerId, documentType, download, response));
+                            streamPdfAsync(customerId, documentType, download, writer, timing);
+                        }
+                    } catch (LaserFicheUnavailableException e) {
+                        abortUnavailable(customerId, writer, timing, e);
+                    } catch (Throwable e) {
+                        timing.outcome("error");
+                        log.error("Error serving customer PDF for customer {}", customerId, e);
+                        writer.abort(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Server error");
+                    }
+                });
+    }
+
+    private static void abortUnavailable(int customerId, AsyncPdfResponseWriter writer,
+                                         DownloadMetrics.Download timing, LaserFicheUnavailableException e) {
+        timing.outcome("unavailable");
+        log.info("Refused download for customer {}: {}", customerId, e.getMessage());
+        writer.abort(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Document service busy, retry later",
+                HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+    }
+
+    /**
+     * Async counterpart of {@link #fetchPdfShared}'s loader: streams into
+     * {@code clientWriter} (when not null) at the pace the client reads, keeps
+     * a copy for the cache and records metadata. A failed call yields an
+     * empty {@link SharedFetch} rather than a failed future; only a call
+     * {@link LaserFicheGuard} or {@link PdfMemoryBudget} refuses fails it.
+     */
+    private CompletableFuture<SharedFetch> fetchPdfAsync(int caseId, String documentType, String cacheKey,
+                                                         AsyncPdfResponseWriter clientWriter) {
+        int limit = captureLimit();
+        CompletableFuture<PdfMemoryBudget.Reservation> reserved = memoryBudget.reserveAsync(expectedCapture(cacheKey, limit));
+        Function<PdfMemoryBudget.Reservation, CompletableFuture<SharedFetch>> fetch = reservation ->
+                fetchPdfAsync(caseId, documentType, cacheKey, clientWriter, limit, reservation)
+                        .whenComplete((shared, failure) -> reservation.close());
+        // A queued reservation is granted on whichever thread freed the room; start the fetch elsewhere
+        return reserved.isDone() ? reserved.thenCompose(fetch) : reserved.thenComposeAsync(fetch, batchExecutor);
+    }
+
+    private CompletableFuture<SharedFetch> fetchPdfAsync(int caseId, String documentType, String cacheKey,
+                                                         AsyncPdfResponseWriter clientWriter, int captureLimit,
+                                                         PdfMemoryBudget.Reservation reservation) {
+        CompletableFuture<LaserFicheGuard.Permit> admitted = laserFicheGuard.acquireAsync();
+        Function<LaserFicheGuard.Permit, CompletableFuture<SharedFetch>> fetch = permit ->
+                fetchPdfAsync(caseId, documentType, cacheKey, clientWriter, captureLimit, reservation, permit);
+        // A queued permit is granted on whichever thread finished a call; start the fetch elsewhere
+        return admitted.isDone() ? admitted.thenCompose(fetch) : admitted.thenComposeAsync(fetch, batchExecutor);
+    }
+
+    private CompletableFuture<SharedFetch> fetchPdfAsync(int caseId, String documentType, String cacheKey,
+                                                         AsyncPdfResponseWriter clientWriter, int captureLimit,
+                                                         PdfMemoryBudget.Reservation reservation,
+                                                         LaserFicheGuard.Permit permit) {
+        log.info("Fetching PDF from Laserfiche API for CaseID: {} ({})", caseId, documentType);
+        long started = System.nanoTime();
+        CapturingSink capture = new CapturingSink(null, captureLimit, reservation);
+        OutputStream captureStream;
         try {
-            log.info("Fetching PDF from Laserfiche API for CaseID: {}", caseId);
-            
-            // Create request headers with basic auth
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBasicAuth(apiUsername, apiPassword);
-            
-            // Create request body
-            LaserFicheRequest requestBody = new LaserFicheRequest();
-            requestBody.setCaseID(String.valueOf(caseId));
-            requestBody.setRequestID("");  // Empty as shown in your example
-            requestBody.setDocumentType("national id");  // As shown in your example
-            
-            HttpEntity<LaserFicheRequest> entity = new HttpEntity<>(requestBody, headers);
-            
-            // Call Laserfiche API
-            ResponseEntity<LaserFicheResponse> response = restTemplate.postForEntity(
-                laserFicheApiUrl, entity, LaserFicheResponse.class);
-            
-            if (response.getBody() != null) {
-                LaserFicheResponse apiResponse = response.getBody();
-                
-                // Check response code
-                if (!"200".equals(apiResponse.getResponseCode()) && !"0".equals(apiResponse.getResponseCode())) {
-                    log.warn("Laserfiche API returned error code {} for CaseID {}: {}", 
-                            apiResponse.getResponseCode(), caseId, apiResponse.getRespondMessage());
-                    return null;
+            captureStream = capture.open();
+        } catch (IOException e) {
+            permit.cancelled();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return laserFicheAsyncClient.fetchDocument(caseId, documentType, (chunk, resume) -> {
+            captureStream.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+            if (clientWriter == null) {
+                return true;
+            }
+            if (clientWriter.getFailure() != null && capture.isOverflowed()) {
+                // Nobody else can use this transfer, stop it now
+                throw new IOException("Client went away", clientWriter.getFailure());
+            }
+            if (!capture.isOverflowed()) {
+                // Keep reading at Laserfiche's pace for whoever shares this fetch;
+                // the writer holds what the client has not taken yet
+                clientWriter.offer(chunk, null);
+                return true;
+            }
+            return clientWriter.offer(chunk, resume);
+        }).handle((result, failure) -> {
+            boolean clientGone = clientWriter != null && clientWriter.getFailure() != null;
+            if (clientGone) {
+                log.info("Client went away while streaming CaseID {}: {}", caseId,
+                        clientWriter.getFailure().getMessage());
+            }
+            reportFetch(permit, result, failure, clientGone, System.nanoTime() - started);
+            if (failure != null) {
+                if (!clientGone) {
+                    log.error("Failed to fetch PDF from Laserfiche API for CaseID {}: {}", caseId, failure.getMessage(), failure);
                 }
-                
-                // Get StreamBytes (should be BASE64 PDF)
-                String streamBytes = apiResponse.getStreamBytes();
-                if (streamBytes != null && !streamBytes.trim().isEmpty()) {
+                return new SharedFetch(null, null);
+            }
+            logFetchResult(caseId, result);
+
+            metadataIndex.record(cacheKey, result, capture.getContentHash());
+            if (!result.hasDocument()) {
+                return new SharedFetch(null, null);
+            }
+            return new SharedFetch(result, cacheFetchedPdf(cacheKey, result, capture));
+        });
+    }
+
+    /**
+     * Stream a document to the client without sharing or caching it.
+     */
+    private void streamPdfAsync(int caseId, String documentType, boolean download, AsyncPdfResponseWriter writer,
+                                DownloadMetrics.Download timing) {
+        CompletableFuture<LaserFicheGuard.Permit> admitted = laserFicheGuard.acquireAsync();
+        BiConsumer<LaserFicheGuard.Permit, Throwable> stream = (permit, refused) -> {
+            if (refused != null) {
+                Throwable cause = refused instanceof CompletionException ? refused.getCause() : refused;
+                abortUnavailable(caseId, writer, timing, (LaserFicheUnavailableException) cause);
+                return;
+            }
+            streamPdfAsync(caseId, documentType, download, writer, timing, permit);
+        };
+        // A queued permit is granted on whichever thread finished a call; start the fetch elsewhere
+        if (admitted.isDone()) {
+            admitted.whenComplete(stream);
+        } else {
+            admitted.whenCompleteAsync(stream, batchExecutor);
+        }
+    }
+
+    private void streamPdfAsync(int caseId, String documentType, boolean download, AsyncPdfResponseWriter writer,
+                                DownloadMetrics.Download timing, LaserFicheGuard.Permit permit) {
+        long started = System.nanoTime();
+        laserFicheAsyncClient.fetchDocument(caseId, documentType, writer::offer)
+                .whenComplete((result, failure) -> {
+                    boolean clientGone = writer.getFailure() != null;
+                    reportFetch(permit, result, failure, clientGone, System.nanoTime() - started);
+                    if (failure != null && clientGone) {
+                        log.info("Client went away while streaming CaseID {}: {}", caseId, writer.getFailure().getMessage());
+                    } else if (failure != null) {
+                        log.error("Failed to fetch PDF from Laserfiche API for CaseID {}: {}", caseId, failure.getMessage(), failure);
+                    } else {
+                        logFetchResult(caseId, result);
+                    }
+                    if (failure != null || !result.hasDocument()) {
+                        timing.outcome("not_found");
+                        writer.abort(HttpServletResponse.SC_NOT_FOUND, "PDF not found for customer " + caseId);
+                        return;
+                    }
+                    writer.finish();
+                    log.info("Successfully served PDF for customer {} ({} bytes, download={})",
+                            caseId, result.getBytesWritten(), download);
+                });
+    }
+
+    /**
+     * Download several customers' PDFs as one ZIP. Documents are fetched in
+     * parallel (at most {@code pdf.batch.concurrency} at a time) and each is
+     * written to the archive as soon as it arrives; manifest.csv at the end
+     * lists every requested ID with its outcome.
+     */
+    @PostMapping("/download/batch")
+    @RateLimited("batch")
+    public void downloadCustomerPdfBatch(
+            @RequestParam String sessionId,
+            @RequestBody List<String> encryptedIds,
+            HttpServletResponse response
+    ) {
+        List<Future<BatchEntry>> pending = new ArrayList<>();
+        try {
+            SecretKey aesKey = lookupSession(sessionId);
+            if (aesKey == null) {
+                response.sendError(HttpServletResponse.SC_FORBIDDEN, "Invalid session");
+                return;
+            }
+            if (encryptedIds == null || encryptedIds.isEmpty() || encryptedIds.size() > batchMaxIds) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                        "Between 1 and " + batchMaxIds + " customer IDs are required");
+                return;
+            }
+
+            Semaphore permits = new Semaphore(Math.max(1, batchConcurrency));
+            ExecutorCompletionService<BatchEntry> completed = new ExecutorCompletionService<>(batchExecutor);
+            for (int i = 0; i < encryptedIds.size(); i++) {
+                BatchEntry entry = new BatchEntry(i + 1, encryptedIds.get(i));
+                pending.add(completed.submit(() -> {
+                    permits.acquire();
                     try {
-                        // Decode BASE64 to PDF bytes
-                        byte[] pdfBytes = Base64.getDecoder().decode(streamBytes);
-                        log.info("Successfully fetched PDF for CaseID {} ({} bytes)", caseId, pdfBytes.length);
-                        return pdfBytes;
-                    } catch (IllegalArgumentException e) {
-                        log.error("Failed to decode BASE64 StreamBytes for CaseID {}: {}", caseId, e.getMessage());
-                        return null;
+                        return loadBatchEntry(entry, aesKey);
+                    } catch (LaserFicheUnavailableException e) {
+                        entry.error = "Laserfiche unavailable, retry later";
+                        return entry;
+                    } catch (Exception e) {
+                        log.error("Failed to load batch entry {}: {}", entry.index, e.getMessage(), e);
+                        entry.error = "Laserfiche fetch failed";
+                        return entry;
+                    } finally {
+                        permits.release();
                     }
-                } else {
-                    log.warn("Empty StreamBytes returned for CaseID {}", caseId);
+                }));
+            }
+
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=\"customers_" + System.currentTimeMillis() + ".zip\"");
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
+
+            List<BatchEntry> entries = new ArrayList<>(encryptedIds.size());
+            Set<String> written = new HashSet<>();
+            try (ZipOutputStream zip = new ZipOutputStream(response.getOutputStream())) {
+                // PDFs are already compressed
+                zip.setLevel(Deflater.BEST_SPEED);
+                for (int i = 0; i < encryptedIds.size(); i++) {
+                    BatchEntry entry = completed.take().get();
+                    entries.add(entry);
+                    writeBatchEntry(entry, zip, written);
                 }
-            } else {
-                log.warn("Null response body from Laserfiche API for CaseID {}", caseId);
+                zip.putNextEntry(new ZipEntry("manifest.csv"));
+                zip.write(batchManifest(entries).getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
             }
-            
+
+            long failed = entries.stream().filter(entry -> entry.error != null).count();
+            log.info("Served batch of {} PDFs ({} failed)", entries.size(), failed);
+
         } catch (Exception e) {
-            log.error("Failed to fetch PDF from Laserfiche API for CaseID {}: {}", caseId, e.getMessage(), e);
+            log.error("Error serving batch PDF download", e);
+            pending.forEach(future -> future.cancel(true));
+            try {
+                if (!response.isCommitted()) {
+                    response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Server error");
+                }
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /**
+     * Decrypt and fetch one batch entry. Documents too large for the cache are
+     * left for {@link #writeBatchEntry} to stream straight into the archive.
+     */
+    private BatchEntry loadBatchEntry(BatchEntry entry, SecretKey aesKey) throws Exception {
+        entry.customerId = decryptCustomerId(entry.encryptedId, aesKey);
+        if (entry.customerId == -1) {
+            entry.error = "Invalid customer ID";
+            return entry;
+        }
+
+        String cacheKey = PdfCache.cacheKey(entry.customerId, defaultDocumentType());
+        entry.document = pdfCache.get(cacheKey);
+        DocumentMetadata known = metadataIndex.peek(cacheKey);
+        if (entry.document == null && known != null && known.getSize() > pdfCache.getMaxEntryBytes()) {
+            // Known to be too large to keep; don't download it twice
+            return entry;
+        }
+        if (entry.document == null) {
+            SharedFetch shared = fetchPdfShared(entry.customerId, defaultDocumentType(), cacheKey, null)
+                    .getValue();
+            if (shared.result == null) {
+                entry.error = "PDF not found";
+            }
+            entry.document = shared.document;
+        }
+        return entry;
+    }
+
+    private void writeBatchEntry(BatchEntry entry, ZipOutputStream zip, Set<String> written) throws IOException {
+        if (entry.error != null) {
+            return;
         }
-        
+        String name = "customer_" + entry.customerId + "_document.pdf";
+        if (!written.add(name)) {
+            entry.duplicate = true;
+            return;
+        }
+
+        if (entry.document != null) {
+            zip.putNextEntry(new ZipEntry(name));
+            zip.write(entry.document.getContent());
+            zip.closeEntry();
+            entry.size = entry.document.getSize();
+            return;
+        }
+
+        // Too large to have been kept in memory; stream it into the archive
+        boolean[] opened = { false };
+        LaserFicheClient.FetchResult result;
+        try {
+            result = fetchPdfFromLaserFiche(entry.customerId, defaultDocumentType(), () -> {
+                zip.putNextEntry(new ZipEntry(name));
+                opened[0] = true;
+                return zip;
+            });
+        } catch (LaserFicheUnavailableException e) {
+            entry.error = "Laserfiche unavailable, retry later";
+            return;
+        }
+        if (opened[0]) {
+            // A transfer that failed part way leaves a short entry; the manifest says so
+            zip.closeEntry();
+        }
+        if (result == null) {
+            entry.error = "Laserfiche fetch failed";
+        } else if (!result.hasDocument()) {
+            entry.error = "PDF not found";
+        } else {
+            entry.size = result.getBytesWritten();
+        }
+    }
+
+    private static String batchManifest(List<BatchEntry> entries) {
+        StringBuilder manifest = new StringBuilder("index,customerId,status,bytes,detail\r\n");
+        entries.stream()
+                .sorted(Comparator.comparingInt(entry -> entry.index))
+                .forEach(entry -> manifest.append(entry.index).append(',')
+                        .append(entry.customerId == -1 ? "" : String.valueOf(entry.customerId)).append(',')
+                        .append(entry.duplicate ? "duplicate" : entry.error == null ? "ok" : "failed").append(',')
+                        .append(entry.size).append(',')
+                        .append(entry.error == null ? "" : entry.error).append("\r\n"));
+        return manifest.toString();
+    }
+
+    /**
+     * Fetch a CaseID's document of the given type, streaming the decoded bytes into {@code sink}.
+     * Returns null when the call fails; when Laserfiche answered without a
+     * document the result says so through {@code hasDocument()}.
+     *
+     * @throws LaserFicheUnavailableException if {@link LaserFicheGuard} refuses the call
+     */
+    private LaserFicheClient.FetchResult fetchPdfFromLaserFiche(int caseId, String documentType,
+                                                                LaserFicheClient.DocumentSink sink) {
+        LaserFicheGuard.Permit permit = laserFicheGuard.acquire();
+        long started = System.nanoTime();
+        TrackedSink tracked = new TrackedSink(sink);
+        try {
+            log.info("Fetching PDF from Laserfiche API for CaseID: {} ({})", caseId, documentType);
+
+            LaserFicheClient.FetchResult result = laserFicheClient.fetchDocument(caseId, documentType, tracked);
+            permit.completed(result.getUpstreamNanos());
+            metrics.recordFetch(DownloadMetrics.BLOCKING, result, System.nanoTime() - started);
+            logFetchResult(caseId, result);
+            return result;
+
+        } catch (Exception e) {
+            if (tracked.failure != null) {
+                // The client went away, not Laserfiche
+                permit.cancelled();
+                metrics.recordCancelledFetch(DownloadMetrics.BLOCKING, System.nanoTime() - started);
+                log.info("Client went away while streaming CaseID {}: {}", caseId, tracked.failure.getMessage());
+            } else {
+                permit.failed(System.nanoTime() - started);
+                metrics.recordFetch(DownloadMetrics.BLOCKING, null, System.nanoTime() - started);
+                log.error("Failed to fetch PDF from Laserfiche API for CaseID {}: {}", caseId, e.getMessage(), e);
+            }
+        }
+
         return null;
     }
 
-    private void servePdfBytes(int customerId, byte[] pdfBytes, boolean download, HttpServletResponse response) throws IOException {
-        // Set PDF headers
+    private void reportFetch(LaserFicheGuard.Permit permit, LaserFicheClient.FetchResult result,
+                             Throwable failure, boolean clientGone, long elapsedNanos) {
+        if (failure == null) {
+            permit.completed(result.getUpstreamNanos());
+            metrics.recordFetch(DownloadMetrics.ASYNC, result, elapsedNanos);
+        } else if (clientGone) {
+            // We stopped the transfer ourselves
+            permit.cancelled();
+            metrics.recordCancelledFetch(DownloadMetrics.ASYNC, elapsedNanos);
+        } else {
+            permit.failed(elapsedNanos);
+            metrics.recordFetch(DownloadMetrics.ASYNC, null, elapsedNanos);
+        }
+    }
+
+    private static void logFetchResult(int caseId, LaserFicheClient.FetchResult result) {
+        // Check response code
+        if (!result.isSuccess()) {
+            log.warn("Laserfiche API returned error code {} for CaseID {}: {}",
+                    result.getResponseCode(), caseId, result.getRespondMessage());
+        } else if (result.getBytesWritten() == 0) {
+            log.warn("Empty StreamBytes returned for CaseID {}", caseId);
+        } else {
+            log.info("Successfully fetched PDF for CaseID {} ({} bytes)", caseId, result.getBytesWritten());
+        }
+    }
+
+    /**
+     * Size of the customer's PDF, from the cache when possible. A miss fetches
+     * the document into the cache so the download that usually follows is a hit.
+     * Returns -1 when there is no document.
+     */
+    private long lookupPdfSize(int caseId, Map<String, Object> result) throws Exception {
+        String cacheKey = PdfCache.cacheKey(caseId, defaultDocumentType());
+        PdfDocument cached = pdfCache.get(cacheKey);
+        result.put("cached", cached != null);
+        if (cached != null) {
+            return cached.getSize();
+        }
+
+        LaserFicheClient.FetchResult fetched = fetchPdfShared(caseId, defaultDocumentType(), cacheKey, null)
+                .getValue().result;
+        return fetched != null ? fetched.getBytesWritten() : -1;
+    }
+
+    /**
+     * Document metadata for /info. Fresh index entries are used as they are;
+     * otherwise the cache or, failing that, a shared upstream fetch refreshes
+     * the index. If Laserfiche cannot be reached the last known (stale) entry is
+     * returned, or null if there is none.
+     */
+    private DocumentMetadata lookupPdfMetadata(int caseId, String documentType, Map<String, Object> result)
+            throws Exception {
+        String cacheKey = PdfCache.cacheKey(caseId, documentType);
+        DocumentMetadata metadata = metadataIndex.getFresh(cacheKey);
+        if (metadata != null) {
+            result.put("cached", true);
+            return metadata;
+        }
+
+        PdfDocument cached = pdfCache.get(cacheKey);
+        result.put("cached", cached != null);
+        if (cached == null) {
+            try {
+                fetchPdfShared(caseId, documentType, cacheKey, null);
+            } catch (LaserFicheUnavailableException e) {
+                // Last known answer if there is one; otherwise the caller is told to retry
+                DocumentMetadata stale = metadataIndex.peek(cacheKey);
+                if (stale == null) {
+                    throw e;
+                }
+                return stale;
+            }
+        } else {
+            metadataIndex.record(cacheKey, cached);
+        }
+        return metadataIndex.peek(cacheKey);
+    }
+
+    /**
+     * Fetch through a single flight keyed by cache key, keeping a copy in the cache.
+     * {@code clientSink} receives the document only if this caller ends up leading
+     * the fetch; pass null when only the outcome is needed.
+     *
+     * The leader's client is fed from the copy on another thread, so the flight
+     * lands, and the guard permit is given back, at Laserfiche's pace; followers
+     * don't wait on the leader's client. This returns once that client has
+     * received everything.
+     */
+    private SingleFlight.Outcome<SharedFetch> fetchPdfShared(int caseId, String documentType, String cacheKey,
+                                                             LaserFicheClient.DocumentSink clientSink) throws Exception {
+        CapturingSink[] leading = { null };
+        try {
+            return pdfFlights.execute(cacheKey, () -> {
+                int limit = captureLimit();
+                CapturingSink sink = new CapturingSink(clientSink, limit,
+                        memoryBudget.reserve(expectedCapture(cacheKey, limit)), batchExecutor);
+                leading[0] = sink;
+                LaserFicheClient.FetchResult result = fetchPdfFromLaserFiche(caseId, documentType, sink);
+                if (result == null) {
+                    return new SharedFetch(null, null);
+                }
+
+                // Whatever Laserfiche answered keeps /info from asking again
+                metadataIndex.record(cacheKey, result, sink.getContentHash());
+                if (!result.hasDocument()) {
+                    return new SharedFetch(null, null);
+                }
+                return new SharedFetch(result, cacheFetchedPdf(cacheKey, result, sink));
+            });
+        } finally {
+            CapturingSink sink = leading[0];
+            if (sink != null) {
+                sink.close();
+                if (sink.getDownstreamFailure() != null) {
+                    log.info("Client went away while streaming CaseID {}: {}", caseId,
+                            sink.getDownstreamFailure().getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * What a fetch keeping a copy of up to {@code captureLimit} bytes reserves
+     * from {@link PdfMemoryBudget}: the document's last known size if any.
+     */
+    private long expectedCapture(String cacheKey, int captureLimit) {
+        DocumentMetadata known = metadataIndex.peek(cacheKey);
+        return memoryBudget.expectedBytes(known != null && known.exists() ? known.getSize() : -1, captureLimit);
+    }
+
+    /**
+     * Largest fetched document to keep a copy of: for the cache and, when
+     * prefetch is on, for the session buffers.
+     */
+    private int captureLimit() {
+        int limit = pdfCache.getMaxEntryBytes();
+        return pdfPrefetcher != null ? Math.max(limit, pdfPrefetcher.getMaxEntryBytes()) : limit;
+    }
+
+    /**
+     * Start fetching the customer's PDF in the background for the download
+     * that usually follows, unless it is cached or known not to be worth it.
+     */
+    private void prefetchPdf(String sessionId, int caseId) {
+        if (pdfPrefetcher == null) {
+            return;
+        }
+        String cacheKey = PdfCache.cacheKey(caseId, defaultDocumentType());
+        DocumentMetadata known = metadataIndex.peek(cacheKey);
+        if (pdfCache.containsInMemory(cacheKey)
+                || known != null && (!known.exists() || known.getSize() > pdfPrefetcher.getMaxEntryBytes())) {
+            return;
+        }
+        pdfPrefetcher.prefetch(sessionId, cacheKey, () -> {
+            // Through the shared flight, so a download arriving meanwhile joins this call
+            if (laserFicheAsyncClient != null) {
+                return pdfFlights.executeAsync(cacheKey,
+                                () -> fetchPdfAsync(caseId, defaultDocumentType(), cacheKey, null))
+                        .thenApply(fetched -> fetched.getValue().document);
+            }
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return fetchPdfShared(caseId, defaultDocumentType(), cacheKey, null)
+                            .getValue().document;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, batchExecutor);
+        });
+    }
+
+    private PdfDocument cacheFetchedPdf(String cacheKey, LaserFicheClient.FetchResult result, CapturingSink sink) {
+        byte[] content = sink.getCaptured();
+        if (content == null) {
+            return null;
+        }
+        PdfDocument document = new PdfDocument(content, result.getEntryId(), sink.getContentHash(),
+                System.currentTimeMillis());
+        pdfCache.put(cacheKey, document);
+        return document;
+    }
+
+    private static boolean needsWholeDocument(HttpServletRequest request) {
+        return request.getHeader(HttpHeaders.RANGE) != null
+                || request.getHeader(HttpHeaders.IF_NONE_MATCH) != null;
+    }
+
+    /**
+     * Serve a complete document with a strong content-hash ETag, answering
+     * If-None-Match with 304 and single or multiple byte ranges with 206.
+     * Without {@code asyncWriter}, a single-part body is left to the
+     * connector's sendfile when {@link PdfSendfileStore} is enabled and the
+     * connector supports it. Otherwise the body goes through
+     * {@code asyncWriter} when there is one, or is written with blocking I/O. Returns the number of body bytes.
+     */
+    long servePdfBytes(int customerId, String documentType, PdfDocument document, boolean download,
+                       HttpServletRequest request, HttpServletResponse response,
+                       AsyncPdfResponseWriter asyncWriter) throws IOException {
+        byte[] pdfBytes = document.getContent();
+        String etag = "\"" + document.getContentHash() + "\"";
+
+        setPdfHeaders(customerId, documentType, download, response);
+        // The browser may keep a private copy to revalidate; shared caches may not store it
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return writeBody(List.of(), response, asyncWriter);
+        }
+
+        // A stale If-Range (other ETag, or a date we have nothing to compare with) means "send it all"
+        List<ByteRange> ranges = null;
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null || ifRange.trim().equals(etag)) {
+            ranges = ByteRange.parse(request.getHeader(HttpHeaders.RANGE), pdfBytes.length);
+        }
+
+        if (ranges != null && ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + pdfBytes.length);
+            response.setContentLength(0);
+            return writeBody(List.of(), response, asyncWriter);
+        }
+
+        List<ByteBuffer> body;
+        if (ranges == null || ranges.size() == 1) {
+            ByteRange range = ranges == null ? null : ranges.get(0);
+            long start = range == null ? 0 : range.getStart();
+            long length = range == null ? pdfBytes.length : range.getLength();
+            if (range != null) {
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, range.toContentRange(pdfBytes.length));
+            }
+            response.setContentLengthLong(length);
+            if (asyncWriter == null && pdfSendfileStore != null
+                    && pdfSendfileStore.serve(request, document, start, length)) {
+                // The connector sends the body from the file once we return
+                writeBody(List.of(), response, asyncWriter);
+                log.info("Successfully served cached PDF for customer {} by sendfile ({} bytes, ranges={}, download={})",
+                        customerId, pdfBytes.length, range != null ? 1 : 0, download);
+                return length;
+            }
+            body = List.of(ByteBuffer.wrap(pdfBytes, (int) start, (int) length));
+        } else {
+            body = multipartRanges(pdfBytes, ranges, response);
+        }
+        long written = writeBody(body, response, asyncWriter);
+
+        log.info("Successfully served cached PDF for customer {} ({} bytes, ranges={}, download={})", 
+                customerId, pdfBytes.length, ranges != null ? ranges.size() : 0, download);
+        return written;
+    }
+
+    /**
+     * Sets the multipart headers and returns the body parts.
+     */
+    private static List<ByteBuffer> multipartRanges(byte[] pdfBytes, List<ByteRange> ranges,
+                                                    HttpServletResponse response) {
+        String boundary = "PDF_RANGES_" + UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + "Content-Type: application/pdf\r\n"
+                    + "Content-Range: " + range.toContentRange(pdfBytes.length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + range.getLength();
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += closing.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        List<ByteBuffer> body = new ArrayList<>(ranges.size() * 2 + 1);
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            body.add(ByteBuffer.wrap(partHeaders.get(i)));
+            body.add(ByteBuffer.wrap(pdfBytes, (int) range.getStart(), (int) range.getLength()));
+        }
+        body.add(ByteBuffer.wrap(closing));
+        return body;
+    }
+
+    private static long writeBody(List<ByteBuffer> body, HttpServletResponse response,
+                                  AsyncPdfResponseWriter asyncWriter) throws IOException {
+        long length = 0;
+        for (ByteBuffer part : body) {
+            length += part.remaining();
+        }
+        if (asyncWriter != null) {
+            // Already in memory, so there is no producer to pause
+            for (ByteBuffer part : body) {
+                asyncWriter.offer(part, null);
+            }
+            asyncWriter.finish();
+            return length;
+        }
+        if (body.isEmpty()) {
+            return 0;
+        }
+        try (OutputStream outputStream = response.getOutputStream()) {
+            for (ByteBuffer part : body) {
+                outputStream.write(part.array(), part.arrayOffset() + part.position(), part.remaining());
+            }
+            outputStream.flush();
+        }
+        return length;
+    }
+
+    /**
+     * Weak comparison as If-None-Match requires: W/ prefixes are ignored.
+     */
+    private static boolean etagMatches(String header, String etag) {
+        if (header == null) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void setPdfHeaders(int customerId, String documentType, boolean download, HttpServletResponse response) {
         response.setContentType("application/pdf");
         String disposition = download ? "attachment" : "inline";
         response.setHeader(HttpHeaders.CONTENT_DISPOSITION, 
-            disposition + "; filename=\"customer_" + customerId + "_document.pdf\"");
+            disposition + "; filename=\"" + pdfFileName(customerId, documentType) + "\"");
         response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
         response.setHeader(HttpHeaders.PRAGMA, "no-cache");
         response.setHeader(HttpHeaders.EXPIRES, "0");
-        response.setContentLength(pdfBytes.length);
+    }
 
-        // Stream PDF content to browser
-        try (OutputStream outputStream = response.getOutputStream()) {
-            outputStream.write(pdfBytes);
-            outputStream.flush();
-        }
+    private OutputStream openPdfStream(int customerId, String documentType, boolean download,
+                                       HttpServletResponse response) throws IOException {
+        // Set PDF headers
+        setPdfHeaders(customerId, documentType, download, response);
 
-        log.info("Successfully served PDF for customer {} ({} bytes, download={})", 
-                customerId, pdfBytes.length, download);
+        // Length is unknown until StreamBytes is fully decoded, so the body goes out chunked
+        return response.getOutputStream();
     }
 
     @GetMapping("/{encryptedId}/info")
+    @RateLimited("info")
     public ResponseEntity<Map<String, Object>> getCustomerInfo(
             @PathVariable String encryptedId,
             @RequestParam String sessionId
     ) {
         try {
-            SecretKey aesKey = sessionController.getSessionKey(sessionId);
+            SecretKey aesKey = lookupSession(sessionId);
             if (aesKey == null) {
                 return ResponseEntity.status(403).body(Map.of("error", "Invalid session"));
             }
@@ -173,11 +1042,14 @@ public class CustomerController {
                 return ResponseEntity.status(400).body(Map.of("error", "Invalid customer ID"));
             }
 
-            // Check if PDF exists by trying to fetch it
-            byte[] pdfBytes = fetchPdfFromLaserFiche(customerId);
-            boolean pdfExists = pdfBytes != null && pdfBytes.length > 0;
-            
+            prefetchPdf(sessionId, customerId);
+
             Map<String, Object> info = new HashMap<>();
+
+            // Answer from the metadata index; only a missing or stale entry goes upstream
+            DocumentMetadata metadata = lookupPdfMetadata(customerId, defaultDocumentType(), info);
+            boolean pdfExists = metadata != null && metadata.exists();
+            
             info.put("customerId", customerId);
             info.put("caseId", String.valueOf(customerId));
             info.put("pdfExists", pdfExists);
@@ -185,11 +1057,20 @@ public class CustomerController {
             info.put("apiEndpoint", laserFicheApiUrl);
             
             if (pdfExists) {
-                info.put("pdfSize", pdfBytes.length);
+                info.put("pdfSize", metadata.getSize());
+                info.put("contentHash", metadata.getContentHash());
+                info.put("entryId", metadata.getEntryId());
+            }
+            if (metadata != null) {
+                info.put("lastChecked", Instant.ofEpochMilli(metadata.getCheckedAt()).toString());
             }
 
             return ResponseEntity.ok(info);
 
+        } catch (LaserFicheUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(Map.of("error", "Document service busy, retry later"));
         } catch (Exception e) {
             log.error("Error getting customer info for encrypted ID: {}", encryptedId, e);
             return ResponseEntity.status(500).body(Map.of("error", "Server error"));
@@ -197,12 +1078,13 @@ public class CustomerController {
     }
 
     @PostMapping("/{encryptedId}/test-api")
+    @RateLimited("test-api")
     public ResponseEntity<Map<String, Object>> testLaserFicheApi(
             @PathVariable String encryptedId,
             @RequestParam String sessionId
     ) {
         try {
-            SecretKey aesKey = sessionController.getSessionKey(sessionId);
+            SecretKey aesKey = lookupSession(sessionId);
             if (aesKey == null) {
                 return ResponseEntity.status(403).body(Map.of("error", "Invalid session"));
             }
@@ -219,10 +1101,10 @@ public class CustomerController {
             testResult.put("apiUrl", laserFicheApiUrl);
             
             try {
-                byte[] pdfBytes = fetchPdfFromLaserFiche(customerId);
-                testResult.put("success", pdfBytes != null);
-                testResult.put("pdfSize", pdfBytes != null ? pdfBytes.length : 0);
-                testResult.put("message", pdfBytes != null ? "PDF fetched successfully" : "No PDF data returned");
+                long pdfSize = lookupPdfSize(customerId, testResult);
+                testResult.put("success", pdfSize > 0);
+                testResult.put("pdfSize", Math.max(pdfSize, 0));
+                testResult.put("message", pdfSize > 0 ? "PDF fetched successfully" : "No PDF data returned");
             } catch (Exception e) {
                 testResult.put("success", false);
                 testResult.put("error", e.getMessage());
@@ -235,31 +1117,237 @@ public class CustomerController {
         }
     }
 
-    // RSA/AES decryption - CRITICAL FOR SECURITY
-    private int decryptCustomerId(String encryptedId, SecretKey aesKey) {
+    /**
+     * List the customer's documents of every type in {@code pdf.documents.types}.
+     * Types without fresh metadata are looked up in parallel (at most
+     * {@code pdf.documents.concurrency} at a time); whatever has not answered
+     * within {@code pdf.documents.deadline} is listed as pending and keeps
+     * going in the background, so asking again shortly finds it in the index.
+     * Each available document is downloaded with {@code ?type=}.
+     */
+    @GetMapping("/{encryptedId}/documents")
+    @RateLimited("documents")
+    public ResponseEntity<Map<String, Object>> listCustomerDocuments(
+            @PathVariable String encryptedId,
+            @RequestParam String sessionId
+    ) {
         try {
-            byte[] combined = Base64.getUrlDecoder().decode(encryptedId);
-            if (combined.length < 12) {
-                log.warn("Encrypted ID too short: {} bytes", combined.length);
-                return -1;
+            SecretKey aesKey = lookupSession(sessionId);
+            if (aesKey == null) {
+                return ResponseEntity.status(403).body(Map.of("error", "Invalid session"));
             }
-            
-            byte[] iv = Arrays.copyOfRange(combined, 0, 12);
-            byte[] cipherText = Arrays.copyOfRange(combined, 12, combined.length);
 
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            GCMParameterSpec spec = new GCMParameterSpec(128, iv);
-            cipher.init(Cipher.DECRYPT_MODE, aesKey, spec);
-            
-            byte[] plainBytes = cipher.doFinal(cipherText);
-            int customerId = Integer.parseInt(new String(plainBytes, StandardCharsets.UTF_8));
-            
-            log.debug("Successfully decrypted customer ID: {}", customerId);
+            int customerId = decryptCustomerId(encryptedId, aesKey);
+            if (customerId == -1) {
+                return ResponseEntity.status(400).body(Map.of("error", "Invalid customer ID"));
+            }
+
+            long deadline = System.nanoTime() + documentsDeadline.toNanos();
+            Semaphore permits = new Semaphore(Math.max(1, documentsConcurrency));
+            Map<String, Future<DocumentMetadata>> lookups = new LinkedHashMap<>();
+            for (String documentType : documentTypes) {
+                DocumentMetadata fresh = metadataIndex.getFresh(PdfCache.cacheKey(customerId, documentType));
+                if (fresh != null) {
+                    lookups.put(documentType, CompletableFuture.completedFuture(fresh));
+                    continue;
+                }
+                lookups.put(documentType, batchExecutor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return lookupPdfMetadata(customerId, documentType, new HashMap<>());
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            List<Map<String, Object>> documents = new ArrayList<>(lookups.size());
+            int pending = 0;
+            for (Map.Entry<String, Future<DocumentMetadata>> lookup : lookups.entrySet()) {
+                Map<String, Object> document = new LinkedHashMap<>();
+                document.put("type", lookup.getKey());
+                try {
+                    // Left running on timeout: its answer lands in the metadata index
+                    DocumentMetadata metadata = lookup.getValue().get(
+                            Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    describeDocument(metadata, document);
+                } catch (TimeoutException e) {
+                    document.put("status", "pending");
+                    pending++;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof LaserFicheUnavailableException unavailable) {
+                        document.put("status", "unavailable");
+                        document.put("retryAfterSeconds", unavailable.getRetryAfterSeconds());
+                        pending++;
+                    } else {
+                        log.error("Failed to look up {} for customer {}", lookup.getKey(), customerId, e.getCause());
+                        document.put("status", "error");
+                    }
+                }
+                documents.add(document);
+            }
+
+            Map<String, Object> body = new HashMap<>();
+            body.put("customerId", customerId);
+            body.put("documents", documents);
+            body.put("complete", pending == 0);
+            return ResponseEntity.ok(body);
+
+        } catch (Exception e) {
+            log.error("Error listing documents for encrypted ID: {}", encryptedId, e);
+            return ResponseEntity.status(500).body(Map.of("error", "Server error"));
+        }
+    }
+
+    private static void describeDocument(DocumentMetadata metadata, Map<String, Object> document) {
+        // Null only if Laserfiche could not be reached and nothing was known
+        if (metadata == null) {
+            document.put("status", "error");
+            return;
+        }
+        document.put("status", metadata.exists() ? "available" : "missing");
+        if (metadata.exists()) {
+            document.put("size", metadata.getSize());
+            document.put("contentHash", metadata.getContentHash());
+        }
+        document.put("lastChecked", Instant.ofEpochMilli(metadata.getCheckedAt()).toString());
+    }
+
+    /**
+     * The configured document type matching {@code requested}, ignoring case;
+     * null if it is not one of {@code pdf.documents.types}.
+     */
+    private String resolveDocumentType(String requested) {
+        String trimmed = requested.trim();
+        for (String documentType : documentTypes) {
+            if (documentType.equalsIgnoreCase(trimmed)) {
+                return documentType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The type of document served when a request names none: the first of
+     * {@code pdf.documents.types}.
+     */
+    private String defaultDocumentType() {
+        return documentTypes.get(0);
+    }
+
+    private String pdfFileName(int customerId, String documentType) {
+        if (documentType.equals(defaultDocumentType())) {
+            return "customer_" + customerId + "_document.pdf";
+        }
+        return "customer_" + customerId + "_" + documentType.replaceAll("[^A-Za-z0-9]+", "_") + ".pdf";
+    }
+
+    private SecretKey lookupSession(String sessionId) {
+        long started = System.nanoTime();
+        SecretKey aesKey = sessionController.getSessionKey(sessionId);
+        metrics.recordSessionLookup(System.nanoTime() - started, aesKey != null);
+        return aesKey;
+    }
+
+    // RSA/AES decryption - CRITICAL FOR SECURITY
+    int decryptCustomerId(String encryptedId, SecretKey aesKey) {
+        long started = System.nanoTime();
+        int customerId = -1;
+        try {
+            customerId = customerIdDecryptor.decrypt(encryptedId, aesKey);
+            if (customerId != -1) {
+                log.debug("Successfully decrypted customer ID: {}", customerId);
+            }
             return customerId;
             
         } catch (Exception e) {
             log.error("Failed to decrypt customer ID: {}", encryptedId, e);
             return -1;
+        } finally {
+            metrics.recordDecrypt(System.nanoTime() - started, customerId != -1);
+        }
+    }
+
+    /**
+     * One requested ID of a batch download and what became of it.
+     */
+    private static final class BatchEntry {
+        private final int index;
+        private final String encryptedId;
+        private int customerId = -1;
+        private PdfDocument document;
+        private long size;
+        private String error;
+        private boolean duplicate;
+
+        BatchEntry(int index, String encryptedId) {
+            this.index = index;
+            this.encryptedId = encryptedId;
+        }
+    }
+
+    /**
+     * Outcome of one upstream fetch, shared by every caller coalesced onto it.
+     * result is null when there is no document; document is null when it was
+     * too large to keep a copy of.
+     */
+    private static final class SharedFetch {
+        private final LaserFicheClient.FetchResult result;
+        private final PdfDocument document;
+
+        SharedFetch(LaserFicheClient.FetchResult result, PdfDocument document) {
+            this.result = result;
+            this.document = document;
+        }
+    }
+
+    /**
+     * Passes a sink through, remembering whether it failed. A fetch that
+     * failed because the client went away is not held against Laserfiche.
+     */
+    private static final class TrackedSink implements LaserFicheClient.DocumentSink {
+        private final LaserFicheClient.DocumentSink sink;
+        private volatile IOException failure;
+
+        TrackedSink(LaserFicheClient.DocumentSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public OutputStream open() throws IOException {
+            OutputStream out;
+            try {
+                out = sink.open();
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    try {
+                        out.write(b, off, len);
+                    } catch (IOException e) {
+                        failure = e;
+                        throw e;
+                    }
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    try {
+                        out.flush();
+                    } catch (IOException e) {
+                        failure = e;
+                        throw e;
+                    }
+                }
+            };
         }
     }
 
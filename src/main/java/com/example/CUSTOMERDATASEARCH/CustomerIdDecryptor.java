@@ -0,0 +1,183 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Decrypts the URL-safe base64 {@code IV || AES-GCM ciphertext} customer IDs
+ * sent by the browser.
+ *
+ * Runs on every API call, so it avoids the per-call costs of the obvious
+ * version: Cipher instances come from a small pool instead of a provider
+ * lookup each time, the ID is base64-decoded into a pooled buffer and
+ * decrypted from offsets in it, and the plaintext digits are parsed in place.
+ * Pooling rather than thread-locals keeps reuse working on virtual threads.
+ */
+final class CustomerIdDecryptor {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerIdDecryptor.class);
+
+    static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    // Room for IDs far longer than any real one; longer input takes unpooled buffers
+    private static final int BUFFER_SIZE = 96;
+
+    private static final int[] BASE64URL = new int[128];
+
+    static {
+        java.util.Arrays.fill(BASE64URL, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64URL[alphabet.charAt(i)] = i;
+        }
+    }
+
+    private final ArrayBlockingQueue<Slot> pool;
+
+    CustomerIdDecryptor() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    CustomerIdDecryptor(int poolSize) {
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+
+    /**
+     * The customer ID, or -1 when the input is too short to hold an IV.
+     * Malformed base64 and numbers throw IllegalArgumentException, a wrong
+     * key or tampered input throws GeneralSecurityException.
+     */
+    int decrypt(String encryptedId, SecretKey key) throws GeneralSecurityException {
+        Slot slot = pool.poll();
+        if (slot == null) {
+            slot = new Slot();
+        }
+        try {
+            return decrypt(slot, encryptedId, key);
+        } finally {
+            // Dropped if the pool is already full
+            pool.offer(slot);
+        }
+    }
+
+    private static int decrypt(Slot slot, String encryptedId, SecretKey key) throws GeneralSecurityException {
+        int maxDecoded = encryptedId.length() * 3 / 4;
+        byte[] decoded = maxDecoded <= slot.decoded.length ? slot.decoded : new byte[maxDecoded];
+        int length = decodeBase64Url(encryptedId, decoded);
+        if (length < IV_LENGTH) {
+            log.warn("Encrypted ID too short: {} bytes", length);
+            return -1;
+        }
+
+        Cipher cipher = slot.cipher;
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, decoded, 0, IV_LENGTH));
+        byte[] plain = length <= slot.plain.length ? slot.plain : new byte[length];
+        int plainLength = cipher.doFinal(decoded, IV_LENGTH, length - IV_LENGTH, plain, 0);
+        return parseInt(plain, plainLength);
+    }
+
+    /**
+     * Same rules as Integer.parseInt on the UTF-8 text, without building it
+     * unless it contains non-ASCII digits.
+     */
+    static int parseInt(byte[] text, int length) {
+        for (int i = 0; i < length; i++) {
+            if (text[i] < 0) {
+                return Integer.parseInt(new String(text, 0, length, StandardCharsets.UTF_8));
+            }
+        }
+
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text[0] == '-' || text[0] == '+')) {
+            negative = text[0] == '-';
+            i = 1;
+        }
+        if (i == length) {
+            throw new NumberFormatException("Not a number");
+        }
+        // Accumulate negatively so Integer.MIN_VALUE fits
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int result = 0;
+        for (; i < length; i++) {
+            int digit = text[i] - '0';
+            if (digit < 0 || digit > 9 || result < limit / 10) {
+                throw new NumberFormatException("Not a number");
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new NumberFormatException("Not a number");
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Decodes like Base64.getUrlDecoder(): trailing '=' padding is optional.
+     * Returns the number of bytes written.
+     */
+    static int decodeBase64Url(String src, byte[] dst) {
+        int end = src.length();
+        if (end > 0 && src.charAt(end - 1) == '=') {
+            end--;
+            if (end > 0 && src.charAt(end - 1) == '=') {
+                end--;
+            }
+            if ((end & 3) == 0 || (src.length() & 3) != 0) {
+                throw new IllegalArgumentException("Invalid base64 padding");
+            }
+        }
+        if ((end & 3) == 1) {
+            throw new IllegalArgumentException("Invalid base64 length");
+        }
+
+        int out = 0;
+        int bits = 0;
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            char c = src.charAt(i);
+            int sextet = c < 128 ? BASE64URL[c] : -1;
+            if (sextet < 0) {
+                throw new IllegalArgumentException("Illegal base64 character " + Integer.toHexString(c));
+            }
+            bits = (bits << 6) | sextet;
+            if (++count == 4) {
+                dst[out++] = (byte) (bits >> 16);
+                dst[out++] = (byte) (bits >> 8);
+                dst[out++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 2) {
+            dst[out++] = (byte) (bits >> 4);
+        } else if (count == 3) {
+            dst[out++] = (byte) (bits >> 10);
+            dst[out++] = (byte) (bits >> 2);
+        }
+        return out;
+    }
+
+    private static final class Slot {
+        private final Cipher cipher;
+        private final byte[] decoded = new byte[BUFFER_SIZE];
+        private final byte[] plain = new byte[BUFFER_SIZE];
+
+        Slot() {
+            try {
+                cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("AES/GCM not available", e);
+            }
+        }
+    }
+}
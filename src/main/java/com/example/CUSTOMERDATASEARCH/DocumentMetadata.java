@@ -0,0 +1,31 @@
+package com.example.CUSTOMERDATASEARCH;
+
+/**
+ * What we last learned about a Laserfiche document without keeping the document.
+ */
+public final class DocumentMetadata {
+
+    private final boolean exists;
+    private final long size;
+    private final String contentHash;
+    private final String entryId;
+    private final long checkedAt;
+
+    DocumentMetadata(boolean exists, long size, String contentHash, String entryId, long checkedAt) {
+        this.exists = exists;
+        this.size = size;
+        this.contentHash = contentHash;
+        this.entryId = entryId;
+        this.checkedAt = checkedAt;
+    }
+
+    static DocumentMetadata missing(long checkedAt) {
+        return new DocumentMetadata(false, 0, null, null, checkedAt);
+    }
+
+    public boolean exists() { return exists; }
+    public long getSize() { return size; }
+    public String getContentHash() { return contentHash; }
+    public String getEntryId() { return entryId; }
+    public long getCheckedAt() { return checkedAt; }
+}
@@ -0,0 +1,137 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-document index of existence, size, content hash and EntryID.
+ *
+ * It is filled as a side effect of real fetches, so /info can be answered
+ * without downloading the document again. Entries go stale after a TTL
+ * (a shorter one for documents that were not found) and are then refreshed
+ * by the next fetch. The least recently used entries are dropped beyond
+ * {@code pdf.metadata.max-entries}.
+ */
+@Service
+public class DocumentMetadataIndex implements MeterBinder {
+
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final int maxEntries;
+
+    private final LinkedHashMap<String, DocumentMetadata> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LongAdder fresh = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder absent = new LongAdder();
+
+    public DocumentMetadataIndex(
+            @Value("${pdf.metadata.ttl:30m}") Duration ttl,
+            @Value("${pdf.metadata.negative-ttl:1m}") Duration negativeTtl,
+            @Value("${pdf.metadata.max-entries:100000}") int maxEntries
+    ) {
+        this.ttlMillis = ttl.toMillis();
+        this.negativeTtlMillis = negativeTtl.toMillis();
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DocumentMetadata> eldest) {
+                return size() > DocumentMetadataIndex.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Metadata that is still fresh, or null when the caller should go upstream.
+     */
+    public DocumentMetadata getFresh(String key) {
+        DocumentMetadata metadata;
+        lock.lock();
+        try {
+            metadata = entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+
+        if (metadata == null) {
+            absent.increment();
+            return null;
+        }
+        long ttl = metadata.exists() ? ttlMillis : negativeTtlMillis;
+        if (System.currentTimeMillis() - metadata.getCheckedAt() > ttl) {
+            stale.increment();
+            return null;
+        }
+        fresh.increment();
+        return metadata;
+    }
+
+    /**
+     * Latest metadata whatever its age, or null if the document was never seen.
+     */
+    public DocumentMetadata peek(String key) {
+        lock.lock();
+        try {
+            return entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void record(String key, PdfDocument document) {
+        put(key, new DocumentMetadata(true, document.getSize(), document.getContentHash(),
+                document.getEntryId(), document.getFetchedAt()));
+    }
+
+    /**
+     * Record the outcome of an upstream call that Laserfiche actually answered.
+     */
+    public void record(String key, LaserFicheClient.FetchResult result, String contentHash) {
+        long now = System.currentTimeMillis();
+        if (result.hasDocument()) {
+            put(key, new DocumentMetadata(true, result.getBytesWritten(), contentHash, result.getEntryId(), now));
+        } else {
+            put(key, DocumentMetadata.missing(now));
+        }
+    }
+
+    private void put(String key, DocumentMetadata metadata) {
+        lock.lock();
+        try {
+            entries.put(key, metadata);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pdf.metadata.lookups", fresh, LongAdder::sum)
+                .tag("result", "fresh").register(registry);
+        FunctionCounter.builder("pdf.metadata.lookups", stale, LongAdder::sum)
+                .tag("result", "stale").register(registry);
+        FunctionCounter.builder("pdf.metadata.lookups", absent, LongAdder::sum)
+                .tag("result", "absent").register(registry);
+        Gauge.builder("pdf.metadata.entries", this, DocumentMetadataIndex::size).register(registry);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Timers and size distributions for each stage of a PDF download, so a slow
+ * download can be put down to Laserfiche or to this service:
+ *
+ * <ul>
+ *   <li>{@code session.lookup}: finding the session key, by outcome (found, missing)</li>
+ *   <li>{@code customer.id.decrypt}: decrypting the customer ID, by outcome (ok, invalid)</li>
+ *   <li>{@code laserfiche.fetch}: time spent waiting on Laserfiche, by client (blocking, async)
+ *       and outcome (success, error_code, empty, failed, cancelled)</li>
+ *   <li>{@code laserfiche.fetch.decode}: parsing the response and base64-decoding StreamBytes</li>
+ *   <li>{@code laserfiche.fetch.sink}: handing decoded bytes on, i.e. waiting on the client</li>
+ *   <li>{@code pdf.download}: time to last byte, by source (prefetch, cache, laserfiche,
+ *       or none if refused before the cache) and outcome</li>
+ *   <li>{@code pdf.download.bytes}: body bytes written, same tags</li>
+ * </ul>
+ *
+ * All of them publish p50, p95 and p99.
+ */
+final class DownloadMetrics {
+
+    static final String BLOCKING = "blocking";
+    static final String ASYNC = "async";
+
+    static final String SOURCE_NONE = "none";
+    static final String SOURCE_PREFETCH = "prefetch";
+    static final String SOURCE_CACHE = "cache";
+    static final String SOURCE_LASERFICHE = "laserfiche";
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final MeterRegistry registry;
+    private final Timer sessionFound;
+    private final Timer sessionMissing;
+    private final Timer decryptOk;
+    private final Timer decryptInvalid;
+
+    DownloadMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.sessionFound = timer("session.lookup", "outcome", "found");
+        this.sessionMissing = timer("session.lookup", "outcome", "missing");
+        this.decryptOk = timer("customer.id.decrypt", "outcome", "ok");
+        this.decryptInvalid = timer("customer.id.decrypt", "outcome", "invalid");
+    }
+
+    private Timer timer(String name, String... tags) {
+        return Timer.builder(name).tags(tags).publishPercentiles(PERCENTILES).register(registry);
+    }
+
+    void recordSessionLookup(long nanos, boolean found) {
+        (found ? sessionFound : sessionMissing).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordDecrypt(long nanos, boolean valid) {
+        (valid ? decryptOk : decryptInvalid).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * One Laserfiche call. A null {@code result} is a failed call, timed as a
+     * whole by {@code elapsedNanos}; otherwise the result's own breakdown is used.
+     */
+    void recordFetch(String client, LaserFicheClient.FetchResult result, long elapsedNanos) {
+        if (result == null) {
+            timer("laserfiche.fetch", "client", client, "outcome", "failed")
+                    .record(elapsedNanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+        String outcome = !result.isSuccess() ? "error_code" : result.getBytesWritten() == 0 ? "empty" : "success";
+        timer("laserfiche.fetch", "client", client, "outcome", outcome)
+                .record(result.getUpstreamNanos(), TimeUnit.NANOSECONDS);
+        timer("laserfiche.fetch.decode", "client", client).record(result.getDecodeNanos(), TimeUnit.NANOSECONDS);
+        timer("laserfiche.fetch.sink", "client", client).record(result.getSinkNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * A Laserfiche call stopped because the client went away.
+     */
+    void recordCancelledFetch(String client, long elapsedNanos) {
+        timer("laserfiche.fetch", "client", client, "outcome", "cancelled")
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    Download startDownload() {
+        return new Download(System.nanoTime());
+    }
+
+    /**
+     * One download from the request arriving to its last byte. Source and
+     * outcome are set as they become known; the first {@link #finish} records it.
+     */
+    final class Download {
+        private final long started;
+        private volatile String source = SOURCE_NONE;
+        private volatile String outcome = "ok";
+        private volatile long bytes;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private Download(long started) {
+            this.started = started;
+        }
+
+        void source(String source) {
+            this.source = source;
+        }
+
+        void outcome(String outcome) {
+            this.outcome = outcome;
+        }
+
+        void bytes(long bytes) {
+            this.bytes = bytes;
+        }
+
+        void finish() {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            long elapsed = System.nanoTime() - started;
+            timer("pdf.download", "source", source, "outcome", outcome).record(elapsed, TimeUnit.NANOSECONDS);
+            DistributionSummary.builder("pdf.download.bytes")
+                    .tags("source", source, "outcome", outcome)
+                    .baseUnit("bytes")
+                    .publishPercentiles(PERCENTILES)
+                    .register(registry)
+                    .record(bytes);
+        }
+    }
+}
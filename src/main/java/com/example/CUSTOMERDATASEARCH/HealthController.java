@@ -1,12 +1,9 @@
 package com.example.CUSTOMERDATASEARCH;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.MediaType;
 import java.util.HashMap;
 import java.util.Map;
 import java.time.LocalDateTime;
@@ -17,20 +14,36 @@ import java.time.LocalDateTime;
 public class HealthController {
 
     private final SessionService sessionService;
-    private final RestTemplate restTemplate;
+    private final LaserFicheHealthProber laserFicheProber;
+    private final PdfCache pdfCache;
+    private final LaserFicheGuard laserFicheGuard;
+    private final PdfMemoryBudget memoryBudget;
+    // Only present with pdf.prefetch.enabled=true
+    private final PdfPrefetcher pdfPrefetcher;
+    // Only present with pdf.sendfile.enabled=true
+    private final PdfSendfileStore pdfSendfileStore;
+    // Only present with rate-limit.enabled=true
+    private final RequestRateLimiter rateLimiter;
 
     @Value("${laserfiche.api.url}")
     private String laserFicheApiUrl;
     
     @Value("${laserfiche.api.username}")
     private String apiUsername;
-    
-    @Value("${laserfiche.api.password}")
-    private String apiPassword;
 
-    public HealthController(SessionService sessionService, RestTemplate restTemplate) {
+    public HealthController(SessionService sessionService, LaserFicheHealthProber laserFicheProber, PdfCache pdfCache,
+                            LaserFicheGuard laserFicheGuard, PdfMemoryBudget memoryBudget,
+                            ObjectProvider<PdfPrefetcher> pdfPrefetcher,
+                            ObjectProvider<PdfSendfileStore> pdfSendfileStore,
+                            ObjectProvider<RequestRateLimiter> rateLimiter) {
         this.sessionService = sessionService;
-        this.restTemplate = restTemplate;
+        this.laserFicheProber = laserFicheProber;
+        this.pdfCache = pdfCache;
+        this.laserFicheGuard = laserFicheGuard;
+        this.memoryBudget = memoryBudget;
+        this.pdfPrefetcher = pdfPrefetcher.getIfAvailable();
+        this.pdfSendfileStore = pdfSendfileStore.getIfAvailable();
+        this.rateLimiter = rateLimiter.getIfAvailable();
     }
 
     @GetMapping
@@ -66,12 +79,28 @@ public class HealthController {
 
             // Session info
             health.put("activeSessions", sessionService.getActiveSessionCount());
+            if (rateLimiter != null) {
+                health.put("rateLimit", rateLimiter.getStats());
+            }
+
+            // PDF cache info
+            health.put("pdfCache", pdfCache.getStats());
+            health.put("pdfMemoryBudget", memoryBudget.getStats());
+            if (pdfPrefetcher != null) {
+                health.put("pdfPrefetch", pdfPrefetcher.getStats());
+            }
+            if (pdfSendfileStore != null) {
+                health.put("pdfSendfile", pdfSendfileStore.getStats());
+            }
 
-            // Laserfiche API info
+            // Laserfiche API info, as of the last background probe
+            LaserFicheHealthProber.Snapshot probe = laserFicheProber.getSnapshot();
             Map<String, Object> apiInfo = new HashMap<>();
             apiInfo.put("url", laserFicheApiUrl);
             apiInfo.put("username", apiUsername);
-            apiInfo.put("connectivity", testLaserFicheConnectivity());
+            apiInfo.put("connectivity", probe.connectivity());
+            apiInfo.put("probe", probe.details());
+            apiInfo.put("admission", laserFicheGuard.getStats());
             health.put("laserFicheApi", apiInfo);
 
             // Java info
@@ -98,10 +127,11 @@ public class HealthController {
             status.put("apiUrl", laserFicheApiUrl);
             status.put("username", apiUsername);
             
-            // Test API connectivity
-            String connectivity = testLaserFicheConnectivity();
-            status.put("connectivity", connectivity);
-            status.put("status", connectivity.startsWith("Connected") ? "UP" : "DOWN");
+            // Answered from the last background probe; Laserfiche is not called here
+            LaserFicheHealthProber.Snapshot probe = laserFicheProber.getSnapshot();
+            status.put("connectivity", probe.connectivity());
+            status.put("status", probe.status().getCode());
+            status.put("probe", probe.details());
             
             return ResponseEntity.ok(status);
             
@@ -111,42 +141,4 @@ public class HealthController {
             return ResponseEntity.status(500).body(status);
         }
     }
-
-    private String testLaserFicheConnectivity() {
-        try {
-            // Create test request to Laserfiche API (using a test Case ID)
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBasicAuth(apiUsername, apiPassword); // FIXED: Now uses actual password
-            
-            CustomerController.LaserFicheRequest testRequest = new CustomerController.LaserFicheRequest();
-            testRequest.setCaseID("1"); // Test with Case ID 1
-            testRequest.setRequestID("");
-            testRequest.setDocumentType("national id");
-            
-            HttpEntity<CustomerController.LaserFicheRequest> entity = new HttpEntity<>(testRequest, headers);
-            
-            ResponseEntity<String> response = restTemplate.postForEntity(laserFicheApiUrl, entity, String.class);
-            
-            if (response.getStatusCode().is2xxSuccessful()) {
-                return "Connected (HTTP " + response.getStatusCode().value() + ")";
-            } else {
-                return "Connected but returned " + response.getStatusCode();
-            }
-            
-        } catch (org.springframework.web.client.HttpClientErrorException e) {
-            // 401/403 means we connected but auth failed
-            if (e.getStatusCode().value() == 401) {
-                return "Connected - Authentication failed";
-            } else if (e.getStatusCode().value() == 404) {
-                return "Connected - Endpoint not found";
-            } else {
-                return "Connected - HTTP " + e.getStatusCode().value();
-            }
-        } catch (org.springframework.web.client.ResourceAccessException e) {
-            return "Not accessible - Network error: " + e.getMessage();
-        } catch (Exception e) {
-            return "Error: " + e.getClass().getSimpleName() + " - " + e.getMessage();
-        }
-    }
 }
\ No newline at end of file
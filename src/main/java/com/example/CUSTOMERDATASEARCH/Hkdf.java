@@ -0,0 +1,48 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * HKDF with HMAC-SHA256 (RFC 5869), as WebCrypto's {@code HKDF} with
+ * {@code hash: 'SHA-256'} computes it.
+ */
+final class Hkdf {
+
+    private static final int HASH_LENGTH = 32;
+
+    private Hkdf() {}
+
+    /**
+     * {@code length} bytes of output keying material. A null or empty salt
+     * is the RFC's default of HashLen zero bytes.
+     */
+    static byte[] sha256(byte[] salt, byte[] inputKeyMaterial, byte[] info, int length) {
+        if (length > 255 * HASH_LENGTH) {
+            throw new IllegalArgumentException("HKDF output too long: " + length);
+        }
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(salt == null || salt.length == 0 ? new byte[HASH_LENGTH] : salt, "HmacSHA256"));
+            byte[] pseudoRandomKey = mac.doFinal(inputKeyMaterial);
+
+            mac.init(new SecretKeySpec(pseudoRandomKey, "HmacSHA256"));
+            ByteArrayOutputStream output = new ByteArrayOutputStream(length + HASH_LENGTH);
+            byte[] block = new byte[0];
+            for (int counter = 1; output.size() < length; counter++) {
+                mac.update(block);
+                mac.update(info);
+                mac.update((byte) counter);
+                block = mac.doFinal();
+                output.write(block, 0, block.length);
+            }
+            byte[] result = output.toByteArray();
+            return result.length == length ? result : Arrays.copyOf(result, length);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
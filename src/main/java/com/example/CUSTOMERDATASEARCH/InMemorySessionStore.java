@@ -0,0 +1,106 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sessions held in this process only.
+ *
+ * Each session is one {@link SessionRecord} holding the key and the last
+ * access time. Lookups check expiry themselves; the sweep, driven by a
+ * {@link SessionExpiryWheel}, removes idle sessions, and the count is a
+ * maintained counter rather than a scan.
+ */
+@Component
+@ConditionalOnProperty(name = "session.store.type", havingValue = "memory", matchIfMissing = true)
+public class InMemorySessionStore implements SessionStore {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemorySessionStore.class);
+
+    private final ConcurrentHashMap<String, SessionRecord> sessionStore = new ConcurrentHashMap<>();
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final long sessionTimeout;
+    private final SessionExpiryWheel expiryWheel;
+
+    @Autowired
+    public InMemorySessionStore(
+            @Value("${session.timeout:30m}") Duration sessionTimeout,
+            @Value("${session.expiry-tick:5s}") Duration expiryTick
+    ) {
+        this(sessionTimeout, expiryTick, System.currentTimeMillis());
+    }
+
+    InMemorySessionStore(Duration sessionTimeout, Duration expiryTick, long now) {
+        this.sessionTimeout = sessionTimeout.toMillis();
+        this.expiryWheel = new SessionExpiryWheel(this.sessionTimeout, expiryTick.toMillis(), now);
+    }
+
+    @Override
+    public void save(String sessionId, SecretKey key, long now) {
+        SessionRecord record = new SessionRecord(sessionId, key, now);
+        if (sessionStore.put(sessionId, record) == null) {
+            activeSessions.incrementAndGet();
+        }
+        expiryWheel.schedule(record, now + sessionTimeout + 1);
+    }
+
+    @Override
+    public SecretKey lookup(String sessionId, long now) {
+        SessionRecord record = sessionStore.get(sessionId);
+        if (record == null) {
+            return null;
+        }
+        if (record.isExpired(now, sessionTimeout)) {
+            if (sessionStore.remove(sessionId, record)) {
+                activeSessions.decrementAndGet();
+            }
+            return null;
+        }
+        record.touch(now);
+        return record.getKey();
+    }
+
+    @Override
+    public void remove(String sessionId, long now) {
+        if (sessionStore.remove(sessionId) != null) {
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    /**
+     * An idle session is counted until the next sweep, at most one expiry
+     * tick after it timed out.
+     */
+    @Override
+    public int count() {
+        return activeSessions.get();
+    }
+
+    @Override
+    public void sweep(long now) {
+        expiryWheel.advance(now, record -> {
+            // Already removed, or replaced under the same ID
+            if (sessionStore.get(record.getSessionId()) != record) {
+                return;
+            }
+            if (!record.isExpired(now, sessionTimeout)) {
+                // Used since it was scheduled
+                expiryWheel.schedule(record, record.getLastAccess() + sessionTimeout + 1);
+                return;
+            }
+            if (sessionStore.remove(record.getSessionId(), record)) {
+                activeSessions.decrementAndGet();
+                log.debug("Cleaned up expired session: {}", record.getSessionId());
+            }
+        });
+    }
+}
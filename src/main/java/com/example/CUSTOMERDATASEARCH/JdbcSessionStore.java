@@ -0,0 +1,392 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sessions shared by every node through a database table, so a session
+ * started on one node can be used on any other.
+ *
+ * Lookups are answered from a bounded per-node near-cache and only go to the
+ * database on a miss, or when the cached copy looks expired (another node
+ * may have used the session since). Last-access times are written in one
+ * batch per sweep, at most once per session. IDs not found in the table are
+ * remembered for {@code session.store.near-cache.negative-ttl}, so unknown,
+ * forged or expired IDs replayed by a client do not each cost a query; a
+ * session saved on this node is never hidden by that. Removals are recorded in a
+ * second table that every node polls on its sweep, dropping those sessions
+ * from its near-cache, so a closed session stops working everywhere within
+ * one {@code session.expiry-tick}.
+ *
+ * Revoked stateless tokens go in a third table, kept until the tokens would
+ * have expired. A node loads all of them on its first poll and then picks up
+ * new ones on each sweep, the same way as removals.
+ *
+ * Session keys are stored encrypted with {@code session.store.jdbc.secret}.
+ */
+@Component
+@ConditionalOnProperty(name = "session.store.type", havingValue = "jdbc")
+public class JdbcSessionStore implements SessionStore, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcSessionStore.class);
+
+    // Removals are polled with this much overlap, to allow for clock skew between nodes
+    private static final long REMOVAL_POLL_OVERLAP_MILLIS = 60_000;
+    private static final int IV_LENGTH = 12;
+    // The session_id column's width; anything longer cannot be in the table
+    private static final int MAX_SESSION_ID_LENGTH = 64;
+
+    private final JdbcTemplate jdbc;
+    private final HikariDataSource ownedDataSource;
+    private final SecretKey wrappingKey;
+    private final long sessionTimeout;
+    private final int nearCacheMaxEntries;
+    private final long negativeTtl;
+    private final SecureRandom random = new SecureRandom();
+
+    private final ConcurrentHashMap<String, SessionRecord> nearCache = new ConcurrentHashMap<>();
+    // Session IDs not found in the table -> until when to keep answering that without asking again
+    private final ConcurrentHashMap<String, Long> misses = new ConcurrentHashMap<>();
+    // Sessions used since the last sweep; one entry per session however often it was used
+    private final ConcurrentHashMap<String, SessionRecord> pendingAccess = new ConcurrentHashMap<>();
+    private volatile int sessionCount;
+    private long lastRemovalPoll;
+    // Long.MIN_VALUE until the first poll, which loads every revocation in force
+    private long lastRevocationPoll = Long.MIN_VALUE;
+
+    @Autowired
+    public JdbcSessionStore(
+            @Value("${session.store.jdbc.url}") String url,
+            @Value("${session.store.jdbc.username:}") String username,
+            @Value("${session.store.jdbc.password:}") String password,
+            @Value("${session.store.jdbc.pool-size:10}") int poolSize,
+            @Value("${session.store.jdbc.secret:}") String secret,
+            @Value("${session.store.jdbc.initialize-schema:true}") boolean initializeSchema,
+            @Value("${session.store.near-cache.max-entries:50000}") int nearCacheMaxEntries,
+            @Value("${session.store.near-cache.negative-ttl:5s}") Duration negativeTtl,
+            @Value("${session.timeout:30m}") Duration sessionTimeout
+    ) {
+        this(createDataSource(url, username, password, poolSize), true, decodeSecret(secret),
+                initializeSchema, nearCacheMaxEntries, negativeTtl, sessionTimeout, System.currentTimeMillis());
+    }
+
+    JdbcSessionStore(DataSource dataSource, byte[] secret, int nearCacheMaxEntries, Duration sessionTimeout, long now) {
+        this(dataSource, secret, nearCacheMaxEntries, Duration.ofSeconds(5), sessionTimeout, now);
+    }
+
+    JdbcSessionStore(DataSource dataSource, byte[] secret, int nearCacheMaxEntries, Duration negativeTtl,
+                     Duration sessionTimeout, long now) {
+        this(dataSource, false, secret, true, nearCacheMaxEntries, negativeTtl, sessionTimeout, now);
+    }
+
+    private JdbcSessionStore(DataSource dataSource, boolean ownsDataSource, byte[] secret, boolean initializeSchema,
+                             int nearCacheMaxEntries, Duration negativeTtl, Duration sessionTimeout, long now) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.ownedDataSource = ownsDataSource ? (HikariDataSource) dataSource : null;
+        this.wrappingKey = new SecretKeySpec(secret, "AES");
+        this.nearCacheMaxEntries = nearCacheMaxEntries;
+        this.negativeTtl = negativeTtl.toMillis();
+        this.sessionTimeout = sessionTimeout.toMillis();
+        this.lastRemovalPoll = now;
+        if (initializeSchema) {
+            initializeSchema();
+        }
+        this.sessionCount = countRows();
+        log.info("JDBC session store ready ({} sessions, near-cache {} entries)", sessionCount, nearCacheMaxEntries);
+    }
+
+    private static HikariDataSource createDataSource(String url, String username, String password, int poolSize) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("session-store");
+        config.setJdbcUrl(url);
+        if (!username.isEmpty()) {
+            config.setUsername(username);
+            config.setPassword(password);
+        }
+        config.setMaximumPoolSize(poolSize);
+        return new HikariDataSource(config);
+    }
+
+    private static byte[] decodeSecret(String secret) {
+        byte[] decoded = secret.isBlank() ? new byte[0] : Base64.getDecoder().decode(secret.trim());
+        if (decoded.length != 32) {
+            throw new IllegalArgumentException("session.store.jdbc.secret must be 32 bytes (base64)");
+        }
+        return decoded;
+    }
+
+    private void initializeSchema() {
+        jdbc.execute("CREATE TABLE IF NOT EXISTS customer_session ("
+                + "session_id VARCHAR(64) PRIMARY KEY, "
+                + "wrapped_key VARCHAR(128) NOT NULL, "
+                + "last_access BIGINT NOT NULL)");
+        jdbc.execute("CREATE TABLE IF NOT EXISTS customer_session_removal ("
+                + "session_id VARCHAR(64) NOT NULL, "
+                + "removed_at BIGINT NOT NULL)");
+        jdbc.execute("CREATE TABLE IF NOT EXISTS customer_session_token_revocation ("
+                + "token_id BIGINT NOT NULL, "
+                + "expires_at BIGINT NOT NULL, "
+                + "revoked_at BIGINT NOT NULL)");
+    }
+
+    @Override
+    public void save(String sessionId, SecretKey key, long now) {
+        String wrapped = wrap(sessionId, key);
+        int updated = jdbc.update("UPDATE customer_session SET wrapped_key = ?, last_access = ? WHERE session_id = ?",
+                wrapped, now, sessionId);
+        if (updated == 0) {
+            jdbc.update("INSERT INTO customer_session (session_id, wrapped_key, last_access) VALUES (?, ?, ?)",
+                    sessionId, wrapped, now);
+        }
+        misses.remove(sessionId);
+        cache(new SessionRecord(sessionId, key, now));
+    }
+
+    @Override
+    public SecretKey lookup(String sessionId, long now) {
+        SessionRecord record = nearCache.get(sessionId);
+        if (record == null || record.isExpired(now, sessionTimeout)) {
+            if (sessionId.length() > MAX_SESSION_ID_LENGTH || isKnownMiss(sessionId, now)) {
+                return null;
+            }
+            // Not cached here, or cached before another node last used it
+            record = load(sessionId);
+            if (record == null) {
+                nearCache.remove(sessionId);
+                rememberMiss(sessionId, now);
+                return null;
+            }
+            if (record.isExpired(now, sessionTimeout)) {
+                nearCache.remove(sessionId);
+                jdbc.update("DELETE FROM customer_session WHERE session_id = ? AND last_access < ?",
+                        sessionId, now - sessionTimeout);
+                rememberMiss(sessionId, now);
+                return null;
+            }
+            cache(record);
+        }
+        if (record.touch(now)) {
+            pendingAccess.put(sessionId, record);
+        }
+        return record.getKey();
+    }
+
+    @Override
+    public void remove(String sessionId, long now) {
+        nearCache.remove(sessionId);
+        pendingAccess.remove(sessionId);
+        jdbc.update("DELETE FROM customer_session WHERE session_id = ?", sessionId);
+        jdbc.update("INSERT INTO customer_session_removal (session_id, removed_at) VALUES (?, ?)",
+                sessionId, now);
+    }
+
+    @Override
+    public void revokeToken(long tokenId, long expiresAt, long now) {
+        jdbc.update("INSERT INTO customer_session_token_revocation (token_id, expires_at, revoked_at) VALUES (?, ?, ?)",
+                tokenId, expiresAt, now);
+    }
+
+    @Override
+    public Map<Long, Long> pollRevokedTokens(long now) {
+        Map<Long, Long> revoked = new HashMap<>();
+        try {
+            if (lastRevocationPoll == Long.MIN_VALUE) {
+                jdbc.query("SELECT token_id, expires_at FROM customer_session_token_revocation WHERE expires_at > ?",
+                        rs -> { revoked.put(rs.getLong(1), rs.getLong(2)); }, now);
+            } else {
+                jdbc.query("SELECT token_id, expires_at FROM customer_session_token_revocation WHERE revoked_at >= ?",
+                        rs -> { revoked.put(rs.getLong(1), rs.getLong(2)); },
+                        lastRevocationPoll - REMOVAL_POLL_OVERLAP_MILLIS);
+            }
+            lastRevocationPoll = now;
+        } catch (DataAccessException e) {
+            // Asked again on the next sweep, from the same point
+            log.warn("Could not poll revoked session tokens: {}", e.getMessage());
+        }
+        return revoked;
+    }
+
+    /**
+     * Sessions in the table as of the last sweep.
+     */
+    @Override
+    public int count() {
+        return sessionCount;
+    }
+
+    @Override
+    public void sweep(long now) {
+        try {
+            flushAccessTimes();
+            pollRemovals(now);
+            jdbc.update("DELETE FROM customer_session WHERE last_access < ?", now - sessionTimeout);
+            jdbc.update("DELETE FROM customer_session_removal WHERE removed_at < ?",
+                    now - Math.max(sessionTimeout, 2 * REMOVAL_POLL_OVERLAP_MILLIS));
+            jdbc.update("DELETE FROM customer_session_token_revocation WHERE expires_at < ?",
+                    now - 2 * REMOVAL_POLL_OVERLAP_MILLIS);
+            nearCache.values().removeIf(record -> record.isExpired(now, sessionTimeout));
+            misses.values().removeIf(until -> now >= until);
+            sessionCount = countRows();
+        } catch (DataAccessException e) {
+            log.warn("Session store sweep failed: {}", e.getMessage());
+        }
+    }
+
+    int getNearCacheSize() {
+        return nearCache.size();
+    }
+
+    /**
+     * Write every pending last-access time in one batch. A session whose row
+     * is gone (expired by another node's sweep) is dropped from the near-cache.
+     */
+    void flushAccessTimes() {
+        if (pendingAccess.isEmpty()) {
+            return;
+        }
+        List<SessionRecord> batch = new ArrayList<>();
+        for (Iterator<SessionRecord> it = pendingAccess.values().iterator(); it.hasNext(); ) {
+            batch.add(it.next());
+            it.remove();
+        }
+        List<Object[]> args = new ArrayList<>(batch.size());
+        for (SessionRecord record : batch) {
+            long lastAccess = record.getLastAccess();
+            args.add(new Object[] {lastAccess, lastAccess, record.getSessionId()});
+        }
+        int[] updated = jdbc.batchUpdate("UPDATE customer_session "
+                + "SET last_access = CASE WHEN last_access < ? THEN ? ELSE last_access END "
+                + "WHERE session_id = ?", args);
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                nearCache.remove(batch.get(i).getSessionId(), batch.get(i));
+            }
+        }
+    }
+
+    private void pollRemovals(long now) {
+        List<String> removed = jdbc.queryForList(
+                "SELECT session_id FROM customer_session_removal WHERE removed_at >= ?",
+                String.class, lastRemovalPoll - REMOVAL_POLL_OVERLAP_MILLIS);
+        for (String sessionId : removed) {
+            nearCache.remove(sessionId);
+            pendingAccess.remove(sessionId);
+        }
+        lastRemovalPoll = now;
+    }
+
+    private SessionRecord load(String sessionId) {
+        List<SessionRecord> rows = jdbc.query(
+                "SELECT wrapped_key, last_access FROM customer_session WHERE session_id = ?",
+                (rs, rowNum) -> new SessionRecord(sessionId, unwrap(sessionId, rs.getString(1)), rs.getLong(2)),
+                sessionId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private int countRows() {
+        Integer count = jdbc.queryForObject("SELECT COUNT(*) FROM customer_session", Integer.class);
+        return count == null ? 0 : count;
+    }
+
+    private void cache(SessionRecord record) {
+        makeRoom(nearCache);
+        nearCache.put(record.getSessionId(), record);
+    }
+
+    private boolean isKnownMiss(String sessionId, long now) {
+        Long until = misses.get(sessionId);
+        if (until == null) {
+            return false;
+        }
+        if (now < until) {
+            return true;
+        }
+        misses.remove(sessionId, until);
+        return false;
+    }
+
+    private void rememberMiss(String sessionId, long now) {
+        if (negativeTtl > 0) {
+            makeRoom(misses);
+            misses.put(sessionId, now + negativeTtl);
+        }
+    }
+
+    private void makeRoom(Map<String, ?> cache) {
+        if (cache.size() >= nearCacheMaxEntries) {
+            // Full: drop an arbitrary slice rather than grow
+            Iterator<? extends Map.Entry<String, ?>> entries = cache.entrySet().iterator();
+            for (int i = 0; i < nearCacheMaxEntries / 10 + 1 && entries.hasNext(); i++) {
+                entries.next();
+                entries.remove();
+            }
+        }
+    }
+
+    private String wrap(String sessionId, SecretKey key) {
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, wrappingKey, new GCMParameterSpec(128, iv));
+            cipher.updateAAD(sessionId.getBytes(StandardCharsets.UTF_8));
+            byte[] sealed = cipher.doFinal(key.getEncoded());
+            byte[] combined = new byte[IV_LENGTH + sealed.length];
+            System.arraycopy(iv, 0, combined, 0, IV_LENGTH);
+            System.arraycopy(sealed, 0, combined, IV_LENGTH, sealed.length);
+            return Base64.getEncoder().encodeToString(combined);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not encrypt session key", e);
+        }
+    }
+
+    private SecretKey unwrap(String sessionId, String wrapped) {
+        try {
+            byte[] combined = Base64.getDecoder().decode(wrapped);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, wrappingKey, new GCMParameterSpec(128, combined, 0, IV_LENGTH));
+            cipher.updateAAD(sessionId.getBytes(StandardCharsets.UTF_8));
+            return new SecretKeySpec(cipher.doFinal(combined, IV_LENGTH, combined.length - IV_LENGTH), "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not decrypt session key", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        try {
+            flushAccessTimes();
+        } catch (DataAccessException e) {
+            log.warn("Could not write last-access times on shutdown: {}", e.getMessage());
+        }
+        if (ownedDataSource != null) {
+            ownedDataSource.close();
+        }
+    }
+}
@@ -1,41 +1,124 @@
 package com.example.CUSTOMERDATASEARCH;
 
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.crypto.KeyAgreement;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @CrossOrigin(origins = "*")
 public class KeyController {
 
-    private final KeyPair keyPair;
+    /**
+     * Session-establishment protocols /session/start accepts, cheapest first.
+     * The ECDH protocols use a fresh server key pair per session; the AES key
+     * is HKDF-SHA256 of the shared secret, salted with both public keys.
+     */
+    static final String ECDH_X25519 = "ecdh-x25519";
+    static final String ECDH_P256 = "ecdh-p256";
+    static final String RSA_OAEP = "rsa-oaep";
+    static final List<String> SESSION_PROTOCOLS = List.of(ECDH_X25519, ECDH_P256, RSA_OAEP);
 
-    public KeyController() throws Exception {
-        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
-        keyGen.initialize(2048);
-        keyPair = keyGen.generateKeyPair();
-        System.out.println("RSA KeyPair generated successfully");
+    private static final byte[] ECDH_INFO = "customerdatasearch session key".getBytes(StandardCharsets.US_ASCII);
+
+    static final String KEY_ID_HEADER = "X-Key-Id";
+
+    // RSA keys are loaded or generated, and rotated, off the request path
+    private final RsaKeyRing keyRing;
+
+    public KeyController(RsaKeyRing keyRing) {
+        this.keyRing = keyRing;
     }
 
+    /**
+     * The current RSA public key; its key ID, to send back with the
+     * encrypted session key, is in the {@code X-Key-Id} header.
+     */
     @GetMapping("/keys/public")
-    public String getPublicKey() {
+    public ResponseEntity<String> getPublicKey() {
         try {
-            PublicKey pub = keyPair.getPublic();
+            RsaKeyRing.KeyEntry current = keyRing.current();
+            PublicKey pub = current.keyPair().getPublic();
             String base64Key = Base64.getEncoder().encodeToString(pub.getEncoded());
             System.out.println("Public key requested, returning base64 key of length: " + base64Key.length());
-            return base64Key;
+            return ResponseEntity.ok().header(KEY_ID_HEADER, current.keyId()).body(base64Key);
         } catch (Exception e) {
             System.err.println("Error getting public key: " + e.getMessage());
             throw new RuntimeException("Failed to get public key", e);
         }
     }
 
+    @GetMapping("/keys/protocols")
+    public Map<String, Object> getSessionProtocols() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("protocols", SESSION_PROTOCOLS);
+        return response;
+    }
+
     public KeyPair getKeyPair() {
-        return keyPair;
+        return keyRing.current().keyPair();
+    }
+
+    /**
+     * The RSA key pair with {@code keyId}, if it is current or still within
+     * its rotation grace window; otherwise null.
+     */
+    public KeyPair getKeyPair(String keyId) {
+        RsaKeyRing.KeyEntry entry = keyRing.find(keyId);
+        return entry == null ? null : entry.keyPair();
+    }
+
+    static boolean isEcdhProtocol(String protocol) {
+        return ECDH_X25519.equals(protocol) || ECDH_P256.equals(protocol);
+    }
+
+    /**
+     * Server half of an ECDH session start: a fresh key pair on the
+     * protocol's curve, agreed with the client's SPKI-encoded public key.
+     *
+     * @throws GeneralSecurityException if the client key is malformed or not on the curve
+     */
+    public EcdhAgreement agreeEcdh(String protocol, byte[] clientPublicKey) throws GeneralSecurityException {
+        String algorithm = ECDH_X25519.equals(protocol) ? "XDH" : "EC";
+        PublicKey clientKey = KeyFactory.getInstance(algorithm).generatePublic(new X509EncodedKeySpec(clientPublicKey));
+
+        KeyPairGenerator generator;
+        if (ECDH_X25519.equals(protocol)) {
+            generator = KeyPairGenerator.getInstance("X25519");
+        } else {
+            generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+        }
+        KeyPair serverPair = generator.generateKeyPair();
+
+        KeyAgreement agreement = KeyAgreement.getInstance(ECDH_X25519.equals(protocol) ? "XDH" : "ECDH");
+        agreement.init(serverPair.getPrivate());
+        agreement.doPhase(clientKey, true);
+        byte[] sharedSecret = agreement.generateSecret();
+
+        byte[] serverPublicKey = serverPair.getPublic().getEncoded();
+        byte[] salt = new byte[clientPublicKey.length + serverPublicKey.length];
+        System.arraycopy(clientPublicKey, 0, salt, 0, clientPublicKey.length);
+        System.arraycopy(serverPublicKey, 0, salt, clientPublicKey.length, serverPublicKey.length);
+        SecretKey aesKey = new SecretKeySpec(Hkdf.sha256(salt, sharedSecret, ECDH_INFO, 32), "AES");
+        return new EcdhAgreement(aesKey, serverPublicKey);
     }
+
+    public record EcdhAgreement(SecretKey aesKey, byte[] serverPublicKey) {}
 }
\ No newline at end of file
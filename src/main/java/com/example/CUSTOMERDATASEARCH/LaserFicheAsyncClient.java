@@ -0,0 +1,322 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.AsyncResponseConsumer;
+import org.apache.hc.core5.http.nio.CapacityChannel;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Non-blocking variant of {@link LaserFicheClient} for the async download path.
+ *
+ * Requests run on a small, fixed set of I/O reactor threads. Decoded bytes
+ * are pushed to an {@link AsyncDocumentSink}; when the sink reports that it
+ * is full, no more input capacity is granted to the connection, so the
+ * socket stops being read until the sink drains and asks to resume. No
+ * thread waits for Laserfiche or for the browser in between.
+ */
+@Service
+@ConditionalOnProperty(name = "pdf.download.async.enabled", havingValue = "true")
+public class LaserFicheAsyncClient implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(LaserFicheAsyncClient.class);
+
+    // Input window granted to the connection each time the sink can take more
+    private static final int CAPACITY_INCREMENT = 64 * 1024;
+
+    @Value("${laserfiche.api.url}")
+    private String laserFicheApiUrl;
+
+    @Value("${laserfiche.api.username}")
+    private String apiUsername;
+
+    @Value("${laserfiche.api.password}")
+    private String apiPassword;
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final ObjectMapper objectMapper;
+
+    public LaserFicheAsyncClient(
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${laserfiche.api.timeout.connect:10000}") int connectTimeout,
+            @Value("${laserfiche.api.timeout.read:60000}") int readTimeout,
+            @Value("${http.client.max.connections:50}") int maxConnections,
+            @Value("${http.client.max.connections.per.route:10}") int maxConnectionsPerRoute
+    ) {
+        this.objectMapper = objectMapper;
+
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeout))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "laserfiche-async")
+                .bindTo(meterRegistry);
+
+        this.httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(readTimeout))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeout))
+                        .build())
+                .build();
+        this.httpClient.start();
+    }
+
+    /**
+     * Receives decoded document bytes on an I/O thread.
+     */
+    @FunctionalInterface
+    public interface AsyncDocumentSink {
+        /**
+         * Take ownership of {@code chunk}. Returning false stops reading from
+         * Laserfiche until {@code resume} is run, from any thread.
+         */
+        boolean onChunk(ByteBuffer chunk, Runnable resume) throws IOException;
+    }
+
+    /**
+     * Start fetching a document. The future completes on an I/O thread with
+     * the same result, timings included, the blocking client would return; transport, HTTP and
+     * parse failures complete it exceptionally. Cancelling it aborts the exchange.
+     */
+    public CompletableFuture<LaserFicheClient.FetchResult> fetchDocument(int caseId, String documentType,
+                                                                        AsyncDocumentSink sink) {
+        CustomerController.LaserFicheRequest requestBody = new CustomerController.LaserFicheRequest();
+        requestBody.setCaseID(String.valueOf(caseId));
+        requestBody.setRequestID("");
+        requestBody.setDocumentType(documentType);
+
+        SimpleHttpRequest request = SimpleHttpRequest.create("POST", laserFicheApiUrl);
+        try {
+            request.setBody(objectMapper.writeValueAsBytes(requestBody), ContentType.APPLICATION_JSON);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        request.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
+        request.setHeader(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder().encodeToString(
+                (apiUsername + ":" + apiPassword).getBytes(StandardCharsets.UTF_8)));
+
+        CompletableFuture<LaserFicheClient.FetchResult> outcome = new CompletableFuture<>();
+        Future<LaserFicheClient.FetchResult> exchange = httpClient.execute(
+                SimpleRequestProducer.create(request),
+                new StreamBytesConsumer(caseId, sink, System.nanoTime()),
+                new FutureCallback<>() {
+                    @Override
+                    public void completed(LaserFicheClient.FetchResult result) {
+                        outcome.complete(result);
+                    }
+
+                    @Override
+                    public void failed(Exception cause) {
+                        outcome.completeExceptionally(cause);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        outcome.cancel(false);
+                    }
+                });
+        outcome.whenComplete((result, failure) -> {
+            if (outcome.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return outcome;
+    }
+
+    @Override
+    public void destroy() {
+        httpClient.close(CloseMode.GRACEFUL);
+    }
+
+    /**
+     * Feeds the response body through a {@link StreamBytesDecoder} and only
+     * grants the connection more input while the sink keeps up.
+     *
+     * Time not spent decoding, in the sink, or paused for the sink to catch
+     * up is put down to Laserfiche.
+     */
+    private static final class StreamBytesConsumer implements AsyncResponseConsumer<LaserFicheClient.FetchResult> {
+
+        private final int caseId;
+        private final StreamBytesDecoder decoder;
+        private final long started;
+
+        // Only touched on the I/O thread
+        private long feedNanos;
+        private long sinkNanos;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private CapacityChannel capacityChannel;
+        private boolean paused;
+        private boolean capacityWanted;
+        private long pausedAt;
+        private long pausedNanos;
+
+        private FutureCallback<LaserFicheClient.FetchResult> resultCallback;
+
+        StreamBytesConsumer(int caseId, AsyncDocumentSink sink, long started) {
+            this.caseId = caseId;
+            this.started = started;
+            this.decoder = new StreamBytesDecoder(chunk -> {
+                long offered = System.nanoTime();
+                boolean more = sink.onChunk(chunk, this::resume);
+                sinkNanos += System.nanoTime() - offered;
+                if (!more) {
+                    pause();
+                }
+            });
+        }
+
+        @Override
+        public void consumeResponse(HttpResponse response, EntityDetails entityDetails, HttpContext context,
+                                    FutureCallback<LaserFicheClient.FetchResult> resultCallback)
+                throws HttpException, IOException {
+            // Same as RestTemplate's default error handling
+            if (response.getCode() >= 400) {
+                throw new HttpException("Laserfiche API answered HTTP " + response.getCode());
+            }
+            this.resultCallback = resultCallback;
+            if (entityDetails == null) {
+                resultCallback.failed(new IOException("Empty Laserfiche response"));
+            }
+        }
+
+        @Override
+        public void informationResponse(HttpResponse response, HttpContext context) {
+        }
+
+        @Override
+        public void consume(ByteBuffer src) throws IOException {
+            long fed = System.nanoTime();
+            try {
+                decoder.feed(src);
+            } finally {
+                feedNanos += System.nanoTime() - fed;
+            }
+        }
+
+        @Override
+        public void updateCapacity(CapacityChannel capacityChannel) throws IOException {
+            lock.lock();
+            try {
+                this.capacityChannel = capacityChannel;
+                if (paused) {
+                    // Granted later by resume()
+                    capacityWanted = true;
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            capacityChannel.update(CAPACITY_INCREMENT);
+        }
+
+        private void pause() {
+            lock.lock();
+            try {
+                if (!paused) {
+                    paused = true;
+                    pausedAt = System.nanoTime();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void resume() {
+            CapacityChannel channel;
+            lock.lock();
+            try {
+                if (paused) {
+                    paused = false;
+                    pausedNanos += System.nanoTime() - pausedAt;
+                }
+                if (!capacityWanted) {
+                    return;
+                }
+                capacityWanted = false;
+                channel = capacityChannel;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                channel.update(CAPACITY_INCREMENT);
+            } catch (IOException e) {
+                log.debug("Could not resume reading Laserfiche response for CaseID {}: {}", caseId, e.getMessage());
+            }
+        }
+
+        @Override
+        public void streamEnd(List<? extends Header> trailers) throws IOException {
+            LaserFicheClient.FetchResult result = decoder.finish();
+            long elapsed = System.nanoTime() - started;
+            long stalled;
+            lock.lock();
+            try {
+                stalled = pausedNanos + (paused ? System.nanoTime() - pausedAt : 0);
+            } finally {
+                lock.unlock();
+            }
+            result.setDecodeNanos(feedNanos - sinkNanos);
+            result.setSinkNanos(sinkNanos + stalled);
+            result.setUpstreamNanos(Math.max(0, elapsed - feedNanos - stalled));
+            if (result.getResponseCode() != null && !result.isSuccess() && result.getBytesWritten() > 0) {
+                log.warn("Laserfiche API returned error code {} for CaseID {} after sending StreamBytes",
+                        result.getResponseCode(), caseId);
+            }
+            if (resultCallback != null) {
+                resultCallback.completed(result);
+            }
+        }
+
+        @Override
+        public void failed(Exception cause) {
+            if (resultCallback != null) {
+                resultCallback.failed(cause);
+            }
+        }
+
+        @Override
+        public void releaseResources() {
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Streaming client for the Laserfiche GetDocument API.
+ *
+ * The response is read token by token and the BASE64 StreamBytes field is
+ * decoded in chunks straight into a caller supplied sink, so the document is
+ * never held in the heap as a JSON buffer, a String or a decoded byte[].
+ */
+@Service
+public class LaserFicheClient {
+
+    private static final Logger log = LoggerFactory.getLogger(LaserFicheClient.class);
+
+    static final String DEFAULT_DOCUMENT_TYPE = "national id";
+
+    // Same alphabet as Base64.getDecoder(), which does not insist on '=' padding
+    private static final Base64Variant STREAM_BYTES_VARIANT = Base64Variants.MIME_NO_LINEFEEDS
+            .withReadPadding(Base64Variant.PaddingReadBehaviour.PADDING_ALLOWED);
+
+    @Value("${laserfiche.api.url}")
+    private String laserFicheApiUrl;
+
+    @Value("${laserfiche.api.username}")
+    private String apiUsername;
+
+    @Value("${laserfiche.api.password}")
+    private String apiPassword;
+
+    private final RestTemplate restTemplate;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public LaserFicheClient(RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
+    }
+
+    /**
+     * Destination for decoded PDF bytes. It is only opened once the response
+     * has produced a non-empty StreamBytes value, so callers can defer writing
+     * headers until there is actually a document to send.
+     */
+    @FunctionalInterface
+    public interface DocumentSink {
+        OutputStream open() throws IOException;
+    }
+
+    /**
+     * Fetch a document and stream its decoded bytes into {@code sink}.
+     * Transport and parse failures are thrown to the caller. The result
+     * splits the time taken between Laserfiche, decoding and the sink.
+     */
+    public FetchResult fetchDocument(int caseId, String documentType, DocumentSink sink) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        headers.setBasicAuth(apiUsername, apiPassword);
+
+        CustomerController.LaserFicheRequest requestBody = new CustomerController.LaserFicheRequest();
+        requestBody.setCaseID(String.valueOf(caseId));
+        requestBody.setRequestID("");
+        requestBody.setDocumentType(documentType);
+
+        HttpEntity<CustomerController.LaserFicheRequest> entity = new HttpEntity<>(requestBody, headers);
+
+        long started = System.nanoTime();
+        return restTemplate.execute(laserFicheApiUrl, HttpMethod.POST,
+                restTemplate.httpEntityCallback(entity),
+                response -> {
+                    // Connection, request and Laserfiche's time to the status line
+                    long untilHeaders = System.nanoTime() - started;
+                    FetchResult result = readResponse(caseId, response.getBody(), sink);
+                    result.upstreamNanos += untilHeaders;
+                    return result;
+                });
+    }
+
+    FetchResult readResponse(int caseId, InputStream body, DocumentSink sink) throws IOException {
+        FetchResult result = new FetchResult();
+        long started = System.nanoTime();
+        TimedInputStream timedBody = new TimedInputStream(body);
+        try (JsonParser parser = jsonFactory.createParser(timedBody)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Laserfiche response is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+
+                if ("StreamBytes".equalsIgnoreCase(field)) {
+                    readStreamBytes(caseId, parser, value, result, sink);
+                } else if (value.isScalarValue()) {
+                    String text = value == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+                    if ("EntryID".equalsIgnoreCase(field)) {
+                        result.entryId = text;
+                    } else if ("ResponseCode".equalsIgnoreCase(field)) {
+                        result.responseCode = text;
+                    } else if ("RespondMessage".equalsIgnoreCase(field)) {
+                        result.respondMessage = text;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } finally {
+            // Whatever was not spent waiting for input or on the sink went on parsing and decoding
+            result.upstreamNanos = timedBody.waitNanos;
+            result.decodeNanos = System.nanoTime() - started - timedBody.waitNanos - result.sinkNanos;
+        }
+
+        if (result.responseCode != null && !result.isSuccess() && result.bytesWritten > 0) {
+            log.warn("Laserfiche API returned error code {} for CaseID {} after sending StreamBytes",
+                    result.responseCode, caseId);
+        }
+        return result;
+    }
+
+    private void readStreamBytes(int caseId, JsonParser parser, JsonToken value,
+                                 FetchResult result, DocumentSink sink) throws IOException {
+        if (value != JsonToken.VALUE_STRING) {
+            parser.skipChildren();
+            return;
+        }
+        // ResponseCode normally precedes StreamBytes; don't open the sink for a known failure
+        if (result.responseCode != null && !result.isSuccess()) {
+            return;
+        }
+
+        // Open the sink lazily so an empty value never opens it
+        PendingSink pending = new PendingSink(sink);
+        try {
+            result.bytesWritten = parser.readBinaryValue(STREAM_BYTES_VARIANT, pending);
+        } finally {
+            pending.flush();
+            result.sinkNanos = pending.nanos;
+        }
+        log.debug("Decoded {} bytes of StreamBytes for CaseID {}", result.bytesWritten, caseId);
+    }
+
+    /**
+     * Opens the underlying sink on the first non-empty write.
+     */
+    private static final class PendingSink extends OutputStream {
+        private final DocumentSink sink;
+        private OutputStream target;
+        // Time spent in the sink, i.e. waiting on whoever receives the document
+        private long nanos;
+
+        PendingSink(DocumentSink sink) {
+            this.sink = sink;
+        }
+
+        private OutputStream target() throws IOException {
+            if (target == null) {
+                target = sink.open();
+            }
+            return target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long started = System.nanoTime();
+            try {
+                target().write(b);
+            } finally {
+                nanos += System.nanoTime() - started;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                long started = System.nanoTime();
+                try {
+                    target().write(b, off, len);
+                } finally {
+                    nanos += System.nanoTime() - started;
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null) {
+                long started = System.nanoTime();
+                try {
+                    target.flush();
+                } finally {
+                    nanos += System.nanoTime() - started;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds up the time spent blocked reading the response body.
+     */
+    private static final class TimedInputStream extends FilterInputStream {
+        private long waitNanos;
+
+        TimedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long started = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                waitNanos += System.nanoTime() - started;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long started = System.nanoTime();
+            try {
+                return super.read(b, off, len);
+            } finally {
+                waitNanos += System.nanoTime() - started;
+            }
+        }
+    }
+
+    /**
+     * Everything from a GetDocument response except the document itself.
+     */
+    public static class FetchResult {
+        private String entryId;
+        private String responseCode;
+        private String respondMessage;
+        private long bytesWritten;
+        private long upstreamNanos;
+        private long decodeNanos;
+        private long sinkNanos;
+
+        public String getEntryId() { return entryId; }
+        public String getResponseCode() { return responseCode; }
+        public String getRespondMessage() { return respondMessage; }
+        public long getBytesWritten() { return bytesWritten; }
+
+        /** Time spent waiting on Laserfiche: until the response headers, then for each part of the body. */
+        public long getUpstreamNanos() { return upstreamNanos; }
+        /** Time spent parsing the response and decoding StreamBytes. */
+        public long getDecodeNanos() { return decodeNanos; }
+        /** Time spent handing decoded bytes to the sink, i.e. waiting on the client. */
+        public long getSinkNanos() { return sinkNanos; }
+
+        void setEntryId(String entryId) { this.entryId = entryId; }
+        void setResponseCode(String responseCode) { this.responseCode = responseCode; }
+        void setRespondMessage(String respondMessage) { this.respondMessage = respondMessage; }
+        void setBytesWritten(long bytesWritten) { this.bytesWritten = bytesWritten; }
+        void setUpstreamNanos(long upstreamNanos) { this.upstreamNanos = upstreamNanos; }
+        void setDecodeNanos(long decodeNanos) { this.decodeNanos = decodeNanos; }
+        void setSinkNanos(long sinkNanos) { this.sinkNanos = sinkNanos; }
+
+        public boolean isSuccess() {
+            return "200".equals(responseCode) || "0".equals(responseCode);
+        }
+
+        public boolean hasDocument() {
+            return isSuccess() && bytesWritten > 0;
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control for Laserfiche calls, so a slow Laserfiche costs quick
+ * 503s instead of every request thread.
+ *
+ * An adaptive limit caps the calls in flight. It grows by one per limit's
+ * worth of calls answered within {@code laserfiche.limit.latency-threshold}
+ * (counting only time spent waiting on Laserfiche), up to
+ * {@code laserfiche.limit.max}, and shrinks by
+ * {@code laserfiche.limit.backoff-ratio} on every slow or failed call. Over
+ * the limit, up to {@code laserfiche.limit.max-queue} calls wait their turn,
+ * first come first served, for at most {@code laserfiche.limit.max-wait}, so
+ * a short burst is smoothed out; the rest are refused at once.
+ *
+ * A circuit breaker watches the last {@code laserfiche.circuit.window}
+ * outcomes. When the share of failures (transport errors, timeouts, 5xx)
+ * reaches {@code laserfiche.circuit.failure-rate} it opens and refuses every
+ * call for {@code laserfiche.circuit.open-duration}; then a single trial
+ * call decides whether it closes again. Answers such as "not found" are not
+ * failures: Laserfiche is up.
+ */
+@Component
+public class LaserFicheGuard implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(LaserFicheGuard.class);
+
+    static final String REASON_LIMIT = "limit";
+    static final String REASON_CIRCUIT_OPEN = "circuit_open";
+
+    // A refused call over the limit is worth retrying almost at once
+    private static final Duration LIMIT_RETRY_AFTER = Duration.ofSeconds(1);
+
+    enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxWaitMillis;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final int minimumCalls;
+    private final double failureRate;
+    private final long openMillis;
+    private final LongSupplier clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private double limit;
+    private int inFlight;
+    private final ArrayDeque<CompletableFuture<Permit>> queue = new ArrayDeque<>();
+
+    // Ring of the last outcomes while closed; true is a failure
+    private final boolean[] outcomes;
+    private int outcomeCount;
+    private int nextOutcome;
+    private int failures;
+    private CircuitState state = CircuitState.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejectedByLimit = new LongAdder();
+    private final LongAdder rejectedByCircuit = new LongAdder();
+
+    @Autowired
+    public LaserFicheGuard(
+            @Value("${laserfiche.limit.initial:10}") int initialLimit,
+            @Value("${laserfiche.limit.min:1}") int minLimit,
+            @Value("${laserfiche.limit.max:${http.client.max.connections:50}}") int maxLimit,
+            @Value("${laserfiche.limit.max-queue:100}") int maxQueue,
+            @Value("${laserfiche.limit.max-wait:2s}") Duration maxWait,
+            @Value("${laserfiche.limit.latency-threshold:5s}") Duration latencyThreshold,
+            @Value("${laserfiche.limit.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${laserfiche.circuit.window:20}") int window,
+            @Value("${laserfiche.circuit.minimum-calls:10}") int minimumCalls,
+            @Value("${laserfiche.circuit.failure-rate:0.5}") double failureRate,
+            @Value("${laserfiche.circuit.open-duration:30s}") Duration openDuration
+    ) {
+        this(initialLimit, minLimit, maxLimit, maxQueue, maxWait, latencyThreshold, backoffRatio, window, minimumCalls,
+                failureRate, openDuration, System::currentTimeMillis);
+    }
+
+    LaserFicheGuard(int initialLimit, int minLimit, int maxLimit, int maxQueue, Duration maxWait,
+                    Duration latencyThreshold, double backoffRatio, int window, int minimumCalls, double failureRate,
+                    Duration openDuration, LongSupplier clock) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.maxWaitMillis = maxWait.toMillis();
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.outcomes = new boolean[Math.max(1, window)];
+        this.minimumCalls = Math.min(Math.max(1, minimumCalls), outcomes.length);
+        this.failureRate = failureRate;
+        this.openMillis = openDuration.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Permission for one call, waiting in line if the limit is reached; report
+     * how it went through exactly one of the permit's methods.
+     *
+     * @throws LaserFicheUnavailableException if the queue is full, the wait runs out or the circuit is open
+     */
+    public Permit acquire() {
+        try {
+            return acquireAsync().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof LaserFicheUnavailableException refused) {
+                throw refused;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Non-blocking form of {@link #acquire}: the future completes with the
+     * permit, or fails with {@link LaserFicheUnavailableException}.
+     */
+    public CompletableFuture<Permit> acquireAsync() {
+        long now = clock.getAsLong();
+        CompletableFuture<Permit> waiter;
+        lock.lock();
+        try {
+            if (state == CircuitState.OPEN) {
+                long remaining = openedAt + openMillis - now;
+                if (remaining > 0) {
+                    rejectedByCircuit.increment();
+                    return CompletableFuture.failedFuture(
+                            new LaserFicheUnavailableException(REASON_CIRCUIT_OPEN, Duration.ofMillis(remaining)));
+                }
+                state = CircuitState.HALF_OPEN;
+                log.info("Laserfiche circuit half-open, sending a trial call");
+            }
+            if (state == CircuitState.HALF_OPEN && trialInFlight) {
+                rejectedByCircuit.increment();
+                return CompletableFuture.failedFuture(
+                        new LaserFicheUnavailableException(REASON_CIRCUIT_OPEN, LIMIT_RETRY_AFTER));
+            }
+            // Only when nobody is waiting, so callers are let in in order
+            if (queue.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                boolean trial = state == CircuitState.HALF_OPEN;
+                trialInFlight |= trial;
+                return CompletableFuture.completedFuture(new Permit(trial));
+            }
+            if (queue.size() >= maxQueue) {
+                rejectedByLimit.increment();
+                return CompletableFuture.failedFuture(limitReached());
+            }
+            waiter = new CompletableFuture<>();
+            queue.add(waiter);
+            queued.increment();
+        } finally {
+            lock.unlock();
+        }
+
+        // Chained, so the caller only hears of a timeout once the waiter has left the queue
+        return waiter.orTimeout(maxWaitMillis, TimeUnit.MILLISECONDS).whenComplete((permit, failure) -> {
+            if (failure != null) {
+                lock.lock();
+                try {
+                    queue.remove(waiter);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }).handle((permit, failure) -> {
+            if (failure == null) {
+                return permit;
+            }
+            Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            if (cause instanceof LaserFicheUnavailableException refused) {
+                throw new CompletionException(refused);
+            }
+            rejectedByLimit.increment();
+            throw new CompletionException(limitReached());
+        });
+    }
+
+    private static LaserFicheUnavailableException limitReached() {
+        return new LaserFicheUnavailableException(REASON_LIMIT, LIMIT_RETRY_AFTER);
+    }
+
+    /**
+     * Let waiting callers in while there is room, or turn them all away if the
+     * circuit has opened. A half-open circuit keeps them waiting for the trial.
+     */
+    private void admitWaiters() {
+        List<CompletableFuture<Permit>> admitted = new ArrayList<>();
+        List<CompletableFuture<Permit>> refused = new ArrayList<>();
+        long retryAfter = 0;
+        lock.lock();
+        try {
+            if (state == CircuitState.OPEN) {
+                refused.addAll(queue);
+                queue.clear();
+                retryAfter = openMillis;
+            } else if (state == CircuitState.CLOSED) {
+                while (!queue.isEmpty() && inFlight < (int) limit) {
+                    admitted.add(queue.poll());
+                    inFlight++;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Completed outside the lock, as callers continue on this thread
+        for (CompletableFuture<Permit> waiter : admitted) {
+            Permit permit = new Permit(false);
+            if (!waiter.complete(permit)) {
+                // Timed out just now
+                permit.cancelled();
+            }
+        }
+        for (CompletableFuture<Permit> waiter : refused) {
+            rejectedByCircuit.increment();
+            waiter.completeExceptionally(
+                    new LaserFicheUnavailableException(REASON_CIRCUIT_OPEN, Duration.ofMillis(retryAfter)));
+        }
+    }
+
+    private void release(Permit permit, long latencyNanos, boolean failed) {
+        long now = clock.getAsLong();
+        lock.lock();
+        try {
+            inFlight--;
+            if (permit.trial) {
+                trialInFlight = false;
+            }
+
+            if (failed || latencyNanos > latencyThresholdNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (inFlight + 1 >= limit / 2) {
+                // Only grow a limit that is actually being used
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+
+            if (permit.trial) {
+                if (failed) {
+                    open(now);
+                } else {
+                    state = CircuitState.CLOSED;
+                    outcomeCount = 0;
+                    nextOutcome = 0;
+                    failures = 0;
+                    log.info("Laserfiche circuit closed");
+                }
+            } else if (state == CircuitState.CLOSED) {
+                recordOutcome(failed);
+                if (outcomeCount >= minimumCalls && failures >= failureRate * outcomeCount) {
+                    open(now);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        admitWaiters();
+    }
+
+    /**
+     * Abandoned on our side, which says nothing about Laserfiche: free the
+     * slot (and the trial, for the next caller to make) without a sample.
+     */
+    private void cancel(Permit permit) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (permit.trial) {
+                trialInFlight = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        admitWaiters();
+    }
+
+    private void recordOutcome(boolean failed) {
+        if (outcomeCount == outcomes.length) {
+            if (outcomes[nextOutcome]) {
+                failures--;
+            }
+        } else {
+            outcomeCount++;
+        }
+        outcomes[nextOutcome] = failed;
+        if (failed) {
+            failures++;
+        }
+        nextOutcome = (nextOutcome + 1) % outcomes.length;
+    }
+
+    private void open(long now) {
+        if (state != CircuitState.OPEN) {
+            log.warn("Laserfiche circuit open for {} ms ({} of the last {} calls failed)",
+                    openMillis, failures, outcomeCount);
+        }
+        state = CircuitState.OPEN;
+        openedAt = now;
+    }
+
+    CircuitState getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    double getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getWaiting() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        lock.lock();
+        try {
+            stats.put("circuit", state.name().toLowerCase(Locale.ROOT));
+            stats.put("limit", (int) limit);
+            stats.put("inFlight", inFlight);
+            stats.put("waiting", queue.size());
+            stats.put("recentFailures", failures);
+            stats.put("recentCalls", outcomeCount);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("queued", queued.sum());
+        stats.put("rejectedByLimit", rejectedByLimit.sum());
+        stats.put("rejectedByCircuit", rejectedByCircuit.sum());
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("laserfiche.limit", this, LaserFicheGuard::getLimit)
+                .description("Adaptive limit on concurrent Laserfiche calls").register(registry);
+        Gauge.builder("laserfiche.limit.in.flight", this, LaserFicheGuard::getInFlight).register(registry);
+        Gauge.builder("laserfiche.limit.waiting", this, LaserFicheGuard::getWaiting)
+                .description("Laserfiche calls waiting for the limit").register(registry);
+        FunctionCounter.builder("laserfiche.rejected", rejectedByLimit, LongAdder::sum)
+                .tag("reason", REASON_LIMIT).register(registry);
+        FunctionCounter.builder("laserfiche.rejected", rejectedByCircuit, LongAdder::sum)
+                .tag("reason", REASON_CIRCUIT_OPEN).register(registry);
+        for (CircuitState circuitState : CircuitState.values()) {
+            Gauge.builder("laserfiche.circuit.state", this, guard -> guard.getState() == circuitState ? 1 : 0)
+                    .tag("state", circuitState.name().toLowerCase(Locale.ROOT)).register(registry);
+        }
+    }
+
+    /**
+     * One admitted call.
+     */
+    public final class Permit {
+        private final boolean trial;
+        private boolean released;
+
+        private Permit(boolean trial) {
+            this.trial = trial;
+        }
+
+        /**
+         * Laserfiche answered, whatever the answer; {@code latencyNanos} is
+         * the time spent waiting on it.
+         */
+        public void completed(long latencyNanos) {
+            if (release()) {
+                LaserFicheGuard.this.release(this, latencyNanos, false);
+            }
+        }
+
+        /**
+         * The call failed on Laserfiche's side or on the way there.
+         */
+        public void failed(long elapsedNanos) {
+            if (release()) {
+                LaserFicheGuard.this.release(this, elapsedNanos, true);
+            }
+        }
+
+        /**
+         * The call was abandoned for reasons of our own, e.g. the client left.
+         */
+        public void cancelled() {
+            if (release()) {
+                cancel(this);
+            }
+        }
+
+        // Only the first report counts
+        private boolean release() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            return true;
+        }
+    }
+}
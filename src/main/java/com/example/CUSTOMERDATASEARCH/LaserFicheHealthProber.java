@@ -0,0 +1,313 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Laserfiche reachability, measured in the background so health checks
+ * never call Laserfiche themselves.
+ *
+ * Every {@code laserfiche.health.probe.interval} a HEAD request goes to the
+ * GetDocument URL: any HTTP answer proves the server is reachable without a
+ * document being looked up or downloaded. Probes use their own connection,
+ * so a pool saturated by downloads does not read as Laserfiche being down,
+ * and give up after {@code laserfiche.health.probe.timeout}. Transport
+ * errors and 5xx answers are failures.
+ *
+ * The last {@code laserfiche.health.probe.window} probes give the latency
+ * percentiles and error rate. Each probe publishes an immutable snapshot
+ * that {@link HealthController} and the {@code laserfiche} Actuator health
+ * indicator read as is. The status is DOWN after
+ * {@code laserfiche.health.probe.failure-threshold} failures in a row, and
+ * UNKNOWN until the first successful probe (or that many failures).
+ */
+@Component("laserficheHealthIndicator")
+public class LaserFicheHealthProber implements HealthIndicator, MeterBinder, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(LaserFicheHealthProber.class);
+
+    // Status code for a probe that got no HTTP answer
+    static final int NO_RESPONSE = -1;
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final int failureThreshold;
+    private final LongSupplier clock;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate probeTemplate;
+    private final ScheduledExecutorService scheduler;
+
+    // Ring of the last probes; guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long[] latencies;
+    private final boolean[] failures;
+    private int count;
+    private int next;
+    private int consecutiveFailures;
+
+    private volatile Snapshot snapshot;
+    private volatile Timer upTimer;
+    private volatile Timer failedTimer;
+
+    @Autowired
+    public LaserFicheHealthProber(
+            @Value("${laserfiche.api.url}") String url,
+            @Value("${laserfiche.api.username}") String username,
+            @Value("${laserfiche.api.password}") String password,
+            @Value("${laserfiche.health.probe.interval:30s}") Duration interval,
+            @Value("${laserfiche.health.probe.timeout:5s}") Duration timeout,
+            @Value("${laserfiche.health.probe.window:20}") int window,
+            @Value("${laserfiche.health.probe.failure-threshold:3}") int failureThreshold
+    ) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.clock = System::currentTimeMillis;
+        this.latencies = new long[Math.max(1, window)];
+        this.failures = new boolean[latencies.length];
+        this.snapshot = Snapshot.notYetProbed();
+        this.url = url;
+        this.username = username;
+        this.password = password;
+
+        Timeout probeTimeout = Timeout.of(timeout);
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(1)
+                        .setMaxConnPerRoute(1)
+                        .setDefaultConnectionConfig(ConnectionConfig.custom()
+                                .setConnectTimeout(probeTimeout)
+                                .setSocketTimeout(probeTimeout)
+                                .build())
+                        .build())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(probeTimeout)
+                        .setResponseTimeout(probeTimeout)
+                        .build())
+                .build();
+        this.probeTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        // Every HTTP answer is a result to classify, not an exception
+        this.probeTemplate.setErrorHandler(new ResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) {
+                return false;
+            }
+
+            @Override
+            public void handleError(ClientHttpResponse response) {
+            }
+        });
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "laserfiche-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::probe, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Without probing of its own; results are fed through {@link #record}.
+     */
+    LaserFicheHealthProber(int window, int failureThreshold, LongSupplier clock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.clock = clock;
+        this.latencies = new long[Math.max(1, window)];
+        this.failures = new boolean[latencies.length];
+        this.snapshot = Snapshot.notYetProbed();
+        this.url = null;
+        this.username = null;
+        this.password = null;
+        this.httpClient = null;
+        this.probeTemplate = null;
+        this.scheduler = null;
+    }
+
+    private void probe() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBasicAuth(username, password);
+        long started = System.nanoTime();
+        int statusCode;
+        String error = null;
+        try {
+            statusCode = probeTemplate.exchange(url, HttpMethod.HEAD, new HttpEntity<>(headers), Void.class)
+                    .getStatusCode().value();
+        } catch (ResourceAccessException e) {
+            statusCode = NO_RESPONSE;
+            error = "Not accessible - Network error: " + e.getMessage();
+        } catch (Exception e) {
+            statusCode = NO_RESPONSE;
+            error = "Error: " + e.getClass().getSimpleName() + " - " + e.getMessage();
+        }
+        record(statusCode, error, System.nanoTime() - started);
+    }
+
+    /**
+     * Take one probe's result into the window and publish a new snapshot.
+     * {@code error} describes a probe that got no HTTP answer.
+     */
+    void record(int statusCode, String error, long latencyNanos) {
+        boolean failed = statusCode == NO_RESPONSE || statusCode >= 500;
+        Timer timer = failed ? failedTimer : upTimer;
+        if (timer != null) {
+            timer.record(latencyNanos, TimeUnit.NANOSECONDS);
+        }
+
+        Snapshot previous = snapshot;
+        Snapshot current;
+        lock.lock();
+        try {
+            if (count < latencies.length) {
+                count++;
+            }
+            latencies[next] = latencyNanos;
+            failures[next] = failed;
+            next = (next + 1) % latencies.length;
+            consecutiveFailures = failed ? consecutiveFailures + 1 : 0;
+            current = snapshot(previous.status(), failed, statusCode, error, latencyNanos);
+            snapshot = current;
+        } finally {
+            lock.unlock();
+        }
+
+        if (!current.status().equals(previous.status())) {
+            log.info("Laserfiche is now {}: {}", current.status().getCode(), current.connectivity());
+        }
+    }
+
+    private Snapshot snapshot(Status previous, boolean failed, int statusCode, String error, long latencyNanos) {
+        long[] window = Arrays.copyOf(latencies, count);
+        Arrays.sort(window);
+        int failedInWindow = 0;
+        for (int i = 0; i < count; i++) {
+            if (failures[i]) {
+                failedInWindow++;
+            }
+        }
+
+        Map<String, Object> details = new HashMap<>();
+        details.put("lastProbe", Instant.ofEpochMilli(clock.getAsLong()).toString());
+        details.put("lastLatencyMs", toMillis(latencyNanos));
+        details.put("latencyP50Ms", toMillis(percentile(window, 0.5)));
+        details.put("latencyP95Ms", toMillis(percentile(window, 0.95)));
+        details.put("latencyMaxMs", toMillis(window[window.length - 1]));
+        details.put("errorRate", (double) failedInWindow / count);
+        details.put("probes", count);
+        details.put("consecutiveFailures", consecutiveFailures);
+
+        // Failures below the threshold keep the last verdict, UNKNOWN if nothing has succeeded yet
+        Status status = consecutiveFailures >= failureThreshold ? Status.DOWN
+                : failed && Status.UNKNOWN.equals(previous) ? Status.UNKNOWN : Status.UP;
+        String connectivity = error != null ? error : describe(statusCode);
+        details.put("connectivity", connectivity);
+        return new Snapshot(status, connectivity, Map.copyOf(details));
+    }
+
+    private static String describe(int statusCode) {
+        if (statusCode < 300) {
+            return "Connected (HTTP " + statusCode + ")";
+        } else if (statusCode == 401) {
+            return "Connected - Authentication failed";
+        } else if (statusCode == 404) {
+            return "Connected - Endpoint not found";
+        }
+        return "Connected - HTTP " + statusCode;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        return sorted[(int) Math.ceil(quantile * sorted.length) - 1];
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    /**
+     * The latest probe results; never waits on Laserfiche.
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public Health health() {
+        Snapshot current = snapshot;
+        return Health.status(current.status()).withDetails(current.details()).build();
+    }
+
+    double getErrorRate() {
+        Object rate = snapshot.details().get("errorRate");
+        return rate instanceof Double value ? value : 0.0;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        upTimer = Timer.builder("laserfiche.probe").tag("outcome", "up")
+                .publishPercentiles(PERCENTILES).register(registry);
+        failedTimer = Timer.builder("laserfiche.probe").tag("outcome", "failed")
+                .publishPercentiles(PERCENTILES).register(registry);
+        Gauge.builder("laserfiche.probe.error.rate", this, LaserFicheHealthProber::getErrorRate)
+                .description("Share of recent Laserfiche probes that failed").register(registry);
+        Gauge.builder("laserfiche.probe.up", this, prober -> Status.DOWN.equals(prober.snapshot.status()) ? 0 : 1)
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+
+    /**
+     * Probe results as of the last probe.
+     */
+    public record Snapshot(Status status, String connectivity, Map<String, Object> details) {
+
+        static Snapshot notYetProbed() {
+            return new Snapshot(Status.UNKNOWN, "Not probed yet", Map.of("probes", 0));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import java.time.Duration;
+
+/**
+ * A Laserfiche call refused without being made: by {@link LaserFicheGuard},
+ * because the concurrency limit is reached or the circuit is open, or by
+ * {@link PdfMemoryBudget}, because there is no room for the document.
+ * Answered with 503 and {@code Retry-After}.
+ */
+public class LaserFicheUnavailableException extends RuntimeException {
+
+    private final String reason;
+    private final Duration retryAfter;
+
+    public LaserFicheUnavailableException(String reason, Duration retryAfter) {
+        super("Laserfiche call refused (" + reason + "), retry after " + retryAfter.toSeconds() + "s");
+        this.reason = reason;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Whole seconds for the {@code Retry-After} header, at least one.
+     */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+}
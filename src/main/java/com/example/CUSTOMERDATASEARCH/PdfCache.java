@@ -0,0 +1,269 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Byte-bounded cache of decoded Laserfiche documents.
+ *
+ * Entries are weighed by their size and evicted least-recently-used first
+ * once the memory budget is exceeded. When the disk tier is enabled, entries
+ * evicted from memory are spilled to it (encrypted) and promoted back on the
+ * next hit. Every entry expires a fixed time after it was fetched.
+ */
+@Service
+public class PdfCache implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfCache.class);
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final long ttlMillis;
+    private final PdfDiskCache disk;
+
+    // Access-ordered so iteration starts at the least recently used entry; guarded by lock
+    private final LinkedHashMap<String, PdfDocument> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long memoryBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public PdfCache(
+            @Value("${pdf.cache.enabled:true}") boolean enabled,
+            @Value("${pdf.cache.max-bytes:64MB}") DataSize maxBytes,
+            @Value("${pdf.cache.max-entry-bytes:16MB}") DataSize maxEntryBytes,
+            @Value("${pdf.cache.ttl:10m}") Duration ttl,
+            @Value("${pdf.cache.disk.enabled:false}") boolean diskEnabled,
+            @Value("${pdf.cache.disk.dir:${java.io.tmpdir}/customerdatasearch-pdf-cache}") String diskDir,
+            @Value("${pdf.cache.disk.max-bytes:512MB}") DataSize diskMaxBytes,
+            @Value("${pdf.cache.disk.key:}") String diskKey
+    ) throws IOException {
+        this.enabled = enabled;
+        this.maxBytes = maxBytes.toBytes();
+        this.maxEntryBytes = (int) Math.min(maxEntryBytes.toBytes(), Math.min(this.maxBytes, Integer.MAX_VALUE - 8));
+        this.ttlMillis = ttl.toMillis();
+        this.disk = enabled && diskEnabled ? new PdfDiskCache(Path.of(diskDir), diskMaxBytes.toBytes(), diskKey) : null;
+
+        log.info("PDF cache {} (memory {} bytes, max entry {} bytes, ttl {}, disk tier {})",
+                enabled ? "enabled" : "disabled", this.maxBytes, this.maxEntryBytes, ttl,
+                disk != null ? diskDir : "off");
+    }
+
+    public static String cacheKey(int caseId, String documentType) {
+        return caseId + "|" + documentType;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Largest document that will be kept; callers stop buffering beyond this.
+     */
+    public int getMaxEntryBytes() {
+        return enabled ? maxEntryBytes : 0;
+    }
+
+    public PdfDocument get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+
+        lock.lock();
+        try {
+            PdfDocument document = memory.get(key);
+            if (document != null) {
+                if (!isExpired(document, now)) {
+                    hits.increment();
+                    return document;
+                }
+                memory.remove(key);
+                memoryBytes -= document.getSize();
+                expirations.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (disk != null) {
+            PdfDocument document = disk.get(key);
+            if (document != null) {
+                if (!isExpired(document, now)) {
+                    diskHits.increment();
+                    disk.remove(key);
+                    putInMemory(key, document);
+                    return document;
+                }
+                disk.remove(key);
+                expirations.increment();
+            }
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Whether the memory tier holds {@code key}, without counting a hit or
+     * miss or touching its recency. Expired entries may still be reported.
+     */
+    public boolean containsInMemory(String key) {
+        if (!enabled) {
+            return false;
+        }
+        lock.lock();
+        try {
+            return memory.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(String key, PdfDocument document) {
+        if (!enabled || document.getSize() > maxEntryBytes) {
+            return;
+        }
+        putInMemory(key, document);
+        if (disk != null) {
+            // Drop any older spilled copy; the fresh one spills again on eviction
+            disk.remove(key);
+        }
+    }
+
+    public void invalidate(String key) {
+        lock.lock();
+        try {
+            PdfDocument removed = memory.remove(key);
+            if (removed != null) {
+                memoryBytes -= removed.getSize();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (disk != null) {
+            disk.remove(key);
+        }
+    }
+
+    private void putInMemory(String key, PdfDocument document) {
+        List<Map.Entry<String, PdfDocument>> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            PdfDocument previous = memory.put(key, document);
+            if (previous != null) {
+                memoryBytes -= previous.getSize();
+            }
+            memoryBytes += document.getSize();
+
+            Iterator<Map.Entry<String, PdfDocument>> it = memory.entrySet().iterator();
+            while (memoryBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, PdfDocument> eldest = it.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                it.remove();
+                memoryBytes -= eldest.getValue().getSize();
+                evicted.add(eldest);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // Disk writes happen outside the lock so readers never wait on I/O
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, PdfDocument> entry : evicted) {
+            if (disk != null && !isExpired(entry.getValue(), now)) {
+                evictions.add(disk.put(entry.getKey(), entry.getValue()));
+            } else {
+                evictions.increment();
+            }
+        }
+    }
+
+    private boolean isExpired(PdfDocument document, long now) {
+        return now - document.getFetchedAt() > ttlMillis;
+    }
+
+    public long getMemoryBytes() {
+        lock.lock();
+        try {
+            return memoryBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMemoryEntryCount() {
+        lock.lock();
+        try {
+            return memory.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("hits", hits.sum());
+        stats.put("diskHits", diskHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("entries", getMemoryEntryCount());
+        stats.put("bytes", getMemoryBytes());
+        stats.put("maxBytes", maxBytes);
+        if (disk != null) {
+            stats.put("diskEntries", disk.getEntryCount());
+            stats.put("diskBytes", disk.getBytes());
+        }
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pdf.cache.gets", hits, LongAdder::sum)
+                .tag("result", "hit").tag("tier", "memory").register(registry);
+        FunctionCounter.builder("pdf.cache.gets", diskHits, LongAdder::sum)
+                .tag("result", "hit").tag("tier", "disk").register(registry);
+        FunctionCounter.builder("pdf.cache.gets", misses, LongAdder::sum)
+                .tag("result", "miss").tag("tier", "none").register(registry);
+        FunctionCounter.builder("pdf.cache.evictions", evictions, LongAdder::sum).register(registry);
+        FunctionCounter.builder("pdf.cache.expirations", expirations, LongAdder::sum).register(registry);
+        Gauge.builder("pdf.cache.bytes", this, PdfCache::getMemoryBytes)
+                .tag("tier", "memory").baseUnit("bytes").register(registry);
+        Gauge.builder("pdf.cache.entries", this, PdfCache::getMemoryEntryCount)
+                .tag("tier", "memory").register(registry);
+        if (disk != null) {
+            Gauge.builder("pdf.cache.bytes", disk, PdfDiskCache::getBytes)
+                    .tag("tier", "disk").baseUnit("bytes").register(registry);
+            Gauge.builder("pdf.cache.entries", disk, PdfDiskCache::getEntryCount)
+                    .tag("tier", "disk").register(registry);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Second cache tier that keeps documents on local disk, encrypted with
+ * AES-256-GCM under a server-side key. File names are an HMAC of the cache
+ * key under a key derived from the encryption key, so neither the CaseID nor
+ * the content can be recovered from the directory without it. Files live in
+ * an owner-only {@code entries} subdirectory of the configured directory; the
+ * cache only ever deletes from there.
+ */
+class PdfDiskCache {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfDiskCache.class);
+
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final String SUFFIX = ".bin";
+    private static final String SUBDIRECTORY = "entries";
+    private static final byte[] FILE_NAME_KEY_LABEL = "customerdatasearch pdf disk cache file names".getBytes(StandardCharsets.UTF_8);
+    private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+
+    private final Path directory;
+    private final boolean posix;
+    private final long maxBytes;
+    private final SecretKey key;
+    private final SecretKey fileNameKey;
+    private final SecureRandom random = new SecureRandom();
+
+    // Access-ordered index of what is on disk, guarded by lock
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long bytes;
+
+    private record Entry(Path file, long size) {}
+
+    /**
+     * @param base64Key AES-256 key, or empty to generate one for this process only
+     */
+    PdfDiskCache(Path directory, long maxBytes, String base64Key) throws IOException {
+        this.directory = directory.resolve(SUBDIRECTORY);
+        this.maxBytes = maxBytes;
+        this.posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        Files.createDirectories(directory);
+        if (posix) {
+            Files.createDirectories(this.directory, PosixFilePermissions.asFileAttribute(DIRECTORY_PERMISSIONS));
+            // An existing directory may have been made by something else
+            if (!Files.getPosixFilePermissions(this.directory).equals(DIRECTORY_PERMISSIONS)) {
+                log.warn("Restricting disk cache directory {} to its owner", this.directory);
+                Files.setPosixFilePermissions(this.directory, DIRECTORY_PERMISSIONS);
+            }
+        } else {
+            Files.createDirectories(this.directory);
+            log.warn("Cannot restrict disk cache directory {} to its owner on this filesystem", this.directory);
+        }
+
+        if (base64Key == null || base64Key.isBlank()) {
+            this.key = generateKey();
+        } else {
+            this.key = new SecretKeySpec(Base64.getDecoder().decode(base64Key.trim()), "AES");
+        }
+        this.fileNameKey = new SecretKeySpec(hmac(key, FILE_NAME_KEY_LABEL), "HmacSHA256");
+
+        // The index is not persisted, and files written under an ephemeral key are
+        // unreadable anyway, so start every process with an empty directory
+        purge();
+    }
+
+    private static SecretKey generateKey() {
+        try {
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(256);
+            return generator.generateKey();
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot generate disk cache key", e);
+        }
+    }
+
+    long getBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getEntryCount() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Encrypt and write a document. Returns the number of entries evicted to make room.
+     */
+    int put(String cacheKey, PdfDocument document) {
+        Path file = directory.resolve(fileName(cacheKey));
+        byte[] sealed;
+        try {
+            sealed = seal(cacheKey, document);
+            if (sealed.length > maxBytes) {
+                return 0;
+            }
+            FileAttribute<?>[] attributes = posix
+                    ? new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(FILE_PERMISSIONS) }
+                    : new FileAttribute<?>[0];
+            Path tmp = Files.createTempFile(directory, "pdf", ".tmp", attributes);
+            Files.write(tmp, sealed);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            log.warn("Failed to write disk cache entry: {}", e.getMessage());
+            return 0;
+        }
+
+        List<Path> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            Entry previous = index.put(cacheKey, new Entry(file, sealed.length));
+            if (previous != null) {
+                bytes -= previous.size();
+            }
+            bytes += sealed.length;
+            Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Entry> eldest = it.next();
+                if (eldest.getKey().equals(cacheKey)) {
+                    continue;
+                }
+                it.remove();
+                bytes -= eldest.getValue().size();
+                evicted.add(eldest.getValue().file());
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (Path path : evicted) {
+            deleteQuietly(path);
+        }
+        return evicted.size();
+    }
+
+    /**
+     * Read and decrypt a document, or null when absent or unreadable.
+     */
+    PdfDocument get(String cacheKey) {
+        Entry entry;
+        lock.lock();
+        try {
+            entry = index.get(cacheKey);
+        } finally {
+            lock.unlock();
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        try {
+            return unseal(cacheKey, Files.readAllBytes(entry.file()));
+        } catch (Exception e) {
+            log.warn("Dropping unreadable disk cache entry: {}", e.getMessage());
+            remove(cacheKey);
+            return null;
+        }
+    }
+
+    void remove(String cacheKey) {
+        Entry entry;
+        lock.lock();
+        try {
+            entry = index.remove(cacheKey);
+            if (entry != null) {
+                bytes -= entry.size();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (entry != null) {
+            deleteQuietly(entry.file());
+        }
+    }
+
+    private byte[] seal(String cacheKey, PdfDocument document) throws Exception {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream(document.getSize() + 128);
+        try (DataOutputStream out = new DataOutputStream(plain)) {
+            out.writeLong(document.getFetchedAt());
+            out.writeUTF(document.getEntryId() != null ? document.getEntryId() : "");
+            out.writeUTF(document.getContentHash());
+            out.writeInt(document.getSize());
+            out.write(document.getContent());
+        }
+
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+        // Bind the ciphertext to its key so files cannot be swapped between entries
+        cipher.updateAAD(cacheKey.getBytes(StandardCharsets.UTF_8));
+
+        byte[] plainBytes = plain.toByteArray();
+        ByteBuffer sealed = ByteBuffer.allocate(IV_LENGTH + cipher.getOutputSize(plainBytes.length));
+        sealed.put(iv);
+        cipher.doFinal(ByteBuffer.wrap(plainBytes), sealed);
+        return sealed.array();
+    }
+
+    private PdfDocument unseal(String cacheKey, byte[] sealed) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, sealed, 0, IV_LENGTH));
+        cipher.updateAAD(cacheKey.getBytes(StandardCharsets.UTF_8));
+        byte[] plain = cipher.doFinal(sealed, IV_LENGTH, sealed.length - IV_LENGTH);
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(plain))) {
+            long fetchedAt = in.readLong();
+            String entryId = in.readUTF();
+            String contentHash = in.readUTF();
+            byte[] content = new byte[in.readInt()];
+            in.readFully(content);
+            return new PdfDocument(content, entryId.isEmpty() ? null : entryId, contentHash, fetchedAt);
+        }
+    }
+
+    private String fileName(String cacheKey) {
+        return HexFormat.of().formatHex(hmac(fileNameKey, cacheKey.getBytes(StandardCharsets.UTF_8))) + SUFFIX;
+    }
+
+    private static byte[] hmac(SecretKey key, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key.getEncoded(), "HmacSHA256"));
+            return mac.doFinal(data);
+        } catch (Exception e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private void purge() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*{" + SUFFIX + ",.tmp}")) {
+            for (Path file : files) {
+                deleteQuietly(file);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Could not delete disk cache file {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * A decoded Laserfiche document together with what we know about it.
+ * The content array is shared, callers must not modify it.
+ */
+public final class PdfDocument {
+
+    private final byte[] content;
+    private final String entryId;
+    private final String contentHash;
+    private final long fetchedAt;
+
+    public PdfDocument(byte[] content, String entryId, long fetchedAt) {
+        this(content, entryId, sha256(content), fetchedAt);
+    }
+
+    PdfDocument(byte[] content, String entryId, String contentHash, long fetchedAt) {
+        this.content = content;
+        this.entryId = entryId;
+        this.contentHash = contentHash;
+        this.fetchedAt = fetchedAt;
+    }
+
+    public byte[] getContent() { return content; }
+    public String getEntryId() { return entryId; }
+    public long getFetchedAt() { return fetchedAt; }
+    public int getSize() { return content.length; }
+
+    /**
+     * URL-safe BASE64 SHA-256 of the content.
+     */
+    public String getContentHash() { return contentHash; }
+
+    static String sha256(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Global budget for document bytes held in the heap by Laserfiche fetches in
+ * flight, so a burst of large downloads queues or gets 503s instead of
+ * running the JVM out of memory.
+ *
+ * Every fetch that keeps a copy of the document reserves its expected size
+ * before it starts: the size last seen for that document, or
+ * {@code pdf.memory.budget.default-reservation} when it is unknown, never
+ * more than the copy can grow to (nothing for a document known to be too
+ * large to keep). Without room, up to
+ * {@code pdf.memory.budget.max-queue} fetches wait their turn, first come
+ * first served, for at most {@code pdf.memory.budget.max-wait}; the rest are
+ * refused with a {@link LaserFicheUnavailableException}, i.e. 503 and
+ * {@code Retry-After}. A copy that outgrows its reservation takes more only
+ * if it is free at once; otherwise the copy is dropped and the document is
+ * streamed as if it were too large to keep.
+ *
+ * The budget defaults to a quarter of the maximum heap. Transfers that only
+ * stream hold small fixed buffers and are bounded by the thread pool and
+ * {@link LaserFicheGuard} instead.
+ */
+@Component
+public class PdfMemoryBudget implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfMemoryBudget.class);
+
+    static final String REASON_MEMORY = "memory";
+
+    // Reservations are short-lived, so a refused caller may soon find room
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final long maxBytes;
+    private final long defaultReservation;
+    private final int maxQueue;
+    private final long maxWaitMillis;
+
+    // Guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+    private long reservedBytes;
+    private int reservations;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejectedQueueFull = new LongAdder();
+    private final LongAdder rejectedTimeout = new LongAdder();
+    private final LongAdder growthRefused = new LongAdder();
+
+    private volatile Timer waitTimer;
+
+    private record Waiter(long bytes, long enqueuedAt, CompletableFuture<Reservation> future) {}
+
+    @Autowired
+    public PdfMemoryBudget(
+            @Value("${pdf.memory.budget.max-bytes:0}") DataSize maxBytes,
+            @Value("${pdf.memory.budget.default-reservation:2MB}") DataSize defaultReservation,
+            @Value("${pdf.memory.budget.max-queue:100}") int maxQueue,
+            @Value("${pdf.memory.budget.max-wait:2s}") Duration maxWait
+    ) {
+        this(maxBytes.toBytes() > 0 ? maxBytes.toBytes() : Runtime.getRuntime().maxMemory() / 4,
+                defaultReservation.toBytes(), maxQueue, maxWait);
+        log.info("PDF memory budget {} bytes (default reservation {} bytes, queue {}, max wait {})",
+                this.maxBytes, this.defaultReservation, this.maxQueue, maxWait);
+    }
+
+    PdfMemoryBudget(long maxBytes, long defaultReservation, int maxQueue, Duration maxWait) {
+        this.maxBytes = Math.max(1, maxBytes);
+        this.defaultReservation = Math.max(0, defaultReservation);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.maxWaitMillis = maxWait.toMillis();
+    }
+
+    /**
+     * Bytes to reserve for a fetch keeping a copy of at most {@code captureLimit}
+     * bytes of a document last seen at {@code knownSize} (negative if unknown).
+     */
+    long expectedBytes(long knownSize, int captureLimit) {
+        if (knownSize > captureLimit) {
+            // No copy will be kept
+            return 0;
+        }
+        long expected = knownSize >= 0 ? knownSize : defaultReservation;
+        return Math.min(Math.min(expected, captureLimit), maxBytes);
+    }
+
+    /**
+     * Reserve {@code bytes}, waiting in line for room if need be.
+     *
+     * @throws LaserFicheUnavailableException if the queue is full or the wait runs out
+     */
+    public Reservation reserve(long bytes) {
+        try {
+            return reserveAsync(bytes).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof LaserFicheUnavailableException refused) {
+                throw refused;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Non-blocking form of {@link #reserve}: the future completes once the
+     * bytes are reserved, or fails with {@link LaserFicheUnavailableException}.
+     */
+    public CompletableFuture<Reservation> reserveAsync(long bytes) {
+        long amount = Math.min(Math.max(0, bytes), maxBytes);
+        Waiter waiter;
+        lock.lock();
+        try {
+            // Only when nobody is waiting, so a large request is not starved by small ones
+            if (amount == 0 || queue.isEmpty() && reservedBytes + amount <= maxBytes) {
+                admitted.increment();
+                return CompletableFuture.completedFuture(grant(amount));
+            }
+            if (queue.size() >= maxQueue) {
+                rejectedQueueFull.increment();
+                return CompletableFuture.failedFuture(refused());
+            }
+            waiter = new Waiter(amount, System.nanoTime(), new CompletableFuture<>());
+            queue.add(waiter);
+            queued.increment();
+        } finally {
+            lock.unlock();
+        }
+
+        // Chained, so the caller only hears of a timeout once the waiter has left the queue
+        return waiter.future().orTimeout(maxWaitMillis, TimeUnit.MILLISECONDS).whenComplete((reservation, failure) -> {
+            recordWait(waiter);
+            if (failure != null) {
+                lock.lock();
+                try {
+                    queue.remove(waiter);
+                } finally {
+                    lock.unlock();
+                }
+                // The head of the line may have been what held the others back
+                admitWaiters();
+            }
+        }).handle((reservation, failure) -> {
+            if (failure == null) {
+                return reservation;
+            }
+            rejectedTimeout.increment();
+            throw new CompletionException(refused());
+        });
+    }
+
+    private LaserFicheUnavailableException refused() {
+        return new LaserFicheUnavailableException(REASON_MEMORY, RETRY_AFTER);
+    }
+
+    // Caller holds lock
+    private Reservation grant(long bytes) {
+        reservedBytes += bytes;
+        reservations++;
+        return new Reservation(bytes);
+    }
+
+    private void recordWait(Waiter waiter) {
+        Timer timer = waitTimer;
+        if (timer != null) {
+            timer.record(System.nanoTime() - waiter.enqueuedAt(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void admitWaiters() {
+        List<Waiter> admittedWaiters = new ArrayList<>();
+        List<Reservation> grants = new ArrayList<>();
+        lock.lock();
+        try {
+            while (!queue.isEmpty() && reservedBytes + queue.peek().bytes() <= maxBytes) {
+                Waiter waiter = queue.poll();
+                admittedWaiters.add(waiter);
+                grants.add(grant(waiter.bytes()));
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Completed outside the lock, as callers continue on this thread
+        for (int i = 0; i < admittedWaiters.size(); i++) {
+            if (admittedWaiters.get(i).future().complete(grants.get(i))) {
+                admitted.increment();
+            } else {
+                // Timed out just now
+                grants.get(i).close();
+            }
+        }
+    }
+
+    long getReservedBytes() {
+        lock.lock();
+        try {
+            return reservedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getWaiting() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        lock.lock();
+        try {
+            stats.put("maxBytes", maxBytes);
+            stats.put("reservedBytes", reservedBytes);
+            stats.put("reservations", reservations);
+            stats.put("waiting", queue.size());
+        } finally {
+            lock.unlock();
+        }
+        stats.put("admitted", admitted.sum());
+        stats.put("queued", queued.sum());
+        stats.put("rejectedQueueFull", rejectedQueueFull.sum());
+        stats.put("rejectedTimeout", rejectedTimeout.sum());
+        stats.put("growthRefused", growthRefused.sum());
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("pdf.memory.budget.reserved", this, PdfMemoryBudget::getReservedBytes)
+                .baseUnit("bytes").description("Document bytes reserved by fetches in flight").register(registry);
+        Gauge.builder("pdf.memory.budget.limit", this, PdfMemoryBudget::getMaxBytes)
+                .baseUnit("bytes").register(registry);
+        Gauge.builder("pdf.memory.budget.waiting", this, PdfMemoryBudget::getWaiting)
+                .description("Fetches queued for room in the budget").register(registry);
+        FunctionCounter.builder("pdf.memory.budget.rejected", rejectedQueueFull, LongAdder::sum)
+                .tag("reason", "queue_full").register(registry);
+        FunctionCounter.builder("pdf.memory.budget.rejected", rejectedTimeout, LongAdder::sum)
+                .tag("reason", "timeout").register(registry);
+        FunctionCounter.builder("pdf.memory.budget.growth.refused", growthRefused, LongAdder::sum)
+                .description("Copies dropped because they outgrew their reservation").register(registry);
+        waitTimer = Timer.builder("pdf.memory.budget.wait")
+                .description("Time queued for room in the budget")
+                .publishPercentiles(0.5, 0.95, 0.99).register(registry);
+    }
+
+    /**
+     * Bytes held against the budget until {@link #close()}.
+     */
+    public final class Reservation implements AutoCloseable {
+        // Guarded by the budget's lock
+        private long bytes;
+        private boolean released;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public long getBytes() {
+            lock.lock();
+            try {
+                return bytes;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Grow the reservation to {@code total} bytes if that much is free
+         * right now; never waits.
+         */
+        public boolean growTo(long total) {
+            lock.lock();
+            try {
+                if (released) {
+                    return false;
+                }
+                long more = total - bytes;
+                if (more <= 0) {
+                    return true;
+                }
+                if (reservedBytes + more > maxBytes) {
+                    growthRefused.increment();
+                    return false;
+                }
+                reservedBytes += more;
+                bytes = total;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Give the bytes back; only the first call counts.
+         */
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (released) {
+                    return;
+                }
+                released = true;
+                reservedBytes -= bytes;
+                reservations--;
+            } finally {
+                lock.unlock();
+            }
+            admitWaiters();
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Speculative prefetch of a customer's PDF (opt-in with
+ * {@code pdf.prefetch.enabled=true}).
+ *
+ * The UI asks for a customer's info before it asks for the document, so the
+ * first reference to a document in a session starts fetching it in the
+ * background. The result is held in a short-lived buffer owned by that
+ * session, and the download that follows takes it from there without
+ * waiting on Laserfiche. A download that arrives while the prefetch is still
+ * in flight joins the same upstream call.
+ *
+ * Prefetches are bounded by {@code pdf.prefetch.concurrency} calls in flight
+ * (further references are not prefetched), {@code pdf.prefetch.max-bytes}
+ * held across all sessions and {@code pdf.prefetch.max-per-session}
+ * documents per session. Unclaimed documents are dropped after
+ * {@code pdf.prefetch.ttl}, and all of a session's when it is closed; a
+ * fetch already in flight then still lands (other callers may be sharing
+ * it) but nothing is kept.
+ */
+@Component
+@ConditionalOnProperty(name = "pdf.prefetch.enabled", havingValue = "true")
+public class PdfPrefetcher implements MeterBinder, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfPrefetcher.class);
+
+    private enum State { PENDING, READY, TAKEN, EMPTY }
+
+    private final int concurrency;
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final int maxPerSession;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService sweeper;
+
+    // Session ID -> cache key -> prefetch; guarded by lock
+    private final Map<String, Map<String, Entry>> sessions = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private int inFlight;
+    private long heldBytes;
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder skippedBusy = new LongAdder();
+    private final LongAdder skippedSessionFull = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder empty = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder overBudget = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder pending = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder used = new LongAdder();
+    private final LongAdder expiredUnused = new LongAdder();
+    private final LongAdder cancelledUnused = new LongAdder();
+
+    @Autowired
+    public PdfPrefetcher(
+            @Value("${pdf.prefetch.concurrency:4}") int concurrency,
+            @Value("${pdf.prefetch.max-bytes:32MB}") DataSize maxBytes,
+            @Value("${pdf.prefetch.max-entry-bytes:16MB}") DataSize maxEntryBytes,
+            @Value("${pdf.prefetch.max-per-session:8}") int maxPerSession,
+            @Value("${pdf.prefetch.ttl:30s}") Duration ttl,
+            SessionService sessionService
+    ) {
+        this(concurrency, maxBytes.toBytes(), maxEntryBytes.toBytes(), maxPerSession, ttl,
+                System::currentTimeMillis, true);
+        sessionService.addRemovalListener(this::cancelSession);
+        log.info("PDF prefetch enabled (concurrency {}, budget {} bytes, ttl {})", this.concurrency, this.maxBytes, ttl);
+    }
+
+    PdfPrefetcher(int concurrency, long maxBytes, long maxEntryBytes, int maxPerSession, Duration ttl,
+                  LongSupplier clock, boolean sweepInBackground) {
+        this.concurrency = Math.max(1, concurrency);
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = (int) Math.min(maxEntryBytes, Math.min(maxBytes, Integer.MAX_VALUE - 8));
+        this.maxPerSession = Math.max(1, maxPerSession);
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        if (sweepInBackground) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "pdf-prefetch-sweep");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1000, ttlMillis / 2);
+            sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            sweeper = null;
+        }
+    }
+
+    /**
+     * Largest document worth fetching for the buffer; callers keep a copy up
+     * to this size.
+     */
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    /**
+     * Start fetching {@code cacheKey} for the session through {@code loader},
+     * unless this session already referenced it within the TTL or no slot
+     * is free. The loader's document (null if there is none, or it was too
+     * large to keep) is held for {@link #take}.
+     */
+    public void prefetch(String sessionId, String cacheKey, Supplier<CompletableFuture<PdfDocument>> loader) {
+        long now = clock.getAsLong();
+        Entry entry;
+        lock.lock();
+        try {
+            Map<String, Entry> entries = sessions.computeIfAbsent(sessionId, id -> new HashMap<>());
+            Entry existing = entries.get(cacheKey);
+            if (existing != null && !isExpired(existing, now)) {
+                return;
+            }
+            if (existing != null) {
+                drop(entries, cacheKey, existing, expiredUnused);
+            }
+            if (entries.size() >= maxPerSession) {
+                skippedSessionFull.increment();
+                removeIfEmpty(sessionId, entries);
+                return;
+            }
+            if (inFlight >= concurrency) {
+                skippedBusy.increment();
+                removeIfEmpty(sessionId, entries);
+                return;
+            }
+            inFlight++;
+            entry = new Entry(now);
+            entries.put(cacheKey, entry);
+        } finally {
+            lock.unlock();
+        }
+        started.increment();
+        log.debug("Prefetching {} for a session", cacheKey);
+
+        CompletableFuture<PdfDocument> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((document, failure) -> land(sessionId, cacheKey, entry, document, failure));
+    }
+
+    private void land(String sessionId, String cacheKey, Entry entry, PdfDocument document, Throwable failure) {
+        lock.lock();
+        try {
+            inFlight--;
+            Map<String, Entry> entries = sessions.get(sessionId);
+            boolean current = entries != null && entries.get(cacheKey) == entry;
+            if (failure != null) {
+                failed.increment();
+                entry.state = State.EMPTY;
+            } else if (document == null || document.getSize() > maxEntryBytes) {
+                empty.increment();
+                entry.state = State.EMPTY;
+            } else if (!current) {
+                // Session closed or entry expired while the fetch was in flight
+                entry.droppedAs.increment();
+                entry.state = State.EMPTY;
+            } else if (heldBytes + document.getSize() > maxBytes) {
+                overBudget.increment();
+                entry.state = State.EMPTY;
+            } else {
+                stored.increment();
+                entry.document = document;
+                entry.state = State.READY;
+                heldBytes += document.getSize();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (failure != null) {
+            log.debug("Prefetch of {} failed: {}", cacheKey, failure.getMessage());
+        }
+    }
+
+    /**
+     * The session's prefetched document for {@code cacheKey}, handed over
+     * once; null if there is none. A prefetch still in flight also returns
+     * null: the caller's own fetch joins it.
+     */
+    public PdfDocument take(String sessionId, String cacheKey) {
+        long now = clock.getAsLong();
+        lock.lock();
+        try {
+            Map<String, Entry> entries = sessions.get(sessionId);
+            Entry entry = entries != null ? entries.get(cacheKey) : null;
+            if (entry == null || isExpired(entry, now)) {
+                if (entry != null) {
+                    drop(entries, cacheKey, entry, expiredUnused);
+                    removeIfEmpty(sessionId, entries);
+                }
+                misses.increment();
+                return null;
+            }
+            if ((entry.state == State.PENDING || entry.state == State.READY) && !entry.used) {
+                entry.used = true;
+                used.increment();
+            }
+            switch (entry.state) {
+                case PENDING:
+                    pending.increment();
+                    return null;
+                case READY:
+                    // Keep the entry so later references in this session don't prefetch again
+                    PdfDocument document = entry.document;
+                    entry.document = null;
+                    entry.state = State.TAKEN;
+                    heldBytes -= document.getSize();
+                    hits.increment();
+                    return document;
+                default:
+                    misses.increment();
+                    return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop everything held or in flight for a closed session.
+     */
+    public void cancelSession(String sessionId) {
+        lock.lock();
+        try {
+            Map<String, Entry> entries = sessions.remove(sessionId);
+            if (entries != null) {
+                entries.forEach((cacheKey, entry) -> release(entry, cancelledUnused));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop expired entries. Runs in the background every half TTL.
+     */
+    void sweep() {
+        long now = clock.getAsLong();
+        lock.lock();
+        try {
+            Iterator<Map<String, Entry>> sessionIt = sessions.values().iterator();
+            while (sessionIt.hasNext()) {
+                Map<String, Entry> entries = sessionIt.next();
+                Iterator<Entry> entryIt = entries.values().iterator();
+                while (entryIt.hasNext()) {
+                    Entry entry = entryIt.next();
+                    if (isExpired(entry, now)) {
+                        entryIt.remove();
+                        release(entry, expiredUnused);
+                    }
+                }
+                if (entries.isEmpty()) {
+                    sessionIt.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.createdAt > ttlMillis;
+    }
+
+    private void drop(Map<String, Entry> entries, String cacheKey, Entry entry, LongAdder reason) {
+        entries.remove(cacheKey);
+        release(entry, reason);
+    }
+
+    // An unclaimed document counts as wasted; one still in flight is counted when it lands
+    private void release(Entry entry, LongAdder reason) {
+        entry.droppedAs = reason;
+        if (entry.state == State.READY) {
+            heldBytes -= entry.document.getSize();
+            entry.document = null;
+            entry.state = State.EMPTY;
+            reason.increment();
+        }
+    }
+
+    private void removeIfEmpty(String sessionId, Map<String, Entry> entries) {
+        if (entries.isEmpty()) {
+            sessions.remove(sessionId);
+        }
+    }
+
+    long getHeldBytes() {
+        lock.lock();
+        try {
+            return heldBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Share of started prefetches that a download used, whether it found the
+     * document ready (hit) or joined the fetch in flight (pending).
+     */
+    double getHitRatio() {
+        long total = started.sum();
+        return total == 0 ? 0.0 : (double) used.sum() / total;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("started", started.sum());
+        stats.put("hits", hits.sum());
+        stats.put("pending", pending.sum());
+        stats.put("misses", misses.sum());
+        stats.put("hitRatio", getHitRatio());
+        stats.put("heldBytes", getHeldBytes());
+        stats.put("inFlight", getInFlight());
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, "pdf.prefetch.requests", "outcome", "started", started);
+        counter(registry, "pdf.prefetch.requests", "outcome", "busy", skippedBusy);
+        counter(registry, "pdf.prefetch.requests", "outcome", "session_full", skippedSessionFull);
+        counter(registry, "pdf.prefetch.fetches", "outcome", "stored", stored);
+        counter(registry, "pdf.prefetch.fetches", "outcome", "empty", empty);
+        counter(registry, "pdf.prefetch.fetches", "outcome", "failed", failed);
+        counter(registry, "pdf.prefetch.fetches", "outcome", "over_budget", overBudget);
+        counter(registry, "pdf.prefetch.lookups", "outcome", "hit", hits);
+        counter(registry, "pdf.prefetch.lookups", "outcome", "pending", pending);
+        counter(registry, "pdf.prefetch.lookups", "outcome", "miss", misses);
+        counter(registry, "pdf.prefetch.unused", "reason", "expired", expiredUnused);
+        counter(registry, "pdf.prefetch.unused", "reason", "cancelled", cancelledUnused);
+        Gauge.builder("pdf.prefetch.bytes", this, PdfPrefetcher::getHeldBytes).baseUnit("bytes").register(registry);
+        Gauge.builder("pdf.prefetch.in.flight", this, PdfPrefetcher::getInFlight).register(registry);
+        Gauge.builder("pdf.prefetch.hit.ratio", this, PdfPrefetcher::getHitRatio)
+                .description("Share of prefetches a download used").register(registry);
+    }
+
+    private static void counter(MeterRegistry registry, String name, String tag, String value, LongAdder adder) {
+        FunctionCounter.builder(name, adder, LongAdder::sum).tag(tag, value).register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    private static final class Entry {
+        private final long createdAt;
+        private State state = State.PENDING;
+        private PdfDocument document;
+        private LongAdder droppedAs;
+        private boolean used;
+
+        Entry(long createdAt) {
+            this.createdAt = createdAt;
+        }
+    }
+}
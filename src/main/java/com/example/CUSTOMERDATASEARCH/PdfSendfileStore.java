@@ -0,0 +1,373 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Serves documents that are already in memory from files through Tomcat's
+ * sendfile support (opt-in with {@code pdf.sendfile.enabled=true}).
+ *
+ * The first time a document of at least {@code pdf.sendfile.min-bytes} is
+ * served, its content is written once to a file under
+ * {@code pdf.sendfile.dir}. That response and later ones hand the file to
+ * the connector, which sends it from the page cache to the socket with
+ * {@code sendfile(2)}: the body no longer passes through the Java heap or the
+ * servlet output stream. Files are named after the content hash plus a
+ * sequence number, never the CaseID, and are only reused for a document with
+ * the same hash, so a refetched document that changed gets a new file.
+ *
+ * Unlike the encrypted disk cache tier these files are plaintext, so
+ * {@code pdf.sendfile.dir} has no default and must name storage meant for
+ * them. The directory is made owner-only (0700) and its files are created
+ * 0600; it is emptied at startup and shutdown, and holds at
+ * most {@code pdf.sendfile.max-bytes} (least recently served first out) for
+ * at most {@code pdf.sendfile.ttl}. A file is deleted a grace period after
+ * it leaves the store, as the connector opens it only after the servlet
+ * returns. When the connector cannot sendfile (another container, TLS,
+ * compression) the caller writes the bytes as before.
+ */
+@Component
+@ConditionalOnProperty(name = "pdf.sendfile.enabled", havingValue = "true")
+public class PdfSendfileStore implements MeterBinder, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfSendfileStore.class);
+
+    // Tomcat's request attributes, see org.apache.catalina.Globals
+    static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final String PREFIX = "pdf-";
+    private static final String SUFFIX = ".pdf";
+    // Far longer than the connector takes to open a file after the servlet returns
+    private static final long RETIRE_GRACE_MILLIS = 30_000;
+    private static final Set<PosixFilePermission> DIRECTORY_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+    private static final Set<PosixFilePermission> FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-------");
+
+    private final Path directory;
+    private final boolean posix;
+    private final long maxBytes;
+    private final long minBytes;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService sweeper;
+
+    // Content hash -> file, least recently served first; guarded by lock
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    private final ArrayDeque<Retired> retired = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private long bytes;
+    private long sequence;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LongAdder unsupported = new LongAdder();
+
+    private record Entry(Path file, long size, long writtenAt) {}
+
+    private record Retired(Path file, long retiredAt) {}
+
+    @Autowired
+    public PdfSendfileStore(
+            @Value("${pdf.sendfile.dir:}") String directory,
+            @Value("${pdf.sendfile.max-bytes:256MB}") DataSize maxBytes,
+            @Value("${pdf.sendfile.min-bytes:48KB}") DataSize minBytes,
+            @Value("${pdf.sendfile.ttl:10m}") Duration ttl
+    ) throws IOException {
+        this(requireDirectory(directory), maxBytes.toBytes(), minBytes.toBytes(), ttl, System::currentTimeMillis, true);
+        log.info("PDF sendfile enabled (directory {}, budget {} bytes, min size {} bytes, ttl {})",
+                directory, this.maxBytes, this.minBytes, ttl);
+    }
+
+    PdfSendfileStore(Path directory, long maxBytes, long minBytes, Duration ttl, LongSupplier clock,
+                     boolean sweepInBackground) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.minBytes = Math.max(1, minBytes);
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        if (posix) {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(DIRECTORY_PERMISSIONS));
+            // An existing directory may have been made by something else
+            if (!Files.getPosixFilePermissions(directory).equals(DIRECTORY_PERMISSIONS)) {
+                log.warn("Restricting sendfile directory {} to its owner", directory);
+                Files.setPosixFilePermissions(directory, DIRECTORY_PERMISSIONS);
+            }
+        } else {
+            Files.createDirectories(directory);
+            log.warn("Cannot restrict sendfile directory {} to its owner on this filesystem", directory);
+        }
+        // Nothing from an earlier process is indexed, so none of it would ever be served or removed
+        purge();
+
+        if (sweepInBackground) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "pdf-sendfile-sweep");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1000, Math.min(ttlMillis / 2, RETIRE_GRACE_MILLIS));
+            sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            sweeper = null;
+        }
+    }
+
+    private static Path requireDirectory(String directory) {
+        if (directory.isBlank()) {
+            throw new IllegalArgumentException(
+                    "pdf.sendfile.dir must be set when pdf.sendfile.enabled=true; its files are plaintext PDFs");
+        }
+        return Path.of(directory);
+    }
+
+    /**
+     * Whether {@link #serve} would normally take {@code document} for this
+     * request. Sendfile only works for blocking requests: the connector sends
+     * no file for a response in non-blocking (WriteListener) mode.
+     */
+    public boolean accepts(HttpServletRequest request, PdfDocument document) {
+        return document.getSize() >= minBytes && isSupported(request);
+    }
+
+    /**
+     * Have the connector send {@code length} bytes of {@code document} from
+     * {@code start} once the servlet returns. Returns false, having changed
+     * nothing, when the connector cannot sendfile or the document is not
+     * worth a file; the caller then writes the body itself.
+     */
+    public boolean serve(HttpServletRequest request, PdfDocument document, long start, long length) {
+        if (document.getSize() < minBytes) {
+            return false;
+        }
+        if (!isSupported(request)) {
+            unsupported.increment();
+            return false;
+        }
+        Path file = locate(document);
+        if (file == null) {
+            return false;
+        }
+        request.setAttribute(SENDFILE_FILENAME_ATTR, file.toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START_ATTR, start);
+        request.setAttribute(SENDFILE_END_ATTR, start + length);
+        responses.increment();
+        sentBytes.add(length);
+        return true;
+    }
+
+    private static boolean isSupported(HttpServletRequest request) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR));
+    }
+
+    /**
+     * The file holding {@code document}'s content, written now if there is
+     * none yet; null when it does not fit the budget or cannot be written.
+     */
+    Path locate(PdfDocument document) {
+        String hash = document.getContentHash();
+        long now = clock.getAsLong();
+        lock.lock();
+        try {
+            Entry entry = index.get(hash);
+            if (entry != null && now - entry.writtenAt() < ttlMillis) {
+                return entry.file();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (document.getSize() > maxBytes) {
+            return null;
+        }
+
+        // Written outside the lock; concurrent writers of one document each get their own file
+        Path file;
+        try {
+            FileAttribute<?>[] attributes = posix
+                    ? new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(FILE_PERMISSIONS) }
+                    : new FileAttribute<?>[0];
+            Path tmp = Files.createTempFile(directory, PREFIX, ".tmp", attributes);
+            Files.write(tmp, document.getContent());
+            lock.lock();
+            try {
+                file = directory.resolve(PREFIX + hash + "-" + (++sequence) + SUFFIX);
+            } finally {
+                lock.unlock();
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            writeFailures.increment();
+            log.warn("Failed to write sendfile copy: {}", e.getMessage());
+            return null;
+        }
+        writes.increment();
+
+        lock.lock();
+        try {
+            Entry previous = index.put(hash, new Entry(file, document.getSize(), now));
+            if (previous != null) {
+                bytes -= previous.size();
+                retired.add(new Retired(previous.file(), now));
+            }
+            bytes += document.getSize();
+            Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Entry> eldest = it.next();
+                if (eldest.getKey().equals(hash)) {
+                    continue;
+                }
+                it.remove();
+                bytes -= eldest.getValue().size();
+                retired.add(new Retired(eldest.getValue().file(), now));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return file;
+    }
+
+    /**
+     * Retire expired files and delete retired ones past their grace period.
+     */
+    void sweep() {
+        long now = clock.getAsLong();
+        List<Path> doomed = new ArrayList<>();
+        lock.lock();
+        try {
+            Iterator<Entry> it = index.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (now - entry.writtenAt() >= ttlMillis) {
+                    it.remove();
+                    bytes -= entry.size();
+                    retired.add(new Retired(entry.file(), now));
+                }
+            }
+            while (!retired.isEmpty() && now - retired.peek().retiredAt() >= RETIRE_GRACE_MILLIS) {
+                doomed.add(retired.poll().file());
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Path file : doomed) {
+            deleteQuietly(file);
+        }
+    }
+
+    long getBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getFileCount() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("files", getFileCount());
+        stats.put("bytes", getBytes());
+        stats.put("writes", writes.sum());
+        stats.put("writeFailures", writeFailures.sum());
+        stats.put("responses", responses.sum());
+        stats.put("sentBytes", sentBytes.sum());
+        stats.put("unsupported", unsupported.sum());
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("pdf.sendfile.responses", responses, LongAdder::sum)
+                .description("Responses whose body the connector sent from a file").register(registry);
+        FunctionCounter.builder("pdf.sendfile.bytes", sentBytes, LongAdder::sum)
+                .baseUnit("bytes").register(registry);
+        FunctionCounter.builder("pdf.sendfile.unsupported", unsupported, LongAdder::sum)
+                .description("Responses written from the heap because the connector cannot sendfile")
+                .register(registry);
+        FunctionCounter.builder("pdf.sendfile.writes", writes, LongAdder::sum).register(registry);
+        Gauge.builder("pdf.sendfile.files", this, PdfSendfileStore::getFileCount).register(registry);
+        Gauge.builder("pdf.sendfile.files.bytes", this, PdfSendfileStore::getBytes)
+                .baseUnit("bytes").register(registry);
+    }
+
+    private void purge() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*{" + SUFFIX + ",.tmp}")) {
+            for (Path file : files) {
+                deleteQuietly(file);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Could not delete sendfile copy {}: {}", file, e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        lock.lock();
+        try {
+            index.clear();
+            retired.clear();
+            bytes = 0;
+        } finally {
+            lock.unlock();
+        }
+        purge();
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a controller method as limited by {@link RequestRateLimiter} under
+ * the given endpoint name, which selects its {@code rate-limit.<name>.*}
+ * limits.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+
+    String value();
+}
@@ -0,0 +1,328 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-session and per-client request limits on the customer API (opt-in with
+ * {@code rate-limit.enabled=true}), so one script replaying a valid session
+ * cannot keep Laserfiche busy for everyone else.
+ *
+ * Methods marked {@link RateLimited} are checked before they run against two
+ * token buckets: one for the client address and one for the
+ * {@code sessionId} parameter, each with its own
+ * {@code rate-limit.<endpoint>.per-client} and {@code per-session} limit
+ * written as {@code permits/period} (e.g. {@code 30/1m}; {@code 0} for no
+ * limit). A full bucket holds {@code permits} requests and refills evenly
+ * over {@code period}. A request finding either bucket empty gets 429 with
+ * {@code RateLimit-Limit}, {@code RateLimit-Remaining},
+ * {@code RateLimit-Reset} and {@code Retry-After}.
+ *
+ * Each bucket is a single {@code long}, the time at which it will be full
+ * again, updated with compare-and-set, so a check is one map lookup and one
+ * CAS. A bucket that has refilled is the same as no bucket, so the sweep
+ * every {@code rate-limit.sweep-interval} drops all of them at once, and a
+ * closed session's buckets go with it.
+ *
+ * The client address is the connection's remote address; behind a proxy,
+ * set {@code server.forward-headers-strategy} so it is the browser's.
+ */
+@Component
+@ConditionalOnProperty(name = "rate-limit.enabled", havingValue = "true")
+public class RequestRateLimiter implements HandlerInterceptor, WebMvcConfigurer, MeterBinder, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestRateLimiter.class);
+
+    static final String LIMIT_HEADER = "RateLimit-Limit";
+    static final String REMAINING_HEADER = "RateLimit-Remaining";
+    static final String RESET_HEADER = "RateLimit-Reset";
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    // Methods without @RateLimited
+    private static final Endpoint UNLIMITED = new Endpoint("", null, null);
+
+    private final Map<String, Endpoint> endpoints;
+    private final ConcurrentHashMap<Method, Endpoint> endpointsByMethod = new ConcurrentHashMap<>();
+    private final LongSupplier nanoClock;
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * {@code permits} requests per {@code period}, in bursts of up to
+     * {@code permits}.
+     */
+    record Limit(int permits, Duration period) {
+
+        /**
+         * Parse {@code permits/period}; null for {@code 0} or blank, meaning
+         * no limit.
+         */
+        static Limit parse(String spec) {
+            String trimmed = spec.trim();
+            if (trimmed.isEmpty() || trimmed.equals("0")) {
+                return null;
+            }
+            int slash = trimmed.indexOf('/');
+            if (slash < 0) {
+                throw new IllegalArgumentException("Rate limit must be permits/period, e.g. 30/1m: " + spec);
+            }
+            int permits = Integer.parseInt(trimmed.substring(0, slash).trim());
+            Duration period = DurationStyle.detectAndParse(trimmed.substring(slash + 1).trim());
+            if (permits <= 0 || period.isNegative() || period.isZero()) {
+                throw new IllegalArgumentException("Rate limit must be positive: " + spec);
+            }
+            return new Limit(permits, period);
+        }
+
+        @Override
+        public String toString() {
+            return permits + "/" + DurationStyle.SIMPLE.print(period);
+        }
+    }
+
+    @Autowired
+    public RequestRateLimiter(
+            @Value("${rate-limit.download.per-session:30/1m}") String downloadPerSession,
+            @Value("${rate-limit.download.per-client:120/1m}") String downloadPerClient,
+            @Value("${rate-limit.batch.per-session:5/1m}") String batchPerSession,
+            @Value("${rate-limit.batch.per-client:20/1m}") String batchPerClient,
+            @Value("${rate-limit.info.per-session:120/1m}") String infoPerSession,
+            @Value("${rate-limit.info.per-client:600/1m}") String infoPerClient,
+            @Value("${rate-limit.test-api.per-session:10/1m}") String testApiPerSession,
+            @Value("${rate-limit.test-api.per-client:30/1m}") String testApiPerClient,
+            @Value("${rate-limit.documents.per-session:60/1m}") String documentsPerSession,
+            @Value("${rate-limit.documents.per-client:300/1m}") String documentsPerClient,
+            @Value("${rate-limit.sweep-interval:1m}") Duration sweepInterval,
+            SessionService sessionService
+    ) {
+        this(Map.of(
+                "download", new Limit[] {Limit.parse(downloadPerSession), Limit.parse(downloadPerClient)},
+                "batch", new Limit[] {Limit.parse(batchPerSession), Limit.parse(batchPerClient)},
+                "info", new Limit[] {Limit.parse(infoPerSession), Limit.parse(infoPerClient)},
+                "test-api", new Limit[] {Limit.parse(testApiPerSession), Limit.parse(testApiPerClient)},
+                "documents", new Limit[] {Limit.parse(documentsPerSession), Limit.parse(documentsPerClient)}
+        ), System::nanoTime, sweepInterval);
+        sessionService.addRemovalListener(this::removeSession);
+        endpoints.values().forEach(endpoint -> log.info("Rate limit for {}: {} per session, {} per client",
+                endpoint.name, endpoint.perSession, endpoint.perClient));
+    }
+
+    /**
+     * {@code limits} maps each endpoint name to its per-session and
+     * per-client limit, either null for none. A null sweep interval leaves
+     * sweeping to the caller.
+     */
+    RequestRateLimiter(Map<String, Limit[]> limits, LongSupplier nanoClock, Duration sweepInterval) {
+        Map<String, Endpoint> byName = new HashMap<>();
+        limits.forEach((name, limit) -> byName.put(name, new Endpoint(name, limit[0], limit[1])));
+        this.endpoints = Map.copyOf(byName);
+        this.nanoClock = nanoClock;
+        if (sweepInterval != null) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "rate-limit-sweep");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1000, sweepInterval.toMillis());
+            sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            sweeper = null;
+        }
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this).addPathPatterns("/api/**");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        if (!(handler instanceof HandlerMethod handlerMethod) || request.getDispatcherType() != DispatcherType.REQUEST) {
+            return true;
+        }
+        Endpoint endpoint = endpointsByMethod.computeIfAbsent(handlerMethod.getMethod(), this::resolve);
+        if (endpoint == UNLIMITED) {
+            return true;
+        }
+
+        long now = nanoClock.getAsLong();
+        // The client first, so a flood of made-up session IDs is cut off before it creates buckets
+        Refusal refusal = endpoint.perClient != null
+                ? acquire(endpoint.clients, request.getRemoteAddr(), endpoint.perClient, now) : null;
+        if (refusal == null && endpoint.perSession != null) {
+            String sessionId = request.getParameter("sessionId");
+            if (sessionId != null && !sessionId.isEmpty()) {
+                refusal = acquire(endpoint.sessions, sessionId, endpoint.perSession, now);
+                if (refusal != null) {
+                    endpoint.rejectedSession.increment();
+                }
+            }
+        } else if (refusal != null) {
+            endpoint.rejectedClient.increment();
+        }
+        if (refusal == null) {
+            return true;
+        }
+
+        log.debug("Rate limited {} request from {}", endpoint.name, request.getRemoteAddr());
+        String retryAfter = String.valueOf(refusal.retryAfterSeconds());
+        response.setHeader(LIMIT_HEADER, String.valueOf(refusal.limit().permits()));
+        response.setHeader(REMAINING_HEADER, "0");
+        response.setHeader(RESET_HEADER, retryAfter);
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+        response.sendError(429, "Too many requests, retry later");
+        return false;
+    }
+
+    private Endpoint resolve(Method method) {
+        RateLimited annotation = method.getAnnotation(RateLimited.class);
+        if (annotation == null) {
+            return UNLIMITED;
+        }
+        Endpoint endpoint = endpoints.get(annotation.value());
+        if (endpoint == null) {
+            throw new IllegalStateException("No rate limits configured for endpoint " + annotation.value());
+        }
+        return endpoint;
+    }
+
+    private record Refusal(Limit limit, long retryAfterSeconds) {}
+
+    /**
+     * Take one request from {@code key}'s bucket, or return why not. Buckets
+     * are kept as the time they will be full again: each request moves that
+     * time one interval ahead, and is refused if it would then be more than
+     * a whole period away.
+     */
+    private static Refusal acquire(ConcurrentHashMap<String, AtomicLong> buckets, String key, Limit limit, long now) {
+        long period = limit.period().toNanos();
+        long interval = period / limit.permits();
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            // A new bucket starts full, less this request
+            bucket = buckets.putIfAbsent(key, new AtomicLong(now + interval));
+            if (bucket == null) {
+                return null;
+            }
+        }
+        while (true) {
+            long fullAt = bucket.get();
+            long next = (fullAt - now > 0 ? fullAt : now) + interval;
+            if (next - now > period) {
+                long wait = next - now - period;
+                return new Refusal(limit, Math.max(1, (wait + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND));
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Drop every bucket that has refilled. A request racing with the sweep
+     * may still count against the dropped bucket, letting one extra request
+     * through.
+     */
+    void sweep() {
+        long now = nanoClock.getAsLong();
+        int before = getBucketCount();
+        for (Endpoint endpoint : endpoints.values()) {
+            endpoint.sessions.values().removeIf(bucket -> bucket.get() - now <= 0);
+            endpoint.clients.values().removeIf(bucket -> bucket.get() - now <= 0);
+        }
+        log.debug("Rate limit sweep dropped {} idle buckets", before - getBucketCount());
+    }
+
+    private void removeSession(String sessionId) {
+        for (Endpoint endpoint : endpoints.values()) {
+            endpoint.sessions.remove(sessionId);
+        }
+    }
+
+    int getBucketCount() {
+        int count = 0;
+        for (Endpoint endpoint : endpoints.values()) {
+            count += endpoint.sessions.size() + endpoint.clients.size();
+        }
+        return count;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("buckets", getBucketCount());
+        for (Endpoint endpoint : endpoints.values()) {
+            Map<String, Object> rejected = new HashMap<>();
+            rejected.put("session", endpoint.rejectedSession.sum());
+            rejected.put("client", endpoint.rejectedClient.sum());
+            stats.put(endpoint.name, rejected);
+        }
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Endpoint endpoint : endpoints.values()) {
+            FunctionCounter.builder("api.rate.limit.rejected", endpoint.rejectedSession, LongAdder::sum)
+                    .tag("endpoint", endpoint.name).tag("key", "session").register(registry);
+            FunctionCounter.builder("api.rate.limit.rejected", endpoint.rejectedClient, LongAdder::sum)
+                    .tag("endpoint", endpoint.name).tag("key", "client").register(registry);
+        }
+        Gauge.builder("api.rate.limit.buckets", this, RequestRateLimiter::getBucketCount)
+                .description("Token buckets not yet refilled and swept").register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    private static final class Endpoint {
+        private final String name;
+        private final Limit perSession;
+        private final Limit perClient;
+        private final ConcurrentHashMap<String, AtomicLong> sessions = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, AtomicLong> clients = new ConcurrentHashMap<>();
+        private final LongAdder rejectedSession = new LongAdder();
+        private final LongAdder rejectedClient = new LongAdder();
+
+        Endpoint(String name, Limit perSession, Limit perClient) {
+            this.name = name;
+            this.perSession = perSession;
+            this.perClient = perClient;
+        }
+    }
+}
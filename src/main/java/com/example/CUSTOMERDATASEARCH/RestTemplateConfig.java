@@ -1,5 +1,7 @@
 package com.example.CUSTOMERDATASEARCH;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -25,11 +27,13 @@ public class RestTemplateConfig {
     private int maxConnectionsPerRoute;
 
     @Bean
-    public RestTemplate restTemplate() {
+    public RestTemplate restTemplate(MeterRegistry meterRegistry) {
         // Configure connection pooling
         PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
         connectionManager.setMaxTotal(maxConnections);
         connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        // Leased, available and pending connections, to tell a saturated pool from a slow Laserfiche
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "laserfiche").bindTo(meterRegistry);
 
         // Build HTTP client with timeouts
         CloseableHttpClient httpClient = HttpClients.custom()
@@ -0,0 +1,624 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * The server's RSA-2048 session keys, each named by a key ID.
+ *
+ * Startup never waits on prime generation. Keys are loaded from
+ * {@code keys.keystore.path} when it is set, so a restarted or new node
+ * serves the same public key clients already have. Without a stored key the
+ * first one is generated in the background, and only RSA session starts
+ * made before it is ready wait for it.
+ *
+ * A background thread keeps {@code keys.spare-pool-size} pre-generated key
+ * pairs, so rotation every {@code keys.rotation.interval} is just a swap.
+ * The replaced key stays usable, by its ID, for {@code keys.rotation.grace}.
+ *
+ * The keystore is a directory of private keys (PKCS#8), each AES-256-GCM
+ * encrypted with {@code keys.keystore.secret}; a key's role is in its file
+ * name: {@code current-<id>.key}, {@code spare-<id>.key} or
+ * {@code retired-<id>-<until>.key}.
+ *
+ * Nodes may share a keystore directory. Only the node holding the lock on
+ * {@code writer.lock} in it generates, rotates and deletes keys; the others
+ * re-read the directory every {@code keys.keystore.refresh-interval}, and at
+ * once when a client names a current key they have not seen yet. If the
+ * writer stops, the next node to refresh takes the lock over and keeps the
+ * rotation schedule, which runs from when the current key was promoted.
+ * The directory must be on a filesystem with working file locks, and
+ * {@code keys.rotation.grace} should be well above the refresh interval so a
+ * key handed out by a lagging node is still accepted everywhere.
+ */
+@Component
+public class RsaKeyRing implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RsaKeyRing.class);
+
+    private static final int IV_LENGTH = 12;
+    private static final long CURRENT_KEY_WAIT_SECONDS = 30;
+    private static final long FIRST_KEY_POLL_MILLIS = 1000;
+    private static final String WRITER_LOCK = "writer.lock";
+    private static final Pattern KEY_ID = Pattern.compile("[0-9a-f]{16}");
+
+    public record KeyEntry(String keyId, KeyPair keyPair) {}
+
+    private record Retired(KeyEntry entry, long until) {}
+
+    private final Path keystore;
+    private final SecretKeySpec keystoreKey;
+    private final int sparePoolSize;
+    private final long graceMillis;
+    private final long rotationMillis;
+    private final long refreshMillis;
+    private final LongSupplier clock;
+    private final SecureRandom random = new SecureRandom();
+    private final ScheduledExecutorService background;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile CompletableFuture<KeyEntry> current = new CompletableFuture<>();
+    private final ArrayDeque<KeyEntry> spares = new ArrayDeque<>();
+    private final Map<String, Retired> retired = new ConcurrentHashMap<>();
+
+    // Whether this node rotates keys, holding the keystore's writer lock if there is one
+    private volatile boolean writer;
+    private FileChannel writerLock;
+    private long rotateAt;
+
+    @Autowired
+    public RsaKeyRing(
+            @Value("${keys.keystore.path:}") String keystorePath,
+            @Value("${keys.keystore.secret:}") String keystoreSecret,
+            @Value("${keys.spare-pool-size:1}") int sparePoolSize,
+            @Value("${keys.rotation.interval:24h}") Duration rotationInterval,
+            @Value("${keys.rotation.grace:1h}") Duration rotationGrace,
+            @Value("${keys.keystore.refresh-interval:30s}") Duration refreshInterval
+    ) {
+        this(keystorePath.isBlank() ? null : Path.of(keystorePath), decodeSecret(keystorePath, keystoreSecret),
+                sparePoolSize, rotationInterval, rotationGrace, refreshInterval, System::currentTimeMillis);
+    }
+
+    /**
+     * @param refreshInterval how often to re-read a keystore, or zero to only do it in {@link #refresh()}
+     */
+    RsaKeyRing(Path keystore, byte[] keystoreSecret, int sparePoolSize, Duration rotationInterval,
+               Duration rotationGrace, Duration refreshInterval, LongSupplier clock) {
+        this.keystore = keystore;
+        this.keystoreKey = keystore == null ? null : new SecretKeySpec(keystoreSecret, "AES");
+        this.sparePoolSize = sparePoolSize;
+        this.graceMillis = rotationGrace.toMillis();
+        this.rotationMillis = rotationInterval.toMillis();
+        this.refreshMillis = refreshInterval.toMillis();
+        this.clock = clock;
+        this.background = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rsa-keys");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        writer = keystore == null || tryBecomeWriter();
+        if (keystore != null) {
+            load();
+            log.info("Loaded keystore {} as {}: current {}, {} spare, {} retired", keystore,
+                    writer ? "writer" : "reader", current.isDone() ? current.join().keyId() : "none",
+                    spares.size(), retired.size());
+        }
+        if (writer) {
+            if (!current.isDone()) {
+                KeyEntry spare = pollSpare();
+                if (spare != null) {
+                    activate(spare);
+                } else {
+                    background.execute(() -> activate(generate()));
+                }
+            }
+            background.execute(this::refillSpares);
+        }
+        rotateAt = currentSince() + rotationMillis;
+        if (keystore != null) {
+            scheduleRefresh();
+        } else if (rotationMillis > 0) {
+            background.scheduleAtFixedRate(this::rotate, rotationMillis, rotationMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static byte[] decodeSecret(String keystorePath, String secret) {
+        if (keystorePath.isBlank()) {
+            return null;
+        }
+        byte[] decoded = secret.isBlank() ? new byte[0] : Base64.getDecoder().decode(secret.trim());
+        if (decoded.length != 32) {
+            throw new IllegalArgumentException("keys.keystore.secret must be 32 bytes (base64) when keys.keystore.path is set");
+        }
+        return decoded;
+    }
+
+    /**
+     * The key new sessions should use, waiting for the first key if it is
+     * still being generated.
+     */
+    public KeyEntry current() {
+        try {
+            return current.get(CURRENT_KEY_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the RSA key", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("RSA key not available", e);
+        }
+    }
+
+    /**
+     * The current key or a retired key still in its grace window, or null.
+     */
+    public KeyEntry find(String keyId) {
+        KeyEntry active = current.getNow(null);
+        if (active != null && active.keyId().equals(keyId)) {
+            return active;
+        }
+        Retired old = retired.get(keyId);
+        if (old != null && clock.getAsLong() < old.until()) {
+            return old.entry();
+        }
+        if (old == null && keystore != null && keyId != null && KEY_ID.matcher(keyId).matches()
+                && Files.exists(file("current-" + keyId))) {
+            // Rotated by the writer since this node last looked
+            try {
+                load();
+            } catch (RuntimeException e) {
+                log.warn("Could not re-read keystore {}: {}", keystore, e.getMessage());
+                return null;
+            }
+            active = current.getNow(null);
+            if (active != null && active.keyId().equals(keyId)) {
+                return active;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Re-read a shared keystore, taking over as the writer if no other node
+     * holds the lock, and rotate when due if this node is the writer. Runs on
+     * the background thread every {@code keys.keystore.refresh-interval}.
+     */
+    void refresh() {
+        try {
+            boolean tookOver = !writer && tryBecomeWriter();
+            if (tookOver) {
+                writer = true;
+                log.info("Took over RSA key rotation for {}", keystore);
+            }
+            load();
+            if (tookOver) {
+                rotateAt = currentSince() + rotationMillis;
+            }
+            if (writer) {
+                if (!current.isDone()) {
+                    KeyEntry spare = pollSpare();
+                    activate(spare != null ? spare : generate());
+                } else if (rotationMillis > 0 && clock.getAsLong() >= rotateAt) {
+                    rotate();
+                }
+                refillSpares();
+            }
+        } catch (RuntimeException e) {
+            log.error("RSA keystore refresh failed", e);
+        } finally {
+            scheduleRefresh();
+        }
+    }
+
+    private void scheduleRefresh() {
+        if (refreshMillis <= 0) {
+            return;
+        }
+        // Look again soon while waiting for the writer's first key
+        long delay = current.isDone() ? refreshMillis : Math.min(refreshMillis, FIRST_KEY_POLL_MILLIS);
+        try {
+            background.schedule(this::refresh, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    /**
+     * Make a spare the current key and start the replaced key's grace window.
+     * Runs on the background thread on schedule. Does nothing on a node that
+     * is not the keystore's writer.
+     */
+    void rotate() {
+        if (!writer) {
+            return;
+        }
+        try {
+            KeyEntry next = pollSpare();
+            if (next == null) {
+                next = generate();
+                write("spare-" + next.keyId(), next.keyPair().getPrivate());
+            }
+            KeyEntry previous = current.getNow(null);
+            lock.lock();
+            try {
+                long now = clock.getAsLong();
+                if (previous != null) {
+                    long until = now + graceMillis;
+                    retired.put(previous.keyId(), new Retired(previous, until));
+                    rename("current-" + previous.keyId(), "retired-" + previous.keyId() + "-" + until);
+                }
+                rename("spare-" + next.keyId(), "current-" + next.keyId());
+                markCurrentSince(next.keyId(), now);
+                rotateAt = now + rotationMillis;
+                current = CompletableFuture.completedFuture(next);
+                retired.values().removeIf(old -> now >= old.until());
+                deleteExpiredFiles(now);
+            } finally {
+                lock.unlock();
+            }
+            log.info("Rotated RSA key {} -> {}", previous == null ? "-" : previous.keyId(), next.keyId());
+            refillSpares();
+        } catch (RuntimeException e) {
+            log.error("RSA key rotation failed", e);
+        }
+    }
+
+    int spareCount() {
+        lock.lock();
+        try {
+            return spares.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void refillSpares() {
+        while (spareCount() < sparePoolSize) {
+            KeyEntry spare = generate();
+            write("spare-" + spare.keyId(), spare.keyPair().getPrivate());
+            lock.lock();
+            try {
+                spares.add(spare);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private KeyEntry pollSpare() {
+        lock.lock();
+        try {
+            return spares.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void activate(KeyEntry entry) {
+        lock.lock();
+        try {
+            if (keystore != null && !Files.exists(file("current-" + entry.keyId()))) {
+                if (Files.exists(file("spare-" + entry.keyId()))) {
+                    rename("spare-" + entry.keyId(), "current-" + entry.keyId());
+                } else {
+                    write("current-" + entry.keyId(), entry.keyPair().getPrivate());
+                }
+                markCurrentSince(entry.keyId(), clock.getAsLong());
+            }
+            current.complete(entry);
+        } finally {
+            lock.unlock();
+        }
+        log.info("RSA key {} is current", entry.keyId());
+    }
+
+    private KeyEntry generate() {
+        try {
+            long start = System.nanoTime();
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            KeyPair pair = generator.generateKeyPair();
+            log.debug("Generated RSA key pair in {} ms", (System.nanoTime() - start) / 1_000_000);
+            return new KeyEntry(keyId(pair.getPublic()), pair);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("RSA key generation not available", e);
+        }
+    }
+
+    /**
+     * First 8 bytes of the SHA-256 of the public key, in hex.
+     */
+    static String keyId(PublicKey publicKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(publicKey.getEncoded());
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Read the keystore into the ring. Keys already in the ring are not
+     * decrypted again, and only the writer keeps spares or deletes files.
+     */
+    private void load() {
+        long now = clock.getAsLong();
+        lock.lock();
+        try {
+            KeyEntry active = current.getNow(null);
+            KeyEntry stored = null;
+            List<KeyEntry> storedSpares = new ArrayList<>();
+            Files.createDirectories(keystore);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(keystore, "*.key")) {
+                for (Path path : files) {
+                    String name = path.getFileName().toString();
+                    name = name.substring(0, name.length() - ".key".length());
+                    String[] parts = name.split("-", 3);
+                    if (parts.length < 2) {
+                        continue;
+                    }
+                    switch (parts[0]) {
+                        case "current" -> {
+                            if (stored == null) {
+                                stored = readKnown(path, parts[1]);
+                            } else {
+                                log.warn("More than one current key in {}; ignoring {}", keystore, path);
+                            }
+                        }
+                        case "spare" -> {
+                            if (writer) {
+                                storedSpares.add(readKnown(path, parts[1]));
+                            }
+                        }
+                        case "retired" -> {
+                            long until = parts.length == 3 ? Long.parseLong(parts[2]) : 0;
+                            if (now < until) {
+                                retired.put(parts[1], new Retired(readKnown(path, parts[1]), until));
+                            } else if (writer) {
+                                Files.deleteIfExists(path);
+                            }
+                        }
+                        default -> log.warn("Ignoring unexpected keystore file {}", path);
+                    }
+                }
+            }
+            // No current file means the writer is mid-rotation; keep the one we have
+            if (stored != null && (active == null || !active.keyId().equals(stored.keyId()))) {
+                if (!current.complete(stored)) {
+                    current = CompletableFuture.completedFuture(stored);
+                }
+                if (active != null) {
+                    log.info("RSA key {} is current", stored.keyId());
+                }
+            }
+            if (writer) {
+                spares.clear();
+                spares.addAll(storedSpares);
+            }
+            retired.values().removeIf(old -> now >= old.until());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read keystore " + keystore, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private KeyEntry readKnown(Path path, String keyId) throws IOException {
+        KeyEntry active = current.getNow(null);
+        if (active != null && active.keyId().equals(keyId)) {
+            return active;
+        }
+        Retired old = retired.get(keyId);
+        if (old != null) {
+            return old.entry();
+        }
+        for (KeyEntry spare : spares) {
+            if (spare.keyId().equals(keyId)) {
+                return spare;
+            }
+        }
+        return read(path, keyId);
+    }
+
+    /**
+     * Take the keystore's writer lock if no other node or ring holds it.
+     */
+    private boolean tryBecomeWriter() {
+        lock.lock();
+        try {
+            Files.createDirectories(keystore);
+            FileChannel channel = FileChannel.open(keystore.resolve(WRITER_LOCK),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                if (channel.tryLock() != null) {
+                    writerLock = channel;
+                    return true;
+                }
+            } catch (OverlappingFileLockException e) {
+                // Held by another ring in this JVM
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            channel.close();
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not lock keystore " + keystore, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * When the current key was promoted, from its file's modification time.
+     */
+    private long currentSince() {
+        KeyEntry active = current.getNow(null);
+        if (keystore != null && active != null) {
+            try {
+                return Files.getLastModifiedTime(file("current-" + active.keyId())).toMillis();
+            } catch (IOException e) {
+                // Fall back to now
+            }
+        }
+        return clock.getAsLong();
+    }
+
+    private void markCurrentSince(String keyId, long since) {
+        if (keystore == null) {
+            return;
+        }
+        try {
+            Files.setLastModifiedTime(file("current-" + keyId), FileTime.fromMillis(since));
+        } catch (IOException e) {
+            log.warn("Could not mark when key {} became current: {}", keyId, e.getMessage());
+        }
+    }
+
+    private KeyEntry read(Path path, String keyId) throws IOException {
+        byte[] stored = Files.readAllBytes(path);
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, keystoreKey, new GCMParameterSpec(128, stored, 0, IV_LENGTH));
+            cipher.updateAAD(keyId.getBytes(StandardCharsets.US_ASCII));
+            byte[] pkcs8 = cipher.doFinal(stored, IV_LENGTH, stored.length - IV_LENGTH);
+
+            KeyFactory factory = KeyFactory.getInstance("RSA");
+            PrivateKey privateKey = factory.generatePrivate(new PKCS8EncodedKeySpec(pkcs8));
+            RSAPrivateCrtKey crt = (RSAPrivateCrtKey) privateKey;
+            PublicKey publicKey = factory.generatePublic(new RSAPublicKeySpec(crt.getModulus(), crt.getPublicExponent()));
+            return new KeyEntry(keyId, new KeyPair(publicKey, privateKey));
+        } catch (GeneralSecurityException | ClassCastException e) {
+            throw new IOException("Could not decrypt keystore file " + path, e);
+        }
+    }
+
+    private void write(String name, PrivateKey privateKey) {
+        if (keystore == null) {
+            return;
+        }
+        String keyId = name.substring(name.indexOf('-') + 1);
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, keystoreKey, new GCMParameterSpec(128, iv));
+            cipher.updateAAD(keyId.getBytes(StandardCharsets.US_ASCII));
+            byte[] sealed = cipher.doFinal(privateKey.getEncoded());
+            byte[] stored = new byte[IV_LENGTH + sealed.length];
+            System.arraycopy(iv, 0, stored, 0, IV_LENGTH);
+            System.arraycopy(sealed, 0, stored, IV_LENGTH, sealed.length);
+
+            Path temp = keystore.resolve(name + ".tmp");
+            Files.write(temp, stored);
+            Files.move(temp, file(name), StandardCopyOption.ATOMIC_MOVE);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not encrypt RSA key", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write keystore file " + name, e);
+        }
+    }
+
+    private void rename(String from, String to) {
+        if (keystore == null) {
+            return;
+        }
+        try {
+            Files.move(file(from), file(to), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not rename keystore file " + from, e);
+        }
+    }
+
+    private void deleteExpiredFiles(long now) {
+        if (keystore == null) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(keystore, "retired-*.key")) {
+            for (Path path : files) {
+                String name = path.getFileName().toString();
+                String until = name.substring(name.lastIndexOf('-') + 1, name.length() - ".key".length());
+                if (now >= Long.parseLong(until)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Could not clean up retired keys: {}", e.getMessage());
+        }
+    }
+
+    private Path file(String name) {
+        return keystore.resolve(name + ".key");
+    }
+
+    @Override
+    public void destroy() {
+        background.shutdownNow();
+        try {
+            // Let a key being written land before another node can take over
+            background.awaitTermination(CURRENT_KEY_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            writer = keystore == null;
+            if (writerLock != null) {
+                writerLock.close();
+                writerLock = null;
+            }
+        } catch (IOException e) {
+            log.warn("Could not release keystore lock: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
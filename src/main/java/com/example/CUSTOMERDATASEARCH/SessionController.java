@@ -1,19 +1,24 @@
 package com.example.CUSTOMERDATASEARCH;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 
 @RestController
 @CrossOrigin(origins = "*")
 public class SessionController {
 
+    private static final Logger log = LoggerFactory.getLogger(SessionController.class);
+
     private final KeyController keyController;
     private final SessionService sessionService;
 
@@ -26,6 +31,18 @@ public class SessionController {
     public ResponseEntity<?> startSession(@RequestBody Map<String, String> body) {
         try {
             System.out.println("Session start requested");
+
+            // Negotiated per request: ECDH if the client asks for it, RSA otherwise
+            String protocol = body.getOrDefault("protocol", KeyController.RSA_OAEP);
+            if (KeyController.isEcdhProtocol(protocol)) {
+                return startEcdhSession(protocol, body.get("clientPublicKey"));
+            }
+            if (!KeyController.RSA_OAEP.equals(protocol)) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("error", "Unsupported protocol: " + protocol);
+                error.put("protocols", KeyController.SESSION_PROTOCOLS);
+                return ResponseEntity.badRequest().body(error);
+            }
             
             String encryptedKey = body.get("encryptedKey");
             if (encryptedKey == null) {
@@ -35,7 +52,17 @@ public class SessionController {
             
             System.out.println("EncryptedKey received: " + encryptedKey.substring(0, Math.min(20, encryptedKey.length())) + "...");
 
-            PrivateKey privateKey = keyController.getKeyPair().getPrivate();
+            // Clients that fetched the key before a rotation name it by ID
+            String keyId = body.get("keyId");
+            KeyPair keyPair = keyId == null ? keyController.getKeyPair() : keyController.getKeyPair(keyId);
+            if (keyPair == null) {
+                log.warn("Unknown or expired key ID: {}", keyId);
+                Map<String, Object> error = new HashMap<>();
+                error.put("error", "Unknown key ID");
+                error.put("keyId", keyId);
+                return ResponseEntity.badRequest().body(error);
+            }
+            PrivateKey privateKey = keyPair.getPrivate();
             System.out.println("Private key obtained");
             
             byte[] encryptedBytes;
@@ -70,13 +97,10 @@ public class SessionController {
             }
 
             SecretKey aesKey = new SecretKeySpec(rawAes, "AES");
-            String sessionId = UUID.randomUUID().toString();
-            
-            // Use SessionService to store the session
-            sessionService.storeSession(sessionId, aesKey);
+            // Use SessionService to start the session (stored, or a sealed token)
+            String sessionId = sessionService.createSession(aesKey);
             
-            System.out.println("Session created successfully: " + sessionId);
-            System.out.println("Active sessions: " + sessionService.getActiveSessionCount());
+            log.debug("Session created");
 
             Map<String, String> resp = new HashMap<>();
             resp.put("sessionId", sessionId);
@@ -89,6 +113,32 @@ public class SessionController {
         }
     }
 
+    /**
+     * Ephemeral ECDH session start: no RSA private-key operation, and the
+     * client derives the same AES key from the returned server public key.
+     */
+    private ResponseEntity<?> startEcdhSession(String protocol, String clientPublicKey) {
+        if (clientPublicKey == null) {
+            return ResponseEntity.badRequest().body("No clientPublicKey provided");
+        }
+        KeyController.EcdhAgreement agreement;
+        try {
+            agreement = keyController.agreeEcdh(protocol, Base64.getDecoder().decode(clientPublicKey));
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            log.warn("ECDH key agreement failed: {}", e.getMessage());
+            return ResponseEntity.badRequest().body("Invalid client public key");
+        }
+
+        String sessionId = sessionService.createSession(agreement.aesKey());
+        log.debug("Session created ({})", protocol);
+
+        Map<String, String> resp = new HashMap<>();
+        resp.put("sessionId", sessionId);
+        resp.put("protocol", protocol);
+        resp.put("serverPublicKey", Base64.getEncoder().encodeToString(agreement.serverPublicKey()));
+        return ResponseEntity.ok(resp);
+    }
+
     public SecretKey getSessionKey(String sessionId) {
         return sessionService.getSessionKey(sessionId);
     }
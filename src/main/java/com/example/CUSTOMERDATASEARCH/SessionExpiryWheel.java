@@ -0,0 +1,68 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel for session expiry.
+ *
+ * Every session has the same timeout, so one wheel spanning a little more
+ * than the timeout is enough and no deadline ever needs more than one
+ * rotation. Scheduling is a lock-free append to the bucket of the deadline's
+ * tick. {@link #advance} hands back the records of every bucket that has
+ * come due, so the cost of expiry is proportional to the sessions actually
+ * due rather than to all sessions. Sessions used since they were scheduled
+ * are simply scheduled again for their new deadline.
+ */
+final class SessionExpiryWheel {
+
+    private final long tickMillis;
+    private final ConcurrentLinkedQueue<SessionRecord>[] buckets;
+
+    private final ReentrantLock advanceLock = new ReentrantLock();
+    private long processedTick;
+
+    @SuppressWarnings("unchecked")
+    SessionExpiryWheel(long timeoutMillis, long tickMillis, long now) {
+        this.tickMillis = Math.max(1, tickMillis);
+        int size = (int) (timeoutMillis / this.tickMillis) + 2;
+        this.buckets = new ConcurrentLinkedQueue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.processedTick = now / this.tickMillis;
+    }
+
+    /**
+     * Hand {@code record} back from {@link #advance} once {@code deadline} has passed.
+     */
+    void schedule(SessionRecord record, long deadline) {
+        // Rounded up, so a record is never due before its deadline
+        long tick = (deadline + tickMillis - 1) / tickMillis;
+        buckets[(int) (tick % buckets.length)].add(record);
+    }
+
+    /**
+     * Pass every record whose bucket has come due by {@code now} to {@code due}.
+     * Records it schedules again always land in a later bucket.
+     */
+    void advance(long now, Consumer<SessionRecord> due) {
+        long nowTick = now / tickMillis;
+        advanceLock.lock();
+        try {
+            // After a long stall one full rotation still covers every bucket
+            long from = Math.max(processedTick + 1, nowTick - buckets.length + 1);
+            for (long tick = from; tick <= nowTick; tick++) {
+                ConcurrentLinkedQueue<SessionRecord> bucket = buckets[(int) (tick % buckets.length)];
+                SessionRecord record;
+                while ((record = bucket.poll()) != null) {
+                    due.accept(record);
+                }
+            }
+            processedTick = Math.max(processedTick, nowTick);
+        } finally {
+            advanceLock.unlock();
+        }
+    }
+}
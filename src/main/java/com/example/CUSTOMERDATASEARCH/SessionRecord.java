@@ -0,0 +1,45 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import javax.crypto.SecretKey;
+
+/**
+ * One session: its AES key and when it was last used, kept together so a
+ * lookup touches a single map entry.
+ */
+final class SessionRecord {
+
+    // Last-access writes closer together than this are skipped, so hot
+    // sessions don't write the same cache line on every request
+    private static final long ACCESS_GRANULARITY_MILLIS = 1000;
+
+    private final String sessionId;
+    private final SecretKey key;
+    private volatile long lastAccess;
+
+    SessionRecord(String sessionId, SecretKey key, long now) {
+        this.sessionId = sessionId;
+        this.key = key;
+        this.lastAccess = now;
+    }
+
+    String getSessionId() { return sessionId; }
+    SecretKey getKey() { return key; }
+    long getLastAccess() { return lastAccess; }
+
+    boolean isExpired(long now, long timeoutMillis) {
+        return now - lastAccess > timeoutMillis;
+    }
+
+    /**
+     * Record a use, returning whether the stored time changed. Racing updates
+     * may keep a slightly older time, which only moves expiry by less than
+     * the granularity.
+     */
+    boolean touch(long now) {
+        if (now - lastAccess >= ACCESS_GRANULARITY_MILLIS) {
+            lastAccess = now;
+            return true;
+        }
+        return false;
+    }
+}
@@ -1,72 +1,185 @@
 package com.example.CUSTOMERDATASEARCH;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import javax.crypto.SecretKey;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
 /**
- * Service class to manage session data and cleanup
+ * Service class to manage session data and cleanup.
+ *
+ * Server-side sessions live in a {@link SessionStore}: in this process by
+ * default, or shared between nodes with {@code session.store.type=jdbc}.
+ * A background thread runs the store's sweep every {@code session.expiry-tick}.
+ *
+ * With {@code session.stateless.enabled=true} new sessions are sealed
+ * tokens from {@link SessionTokenSealer} instead, and nothing is stored but
+ * revocations, which the sweep shares with the other nodes.
+ * Server-side session IDs issued before the switch keep working.
  */
 @Service
-public class SessionService {
+public class SessionService implements DisposableBean, MeterBinder {
 
-    // Use ConcurrentHashMap for thread safety
-    private final Map<String, SecretKey> sessionStore = new ConcurrentHashMap<>();
-    private final Map<String, Long> sessionTimestamps = new ConcurrentHashMap<>();
-    
-    // Session timeout in milliseconds (30 minutes)
-    private static final long SESSION_TIMEOUT = 30 * 60 * 1000;
+    private static final Logger log = LoggerFactory.getLogger(SessionService.class);
+
+    private final SessionStore sessionStore;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService expirySweeper;
+    private final SessionTokenSealer tokenSealer;
+    private final List<Consumer<String>> removalListeners = new CopyOnWriteArrayList<>();
+
+    @Autowired
+    public SessionService(
+            SessionStore sessionStore,
+            @Value("${session.expiry-tick:5s}") Duration expiryTick,
+            ObjectProvider<SessionTokenSealer> tokenSealer
+    ) {
+        this(sessionStore, expiryTick, System::currentTimeMillis, true, tokenSealer.getIfAvailable());
+    }
+
+    SessionService(Duration sessionTimeout, Duration expiryTick, LongSupplier clock, boolean sweepInBackground) {
+        this(sessionTimeout, expiryTick, clock, sweepInBackground, null);
+    }
+
+    SessionService(Duration sessionTimeout, Duration expiryTick, LongSupplier clock, boolean sweepInBackground,
+                   SessionTokenSealer tokenSealer) {
+        this(new InMemorySessionStore(sessionTimeout, expiryTick, clock.getAsLong()),
+                expiryTick, clock, sweepInBackground, tokenSealer);
+    }
+
+    SessionService(SessionStore sessionStore, Duration expiryTick, LongSupplier clock, boolean sweepInBackground,
+                   SessionTokenSealer tokenSealer) {
+        this.sessionStore = sessionStore;
+        this.clock = clock;
+        this.tokenSealer = tokenSealer;
+        if (tokenSealer != null) {
+            // Tokens revoked on other nodes before this one started
+            tokenSealer.deny(sessionStore.pollRevokedTokens(clock.getAsLong()));
+        }
+        if (sweepInBackground) {
+            expirySweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "session-expiry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            expirySweeper.scheduleWithFixedDelay(this::cleanupExpiredSessions,
+                    expiryTick.toMillis(), expiryTick.toMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            expirySweeper = null;
+        }
+    }
+
+    /**
+     * Start a session for {@code aesKey} and return its ID: a sealed token in
+     * stateless mode, otherwise a random ID for a server-side session.
+     */
+    public String createSession(SecretKey aesKey) {
+        if (tokenSealer != null) {
+            return tokenSealer.seal(aesKey);
+        }
+        String sessionId = UUID.randomUUID().toString();
+        storeSession(sessionId, aesKey);
+        return sessionId;
+    }
 
     public void storeSession(String sessionId, SecretKey aesKey) {
-        sessionStore.put(sessionId, aesKey);
-        sessionTimestamps.put(sessionId, System.currentTimeMillis());
+        sessionStore.save(sessionId, aesKey, clock.getAsLong());
         System.out.println("Session stored: " + sessionId);
     }
 
     public SecretKey getSessionKey(String sessionId) {
-        // Check if session exists and is not expired
-        Long timestamp = sessionTimestamps.get(sessionId);
-        if (timestamp == null) {
-            System.out.println("Session not found: " + sessionId);
-            return null;
+        if (tokenSealer != null && SessionTokenSealer.isToken(sessionId)) {
+            SecretKey key = tokenSealer.unseal(sessionId);
+            if (key == null) {
+                log.debug("Session token rejected");
+            }
+            return key;
         }
-        
-        if (System.currentTimeMillis() - timestamp > SESSION_TIMEOUT) {
-            // Session expired, remove it
-            removeSession(sessionId);
-            System.out.println("Session expired and removed: " + sessionId);
-            return null;
+
+        // Null if the session is unknown or expired
+        SecretKey key = sessionStore.lookup(sessionId, clock.getAsLong());
+        if (key == null) {
+            log.debug("Session not found or expired");
         }
-        
-        // Update timestamp for session activity
-        sessionTimestamps.put(sessionId, System.currentTimeMillis());
-        return sessionStore.get(sessionId);
+        return key;
     }
 
     public void removeSession(String sessionId) {
-        sessionStore.remove(sessionId);
-        sessionTimestamps.remove(sessionId);
-        System.out.println("Session removed: " + sessionId);
+        if (tokenSealer != null && SessionTokenSealer.isToken(sessionId)) {
+            SessionTokenSealer.Unsealed revoked = tokenSealer.revoke(sessionId);
+            if (revoked != null) {
+                // For the other nodes; this one already refuses it
+                sessionStore.revokeToken(revoked.tokenId(), revoked.expiresAt(), clock.getAsLong());
+            }
+            log.debug("Session token revoked");
+        } else {
+            sessionStore.remove(sessionId, clock.getAsLong());
+            log.debug("Session removed");
+        }
+        removalListeners.forEach(listener -> listener.accept(sessionId));
     }
 
+    /**
+     * Call {@code listener} with the ID of every session closed through
+     * {@link #removeSession}. Sessions that simply expire are not reported.
+     */
+    public void addRemovalListener(Consumer<String> listener) {
+        removalListeners.add(listener);
+    }
+
+    /**
+     * Server-side sessions stored and not yet removed. An idle session is
+     * counted until the next sweep, at most one expiry tick after it timed
+     * out. Stateless sessions are not counted.
+     */
     public int getActiveSessionCount() {
-        cleanupExpiredSessions();
-        return sessionStore.size();
+        return sessionStore.count();
     }
 
     /**
-     * Clean up expired sessions
+     * Clean up expired sessions whose expiry has come due. Runs in the
+     * background every {@code session.expiry-tick}.
      */
     public void cleanupExpiredSessions() {
-        long currentTime = System.currentTimeMillis();
-        sessionTimestamps.entrySet().removeIf(entry -> {
-            boolean expired = currentTime - entry.getValue() > SESSION_TIMEOUT;
-            if (expired) {
-                sessionStore.remove(entry.getKey());
-                System.out.println("Cleaned up expired session: " + entry.getKey());
-            }
-            return expired;
-        });
+        long now = clock.getAsLong();
+        if (tokenSealer != null) {
+            tokenSealer.purge();
+            tokenSealer.deny(sessionStore.pollRevokedTokens(now));
+        }
+        sessionStore.sweep(now);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("sessions.active", this, SessionService::getActiveSessionCount)
+                .description("Server-side sessions not yet removed or swept").register(registry);
+        if (tokenSealer != null) {
+            // Stateless sessions are only visible through the verified-token cache
+            Gauge.builder("sessions.tokens.cached", tokenSealer, SessionTokenSealer::getCacheSize)
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (expirySweeper != null) {
+            expirySweeper.shutdownNow();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import javax.crypto.SecretKey;
+import java.util.Map;
+
+/**
+ * Where {@link SessionService} keeps server-side sessions. Chosen with
+ * {@code session.store.type}: {@code memory} (default, this node only) or
+ * {@code jdbc} (shared by every node through a database).
+ *
+ * Every API call looks up its session, so {@link #lookup} must stay cheap;
+ * shared stores answer it from a local near-cache.
+ */
+public interface SessionStore {
+
+    void save(String sessionId, SecretKey key, long now);
+
+    /**
+     * The session's key, or null if it is unknown or has been idle longer
+     * than the timeout. Counts as a use of the session.
+     */
+    SecretKey lookup(String sessionId, long now);
+
+    void remove(String sessionId, long now);
+
+    /**
+     * Sessions stored and not yet removed, possibly as of the last sweep.
+     */
+    int count();
+
+    /**
+     * Periodic housekeeping, run every {@code session.expiry-tick}: drop
+     * expired sessions and, for shared stores, write batched last-access
+     * times and pick up removals made on other nodes.
+     */
+    void sweep(long now);
+
+    /**
+     * Record that the stateless session token {@code tokenId}, valid until
+     * {@code expiresAt}, has been revoked. Shared stores pass it on to every
+     * node; this node's {@link SessionTokenSealer} already refuses it.
+     */
+    default void revokeToken(long tokenId, long expiresAt, long now) {
+    }
+
+    /**
+     * Token revocations recorded through any node since the last poll, as
+     * token ID to expiry. The first poll returns every revocation still in
+     * force. Stores only this node uses have nothing to report.
+     */
+    default Map<Long, Long> pollRevokedTokens(long now) {
+        return Map.of();
+    }
+}
@@ -0,0 +1,273 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Stateless session tokens: the client's AES key and an expiry time, sealed
+ * with AES-256-GCM under a server master key, so any node holding the same
+ * {@code session.stateless.secret} can serve any request.
+ *
+ * Master keys rotate every {@code session.stateless.rotation}. Each period's
+ * key is derived from the shared secret with HKDF, so all nodes rotate in
+ * step without coordinating, and a token names the period it was sealed in.
+ * Keys stay valid for as long as tokens sealed under them can live.
+ *
+ * Unsealed tokens are kept in a small cache so the hot path is a map lookup.
+ * Closed sessions go on a deny-list of token IDs until they would have
+ * expired anyway. {@link SessionService} shares revocations through the
+ * {@link SessionStore}: with the JDBC store every node adds them to its
+ * deny-list within one {@code session.expiry-tick}, while the in-memory
+ * store keeps them on the node that revoked the token.
+ *
+ * A token may name the period after the current one, so a node whose clock
+ * is slightly behind still accepts tokens sealed just after a rotation.
+ */
+@Service
+@ConditionalOnProperty(name = "session.stateless.enabled", havingValue = "true")
+public class SessionTokenSealer {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionTokenSealer.class);
+
+    static final String TOKEN_PREFIX = "st1.";
+    private static final int IV_LENGTH = 12;
+    private static final int TOKEN_ID_LENGTH = 16;
+    private static final int TAG_BITS = 128;
+
+    private final SecureRandom random = new SecureRandom();
+    private final byte[] secret;
+    private final long rotationMillis;
+    private final long timeoutMillis;
+    private final int cacheMaxEntries;
+    private final LongSupplier clock;
+
+    private final ConcurrentHashMap<Long, SecretKey> periodKeys = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Unsealed> verified = new ConcurrentHashMap<>();
+    // Token ID prefix -> expiry of the revoked token
+    private final ConcurrentHashMap<Long, Long> denyList = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SessionTokenSealer(
+            @Value("${session.stateless.secret:}") String secret,
+            @Value("${session.stateless.rotation:1d}") Duration rotation,
+            @Value("${session.timeout:30m}") Duration timeout,
+            @Value("${session.stateless.cache-max-entries:50000}") int cacheMaxEntries
+    ) {
+        this(decodeSecret(secret), rotation, timeout, cacheMaxEntries, System::currentTimeMillis);
+    }
+
+    SessionTokenSealer(byte[] secret, Duration rotation, Duration timeout, int cacheMaxEntries, LongSupplier clock) {
+        this.secret = secret;
+        this.rotationMillis = Math.max(1, rotation.toMillis());
+        this.timeoutMillis = timeout.toMillis();
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.clock = clock;
+    }
+
+    private static byte[] decodeSecret(String secret) {
+        if (secret == null || secret.isBlank()) {
+            log.warn("session.stateless.secret is not set; session tokens will only be valid on this node until restart");
+            byte[] generated = new byte[32];
+            new SecureRandom().nextBytes(generated);
+            return generated;
+        }
+        byte[] decoded = Base64.getDecoder().decode(secret.trim());
+        if (decoded.length < 32) {
+            throw new IllegalArgumentException("session.stateless.secret must be at least 32 bytes (base64)");
+        }
+        return decoded;
+    }
+
+    static boolean isToken(String sessionId) {
+        return sessionId != null && sessionId.startsWith(TOKEN_PREFIX);
+    }
+
+    /**
+     * A new token carrying {@code aesKey}, valid for {@code session.timeout}.
+     */
+    public String seal(SecretKey aesKey) {
+        long now = clock.getAsLong();
+        long period = now / rotationMillis;
+        byte[] rawKey = aesKey.getEncoded();
+
+        byte[] iv = new byte[IV_LENGTH];
+        byte[] tokenId = new byte[TOKEN_ID_LENGTH];
+        random.nextBytes(iv);
+        random.nextBytes(tokenId);
+
+        ByteBuffer plain = ByteBuffer.allocate(Long.BYTES + TOKEN_ID_LENGTH + rawKey.length);
+        plain.putLong(now + timeoutMillis).put(tokenId).put(rawKey);
+        byte[] header = ByteBuffer.allocate(Long.BYTES).putLong(period).array();
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, periodKey(period), new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(header);
+            byte[] sealed = cipher.doFinal(plain.array());
+            byte[] token = ByteBuffer.allocate(header.length + IV_LENGTH + sealed.length)
+                    .put(header).put(iv).put(sealed).array();
+            return TOKEN_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not seal session token", e);
+        }
+    }
+
+    /**
+     * The AES key in {@code token}, or null if it is malformed, forged,
+     * expired, sealed under a retired master key or revoked.
+     */
+    public SecretKey unseal(String token) {
+        long now = clock.getAsLong();
+        Unsealed unsealed = verified.get(token);
+        if (unsealed == null) {
+            unsealed = open(token, now);
+            if (unsealed == null) {
+                return null;
+            }
+            cache(token, unsealed, now);
+        }
+        if (now >= unsealed.expiresAt) {
+            verified.remove(token);
+            return null;
+        }
+        if (!denyList.isEmpty() && denyList.containsKey(unsealed.tokenId)) {
+            return null;
+        }
+        return unsealed.key;
+    }
+
+    /**
+     * Refuse {@code token} from now on, on this node. Returns what was revoked,
+     * for other nodes to {@link #deny}, or null if it was not a valid token.
+     */
+    public Unsealed revoke(String token) {
+        Unsealed unsealed = verified.remove(token);
+        if (unsealed == null) {
+            unsealed = open(token, clock.getAsLong());
+        }
+        if (unsealed != null) {
+            denyList.put(unsealed.tokenId, unsealed.expiresAt);
+        }
+        return unsealed;
+    }
+
+    /**
+     * Refuse tokens another node revoked, given as token ID to expiry.
+     */
+    public void deny(Map<Long, Long> revoked) {
+        long now = clock.getAsLong();
+        revoked.forEach((tokenId, expiresAt) -> {
+            if (now < expiresAt) {
+                denyList.put(tokenId, expiresAt);
+            }
+        });
+    }
+
+    /**
+     * Drop expired deny-list and cache entries and retired master keys.
+     */
+    public void purge() {
+        long now = clock.getAsLong();
+        denyList.values().removeIf(expiresAt -> now >= expiresAt);
+        verified.values().removeIf(unsealed -> now >= unsealed.expiresAt);
+        long oldest = oldestValidPeriod(now);
+        periodKeys.keySet().removeIf(period -> period < oldest);
+    }
+
+    int getCacheSize() {
+        return verified.size();
+    }
+
+    int getDenyListSize() {
+        return denyList.size();
+    }
+
+    /**
+     * Decrypt and check {@code token}, bypassing the cache and deny-list.
+     */
+    Unsealed open(String token, long now) {
+        if (!isToken(token)) {
+            return null;
+        }
+        try {
+            byte[] raw = Base64.getUrlDecoder().decode(token.substring(TOKEN_PREFIX.length()));
+            if (raw.length < Long.BYTES + IV_LENGTH + TAG_BITS / 8) {
+                return null;
+            }
+            long period = ByteBuffer.wrap(raw, 0, Long.BYTES).getLong();
+            // One period of clock skew between nodes is allowed
+            if (period > now / rotationMillis + 1 || period < oldestValidPeriod(now)) {
+                return null;
+            }
+
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, periodKey(period),
+                    new GCMParameterSpec(TAG_BITS, raw, Long.BYTES, IV_LENGTH));
+            cipher.updateAAD(raw, 0, Long.BYTES);
+            int offset = Long.BYTES + IV_LENGTH;
+            ByteBuffer plain = ByteBuffer.wrap(cipher.doFinal(raw, offset, raw.length - offset));
+
+            long expiresAt = plain.getLong();
+            long tokenId = plain.getLong();
+            plain.position(plain.position() + TOKEN_ID_LENGTH - Long.BYTES);
+            byte[] rawKey = new byte[plain.remaining()];
+            plain.get(rawKey);
+            return new Unsealed(new SecretKeySpec(rawKey, "AES"), expiresAt, tokenId);
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            log.debug("Rejected session token: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void cache(String token, Unsealed unsealed, long now) {
+        if (verified.size() >= cacheMaxEntries) {
+            verified.values().removeIf(entry -> now >= entry.expiresAt);
+            // Still full: drop an arbitrary slice rather than grow
+            Iterator<Map.Entry<String, Unsealed>> entries = verified.entrySet().iterator();
+            for (int i = 0; i < cacheMaxEntries / 10 + 1 && entries.hasNext() && verified.size() >= cacheMaxEntries; i++) {
+                entries.next();
+                entries.remove();
+            }
+        }
+        verified.put(token, unsealed);
+    }
+
+    /**
+     * Tokens live at most one timeout, so keys older than that are retired.
+     */
+    private long oldestValidPeriod(long now) {
+        return (now - timeoutMillis) / rotationMillis;
+    }
+
+    private SecretKey periodKey(long period) {
+        return periodKeys.computeIfAbsent(period, this::deriveKey);
+    }
+
+    /**
+     * HKDF-SHA256 of the shared secret, with the period as context.
+     */
+    private SecretKey deriveKey(long period) {
+        byte[] info = ("customerdatasearch session token " + period).getBytes(StandardCharsets.US_ASCII);
+        return new SecretKeySpec(Hkdf.sha256(null, secret, info, 32), "AES");
+    }
+
+    record Unsealed(SecretKey key, long expiresAt, long tokenId) {}
+}
@@ -0,0 +1,122 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key into one execution.
+ *
+ * The first caller for a key (the leader) runs the loader; callers arriving
+ * while it is in flight wait for and share its outcome, including a failure.
+ * Nothing is remembered once the flight lands, so a failed load is retried
+ * by the next caller rather than handed to it.
+ */
+class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder followers = new LongAdder();
+
+    static final class Outcome<V> {
+        private final V value;
+        private final boolean shared;
+
+        private Outcome(V value, boolean shared) {
+            this.value = value;
+            this.shared = shared;
+        }
+
+        V getValue() { return value; }
+
+        /**
+         * True when another caller ran the loader and this one only waited for it.
+         */
+        boolean isShared() { return shared; }
+    }
+
+    Outcome<V> execute(K key, Callable<V> loader) throws Exception {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            followers.increment();
+            return new Outcome<>(await(existing), true);
+        }
+
+        leaders.increment();
+        V value;
+        try {
+            value = loader.call();
+        } catch (Throwable t) {
+            // Land the flight before failing it so late arrivals start a fresh one
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(t);
+            throw t;
+        }
+        inFlight.remove(key, flight);
+        flight.complete(value);
+        return new Outcome<>(value, false);
+    }
+
+    /**
+     * Non-blocking form of {@link #execute}. Followers get the leader's outcome
+     * without a thread waiting for it; blocking and async callers for the same
+     * key share one flight.
+     */
+    CompletableFuture<Outcome<V>> executeAsync(K key, Supplier<CompletableFuture<V>> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            followers.increment();
+            return existing.thenApply(value -> new Outcome<>(value, true));
+        }
+
+        leaders.increment();
+        CompletableFuture<V> load;
+        try {
+            load = loader.get();
+        } catch (Throwable t) {
+            load = CompletableFuture.failedFuture(t);
+        }
+        return load.handle((value, failure) -> {
+            inFlight.remove(key, flight);
+            if (failure != null) {
+                flight.completeExceptionally(failure);
+                throw failure instanceof CompletionException completion ? completion : new CompletionException(failure);
+            }
+            flight.complete(value);
+            return new Outcome<>(value, false);
+        });
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) throws Exception {
+        try {
+            return flight.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    long getLeaderCount() {
+        return leaders.sum();
+    }
+
+    long getFollowerCount() {
+        return followers.sum();
+    }
+}
@@ -0,0 +1,402 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Push-style decoder for the GetDocument response, for the non-blocking
+ * download path where bytes arrive in arbitrary slices on I/O threads.
+ *
+ * It scans the flat top-level JSON object incrementally, keeps the small
+ * string fields, and base64-decodes StreamBytes as it goes, handing out
+ * decoded chunks without ever holding the whole value. Nested values are
+ * skipped. Field names are matched case-insensitively, like
+ * {@link LaserFicheClient}. Names and kept strings are decoded as UTF-8 and,
+ * as with Jackson there, malformed UTF-8 or escapes fail the parse.
+ */
+final class StreamBytesDecoder {
+
+    /**
+     * Receives decoded document bytes. The buffer is handed over, the decoder
+     * never touches it again.
+     */
+    interface ChunkHandler {
+        void onChunk(ByteBuffer chunk) throws IOException;
+    }
+
+    static final int CHUNK_SIZE = 16 * 1024;
+    private static final int MAX_FIELD_LENGTH = 4096;
+
+    private static final int[] SEXTETS = new int[128];
+
+    static {
+        Arrays.fill(SEXTETS, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            SEXTETS[alphabet.charAt(i)] = i;
+        }
+    }
+
+    private enum State {
+        BEFORE_OBJECT, EXPECT_KEY, KEY, AFTER_KEY, EXPECT_VALUE,
+        STRING, STRING_ESCAPE, STRING_UNICODE, SKIP_STRING, SKIP_ESCAPE,
+        BASE64, BASE64_ESCAPE, SCALAR, NESTED, NESTED_STRING, NESTED_ESCAPE,
+        AFTER_VALUE, DONE
+    }
+
+    private final ChunkHandler handler;
+    private final LaserFicheClient.FetchResult result = new LaserFicheClient.FetchResult();
+
+    private State state = State.BEFORE_OBJECT;
+    private final StringBuilder text = new StringBuilder();
+    private String key;
+    private int nestedDepth;
+    // KEY or STRING, whichever an escape returns to
+    private State escaped;
+    private int unicodeDigits;
+    private int unicodeValue;
+
+    // The bytes of a multi-byte UTF-8 character read so far
+    private final CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder();
+    private final byte[] pending = new byte[4];
+    private int pendingLength;
+    private int pendingExpected;
+
+    // Base64 decoding state
+    private int quantum;
+    private int quantumLength;
+    private boolean padding;
+    private byte[] chunk;
+    private int chunkLength;
+    private long decoded;
+
+    StreamBytesDecoder(ChunkHandler handler) {
+        this.handler = handler;
+    }
+
+    void feed(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            accept(src.get() & 0xFF);
+        }
+    }
+
+    /**
+     * Call once the body has ended.
+     */
+    LaserFicheClient.FetchResult finish() throws IOException {
+        if (state != State.DONE) {
+            throw new IOException("Truncated Laserfiche response");
+        }
+        return result;
+    }
+
+    private void accept(int c) throws IOException {
+        switch (state) {
+            case BEFORE_OBJECT -> {
+                if (c == '{') {
+                    state = State.EXPECT_KEY;
+                } else if (!isWhitespace(c) && c != 0xEF && c != 0xBB && c != 0xBF) {
+                    throw new IOException("Laserfiche response is not a JSON object");
+                }
+            }
+            case EXPECT_KEY -> {
+                if (c == '"') {
+                    text.setLength(0);
+                    state = State.KEY;
+                } else if (c == '}') {
+                    state = State.DONE;
+                } else if (c != ',' && !isWhitespace(c)) {
+                    throw unexpected(c);
+                }
+            }
+            case KEY -> {
+                if (c == '"') {
+                    endCharacter();
+                    key = text.toString();
+                    state = State.AFTER_KEY;
+                } else if (c == '\\') {
+                    endCharacter();
+                    escaped = State.KEY;
+                    state = State.STRING_ESCAPE;
+                } else {
+                    appendUtf8(c);
+                }
+            }
+            case AFTER_KEY -> {
+                if (c == ':') {
+                    state = State.EXPECT_VALUE;
+                } else if (!isWhitespace(c)) {
+                    throw unexpected(c);
+                }
+            }
+            case EXPECT_VALUE -> startValue(c);
+            case STRING -> {
+                if (c == '"') {
+                    endCharacter();
+                    assign(text.toString());
+                    state = State.AFTER_VALUE;
+                } else if (c == '\\') {
+                    endCharacter();
+                    escaped = State.STRING;
+                    state = State.STRING_ESCAPE;
+                } else {
+                    appendUtf8(c);
+                }
+            }
+            case STRING_ESCAPE -> {
+                if (c == 'u') {
+                    unicodeDigits = 0;
+                    unicodeValue = 0;
+                    state = State.STRING_UNICODE;
+                } else {
+                    append(switch (c) {
+                        case 'n' -> '\n';
+                        case 't' -> '\t';
+                        case 'r' -> '\r';
+                        case 'b' -> '\b';
+                        case 'f' -> '\f';
+                        case '"', '\\', '/' -> c;
+                        default -> throw new IOException("Invalid escape '\\" + (char) c + "' in Laserfiche response");
+                    });
+                    state = escaped;
+                }
+            }
+            case STRING_UNICODE -> {
+                int digit = Character.digit(c, 16);
+                if (digit < 0) {
+                    throw new IOException("Invalid \\u escape in Laserfiche response");
+                }
+                unicodeValue = (unicodeValue << 4) | digit;
+                if (++unicodeDigits == 4) {
+                    append(unicodeValue);
+                    state = escaped;
+                }
+            }
+            case SKIP_STRING -> {
+                if (c == '"') {
+                    state = State.AFTER_VALUE;
+                } else if (c == '\\') {
+                    state = State.SKIP_ESCAPE;
+                }
+            }
+            case SKIP_ESCAPE -> state = State.SKIP_STRING;
+            case BASE64 -> {
+                if (c == '"') {
+                    endBase64();
+                    state = State.AFTER_VALUE;
+                } else if (c == '\\') {
+                    state = State.BASE64_ESCAPE;
+                } else {
+                    base64(c);
+                }
+            }
+            case BASE64_ESCAPE -> {
+                // Serializers may escape '/' or wrap lines; anything else does not belong in base64
+                if (c == '/') {
+                    base64(c);
+                } else if (c != 'n' && c != 'r') {
+                    throw new IOException("Unexpected escape in StreamBytes");
+                }
+                state = State.BASE64;
+            }
+            case SCALAR -> {
+                if (c == ',' || c == '}' || isWhitespace(c)) {
+                    String value = text.toString();
+                    assign("null".equals(value) ? null : value);
+                    state = c == ',' ? State.EXPECT_KEY : c == '}' ? State.DONE : State.AFTER_VALUE;
+                } else {
+                    append(c);
+                }
+            }
+            case NESTED -> {
+                if (c == '"') {
+                    state = State.NESTED_STRING;
+                } else if (c == '{' || c == '[') {
+                    nestedDepth++;
+                } else if ((c == '}' || c == ']') && --nestedDepth == 0) {
+                    state = State.AFTER_VALUE;
+                }
+            }
+            case NESTED_STRING -> {
+                if (c == '"') {
+                    state = State.NESTED;
+                } else if (c == '\\') {
+                    state = State.NESTED_ESCAPE;
+                }
+            }
+            case NESTED_ESCAPE -> state = State.NESTED_STRING;
+            case AFTER_VALUE -> {
+                if (c == ',') {
+                    state = State.EXPECT_KEY;
+                } else if (c == '}') {
+                    state = State.DONE;
+                } else if (!isWhitespace(c)) {
+                    throw unexpected(c);
+                }
+            }
+            case DONE -> {
+                if (!isWhitespace(c)) {
+                    throw unexpected(c);
+                }
+            }
+        }
+    }
+
+    private void startValue(int c) throws IOException {
+        if (isWhitespace(c)) {
+            return;
+        }
+        text.setLength(0);
+        if (c == '"') {
+            if (!"StreamBytes".equalsIgnoreCase(key)) {
+                state = State.STRING;
+            } else if (result.getResponseCode() != null && !result.isSuccess()) {
+                // ResponseCode normally precedes StreamBytes; nothing to decode for a known failure
+                state = State.SKIP_STRING;
+            } else {
+                state = State.BASE64;
+            }
+        } else if (c == '{' || c == '[') {
+            nestedDepth = 1;
+            state = State.NESTED;
+        } else if (c == '-' || c == 't' || c == 'f' || c == 'n' || (c >= '0' && c <= '9')) {
+            append(c);
+            state = State.SCALAR;
+        } else {
+            throw unexpected(c);
+        }
+    }
+
+    private void assign(String value) {
+        if ("EntryID".equalsIgnoreCase(key)) {
+            result.setEntryId(value);
+        } else if ("ResponseCode".equalsIgnoreCase(key)) {
+            result.setResponseCode(value);
+        } else if ("RespondMessage".equalsIgnoreCase(key)) {
+            result.setRespondMessage(value);
+        }
+    }
+
+    private void base64(int c) throws IOException {
+        if (isWhitespace(c)) {
+            return;
+        }
+        if (c == '=') {
+            padding = true;
+            return;
+        }
+        int sextet = c < 128 ? SEXTETS[c] : -1;
+        if (sextet < 0 || padding) {
+            throw new IOException("Illegal character in StreamBytes");
+        }
+        quantum = (quantum << 6) | sextet;
+        if (++quantumLength == 4) {
+            emit(quantum >> 16);
+            emit(quantum >> 8);
+            emit(quantum);
+            quantum = 0;
+            quantumLength = 0;
+        }
+    }
+
+    private void endBase64() throws IOException {
+        // Trailing partial quantum, padded or not
+        switch (quantumLength) {
+            case 0 -> { }
+            case 2 -> emit(quantum >> 4);
+            case 3 -> {
+                emit(quantum >> 10);
+                emit(quantum >> 2);
+            }
+            default -> throw new IOException("Truncated StreamBytes");
+        }
+        quantum = 0;
+        quantumLength = 0;
+        flush();
+        result.setBytesWritten(decoded);
+    }
+
+    private void emit(int b) throws IOException {
+        if (chunk == null) {
+            chunk = new byte[CHUNK_SIZE];
+        }
+        chunk[chunkLength++] = (byte) b;
+        decoded++;
+        if (chunkLength == chunk.length) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (chunkLength > 0) {
+            ByteBuffer full = ByteBuffer.wrap(chunk, 0, chunkLength);
+            chunk = null;
+            chunkLength = 0;
+            handler.onChunk(full);
+        }
+    }
+
+    private void append(int c) {
+        if (text.length() < MAX_FIELD_LENGTH) {
+            text.append((char) c);
+        }
+    }
+
+    /**
+     * Append one byte of UTF-8 string content, decoding multi-byte characters
+     * once they are complete.
+     */
+    private void appendUtf8(int c) throws IOException {
+        if (c < 0x80) {
+            endCharacter();
+            append(c);
+            return;
+        }
+        if (pendingLength == 0) {
+            // Lead byte; anything else starting a character is malformed
+            pendingExpected = c >= 0xC2 && c <= 0xDF ? 2 : c >= 0xE0 && c <= 0xEF ? 3 : c >= 0xF0 && c <= 0xF4 ? 4 : 0;
+            if (pendingExpected == 0) {
+                throw malformedUtf8();
+            }
+        }
+        pending[pendingLength++] = (byte) c;
+        if (pendingLength < pendingExpected) {
+            return;
+        }
+        pendingLength = 0;
+        try {
+            // Strict: also rejects continuation bytes out of range, overlong forms and surrogates
+            String character = utf8.decode(ByteBuffer.wrap(pending, 0, pendingExpected)).toString();
+            for (int i = 0; i < character.length(); i++) {
+                append(character.charAt(i));
+            }
+        } catch (CharacterCodingException e) {
+            throw malformedUtf8();
+        }
+    }
+
+    /**
+     * A character cut short by the end of the string, an escape or an ASCII byte.
+     */
+    private void endCharacter() throws IOException {
+        if (pendingLength > 0) {
+            throw malformedUtf8();
+        }
+    }
+
+    private static IOException malformedUtf8() {
+        return new IOException("Malformed UTF-8 in Laserfiche response");
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static IOException unexpected(int c) {
+        return new IOException("Unexpected character '" + (char) c + "' in Laserfiche response");
+    }
+}
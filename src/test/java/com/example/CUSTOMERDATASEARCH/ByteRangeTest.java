@@ -0,0 +1,47 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteRangeTest {
+
+    private static String describe(List<ByteRange> ranges) {
+        if (ranges == null) {
+            return "ignored";
+        }
+        StringBuilder out = new StringBuilder();
+        for (ByteRange range : ranges) {
+            out.append(out.isEmpty() ? "" : ",").append(range.getStart()).append('-').append(range.getEnd());
+        }
+        return out.toString();
+    }
+
+    @Test
+    void resolvesOpenClosedAndSuffixRanges() {
+        assertThat(describe(ByteRange.parse("bytes=0-99", 1000))).isEqualTo("0-99");
+        assertThat(describe(ByteRange.parse("bytes=900-", 1000))).isEqualTo("900-999");
+        assertThat(describe(ByteRange.parse("bytes=-100", 1000))).isEqualTo("900-999");
+        assertThat(describe(ByteRange.parse("bytes=-5000", 1000))).isEqualTo("0-999");
+        assertThat(describe(ByteRange.parse("bytes=990-2000", 1000))).isEqualTo("990-999");
+        assertThat(describe(ByteRange.parse("Bytes=0-0, 10-19", 1000))).isEqualTo("0-0,10-19");
+    }
+
+    @Test
+    void dropsUnsatisfiableRanges() {
+        assertThat(ByteRange.parse("bytes=1000-", 1000)).isEmpty();
+        assertThat(ByteRange.parse("bytes=-0", 1000)).isEmpty();
+        assertThat(describe(ByteRange.parse("bytes=5000-6000,0-9", 1000))).isEqualTo("0-9");
+    }
+
+    @Test
+    void ignoresMalformedOrExcessiveHeaders() {
+        assertThat(ByteRange.parse(null, 1000)).isNull();
+        assertThat(ByteRange.parse("items=0-1", 1000)).isNull();
+        assertThat(ByteRange.parse("bytes=9-5", 1000)).isNull();
+        assertThat(ByteRange.parse("bytes=abc", 1000)).isNull();
+        assertThat(ByteRange.parse("bytes=" + "0-1,".repeat(ByteRange.MAX_RANGES + 1), 1000)).isNull();
+    }
+}
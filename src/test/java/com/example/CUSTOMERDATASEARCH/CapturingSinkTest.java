@@ -0,0 +1,105 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CapturingSinkTest {
+
+    private static byte[] document(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * A client that takes nothing until released.
+     */
+    private static final class StalledClient extends OutputStream {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            received.write(b, off, len);
+        }
+    }
+
+    private static void writeInChunks(OutputStream out, byte[] content) throws IOException {
+        for (int off = 0; off < content.length; off += 1000) {
+            out.write(content, off, Math.min(1000, content.length - off));
+        }
+        out.flush();
+    }
+
+    @Test
+    void relayLetsTheFetchFinishBeforeASlowClient() throws Exception {
+        ExecutorService relay = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            StalledClient client = new StalledClient();
+            byte[] content = document(50_000);
+            CapturingSink sink = new CapturingSink(() -> client, 100_000, null, relay);
+
+            writeInChunks(sink.open(), content);
+            // The whole document is captured while the client has not taken a byte
+            assertThat(sink.getCaptured()).isEqualTo(content);
+            assertThat(client.received.size()).isZero();
+
+            client.release.countDown();
+            sink.close();
+            assertThat(client.received.toByteArray()).isEqualTo(content);
+            assertThat(sink.getDownstreamFailure()).isNull();
+        } finally {
+            relay.shutdownNow();
+        }
+    }
+
+    @Test
+    void documentsPastTheLimitAreHandedToTheClientInOrder() throws Exception {
+        ExecutorService relay = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            StalledClient client = new StalledClient();
+            byte[] content = document(50_000);
+            CapturingSink sink = new CapturingSink(() -> client, 10_000, null, relay);
+            OutputStream out = sink.open();
+
+            Thread producer = Thread.ofVirtual().start(() -> {
+                try {
+                    writeInChunks(out, content);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            // Past the limit the producer waits for the client
+            assertThat(producer.join(Duration.ofMillis(200))).isFalse();
+            client.release.countDown();
+            assertThat(producer.join(Duration.ofSeconds(5))).isTrue();
+
+            sink.close();
+            assertThat(sink.isOverflowed()).isTrue();
+            assertThat(sink.getCaptured()).isNull();
+            assertThat(client.received.toByteArray()).isEqualTo(content);
+        } finally {
+            relay.shutdownNow();
+        }
+    }
+}
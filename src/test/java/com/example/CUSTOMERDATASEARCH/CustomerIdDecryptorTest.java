@@ -0,0 +1,66 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerIdDecryptorTest {
+
+    private final CustomerIdDecryptor decryptor = new CustomerIdDecryptor(2);
+
+    private static SecretKey newKey() throws Exception {
+        KeyGenerator generator = KeyGenerator.getInstance("AES");
+        generator.init(256);
+        return generator.generateKey();
+    }
+
+    private static String encrypt(SecretKey key, String plainText) throws Exception {
+        byte[] iv = new byte[12];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        byte[] cipherText = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
+        byte[] combined = new byte[iv.length + cipherText.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(cipherText, 0, combined, iv.length, cipherText.length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(combined);
+    }
+
+    @Test
+    void decryptsLikeIntegerParseInt() throws Exception {
+        SecretKey key = newKey();
+        for (String id : new String[] { "1", "123456", "+42", "007", "-5", "2147483647", "-2147483648", "١٢٣" }) {
+            assertThat(decryptor.decrypt(encrypt(key, id), key)).as(id).isEqualTo(Integer.parseInt(id));
+        }
+        for (String bad : new String[] { "", "-", "12a", "2147483648", " 1", "9".repeat(200) }) {
+            String encryptedId = encrypt(key, bad);
+            assertThatThrownBy(() -> decryptor.decrypt(encryptedId, key)).as(bad)
+                    .isInstanceOf(NumberFormatException.class);
+        }
+    }
+
+    @Test
+    void acceptsPaddingAndRejectsMalformedInput() throws Exception {
+        SecretKey key = newKey();
+        String encryptedId = encrypt(key, "77");
+        String padded = encryptedId + "=".repeat((4 - encryptedId.length() % 4) % 4);
+        assertThat(decryptor.decrypt(padded, key)).isEqualTo(77);
+
+        assertThat(decryptor.decrypt("AAAA", key)).isEqualTo(-1);
+        assertThatThrownBy(() -> decryptor.decrypt("not+base64url", key)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> decryptor.decrypt(encryptedId, newKey())).isInstanceOf(AEADBadTagException.class);
+
+        // A failed call leaves its pooled cipher usable
+        assertThat(decryptor.decrypt(encryptedId, key)).isEqualTo(77);
+    }
+}
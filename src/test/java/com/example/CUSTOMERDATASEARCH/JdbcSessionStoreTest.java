@@ -0,0 +1,120 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two nodes sharing an embedded H2 database in place of the real one.
+ */
+class JdbcSessionStoreTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long START = 1_000_000_000;
+
+    private final JdbcDataSource dataSource = new JdbcDataSource();
+    private final byte[] secret = new byte[32];
+    private final SecretKey key = new SecretKeySpec(new byte[] {
+            1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16}, "AES");
+
+    JdbcSessionStoreTest() {
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+    }
+
+    private JdbcSessionStore node() {
+        return new JdbcSessionStore(dataSource, secret, 100, Duration.ofMinutes(30), START);
+    }
+
+    private long storedLastAccess(String sessionId) {
+        return new JdbcTemplate(dataSource).queryForObject(
+                "SELECT last_access FROM customer_session WHERE session_id = ?", Long.class, sessionId);
+    }
+
+    @Test
+    void servesFromNearCacheAndSeesRemovalsFromOtherNodes() {
+        JdbcSessionStore first = node();
+        JdbcSessionStore second = node();
+        first.save("s1", key, START);
+        first.save("s2", key, START);
+
+        assertThat(second.lookup("s1", START + 1).getEncoded()).isEqualTo(key.getEncoded());
+        assertThat(second.lookup("s2", START + 1)).isNotNull();
+        assertThat(second.getNearCacheSize()).isEqualTo(2);
+
+        // Row gone behind its back: still answered locally
+        new JdbcTemplate(dataSource).update("DELETE FROM customer_session WHERE session_id = 's2'");
+        assertThat(second.lookup("s2", START + 2)).isNotNull();
+
+        first.remove("s1", START + 3);
+        assertThat(second.lookup("s1", START + 4)).isNotNull();
+        second.sweep(START + 5);
+        assertThat(second.lookup("s1", START + 6)).isNull();
+        assertThat(second.count()).isZero();
+    }
+
+    @Test
+    void batchesLastAccessAndHonoursUseOnOtherNodes() {
+        JdbcSessionStore first = node();
+        JdbcSessionStore second = node();
+        first.save("s", key, START);
+        assertThat(first.lookup("s", START)).isNotNull();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(second.lookup("s", START + 20 * MINUTE + i)).isNotNull();
+        }
+        assertThat(storedLastAccess("s")).isEqualTo(START);
+        second.sweep(START + 20 * MINUTE + 100);
+        assertThat(storedLastAccess("s")).isEqualTo(START + 20 * MINUTE);
+
+        // The first node's copy looks expired, but the session was used on the second
+        assertThat(first.lookup("s", START + 31 * MINUTE)).isNotNull();
+        assertThat(first.lookup("s", START + 62 * MINUTE)).isNull();
+        assertThat(second.lookup("s", START + 62 * MINUTE)).isNull();
+    }
+
+    @Test
+    void remembersUnknownSessionIdsBriefly() {
+        JdbcSessionStore first = new JdbcSessionStore(dataSource, secret, 100, Duration.ofSeconds(5),
+                Duration.ofMinutes(30), START);
+        JdbcSessionStore second = node();
+        assertThat(first.lookup("s", START)).isNull();
+
+        // Saved elsewhere: this node keeps its answer until the miss expires
+        second.save("s", key, START + 1);
+        assertThat(first.lookup("s", START + 2)).isNull();
+        assertThat(first.lookup("s", START + 5_000)).isNotNull();
+
+        // A save on this node is seen at once
+        assertThat(first.lookup("t", START + 5_001)).isNull();
+        first.save("t", key, START + 5_002);
+        assertThat(first.lookup("t", START + 5_003)).isNotNull();
+    }
+
+    private SessionService statelessNode() {
+        SessionTokenSealer sealer = new SessionTokenSealer(
+                secret, Duration.ofMinutes(10), Duration.ofMinutes(30), 100, () -> START);
+        return new SessionService(node(), Duration.ofSeconds(5), () -> START, false, sealer);
+    }
+
+    @Test
+    void sharesRevokedTokensWithOtherNodesAndLateStarters() {
+        SessionService first = statelessNode();
+        SessionService second = statelessNode();
+        String token = first.createSession(key);
+        assertThat(second.getSessionKey(token)).isNotNull();
+
+        first.removeSession(token);
+        assertThat(first.getSessionKey(token)).isNull();
+        second.cleanupExpiredSessions();
+        assertThat(second.getSessionKey(token)).isNull();
+
+        assertThat(statelessNode().getSessionKey(token)).isNull();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.KeyAgreement;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyControllerTest {
+
+    private final KeyController keys = new KeyController(
+            new RsaKeyRing(null, null, 0, Duration.ZERO, Duration.ZERO, Duration.ZERO, System::currentTimeMillis));
+
+    private static KeyPair clientPair(String protocol) throws GeneralSecurityException {
+        if (KeyController.ECDH_X25519.equals(protocol)) {
+            return KeyPairGenerator.getInstance("X25519").generateKeyPair();
+        }
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+
+    @Test
+    void clientDerivesTheSameSessionKeyOnBothCurves() throws Exception {
+        for (String protocol : new String[] {KeyController.ECDH_X25519, KeyController.ECDH_P256}) {
+            KeyPair client = clientPair(protocol);
+            byte[] clientSpki = client.getPublic().getEncoded();
+            KeyController.EcdhAgreement agreement = keys.agreeEcdh(protocol, clientSpki);
+
+            // What index.html does with WebCrypto
+            boolean x25519 = KeyController.ECDH_X25519.equals(protocol);
+            KeyAgreement clientAgreement = KeyAgreement.getInstance(x25519 ? "XDH" : "ECDH");
+            clientAgreement.init(client.getPrivate());
+            clientAgreement.doPhase(KeyFactory.getInstance(x25519 ? "XDH" : "EC")
+                    .generatePublic(new X509EncodedKeySpec(agreement.serverPublicKey())), true);
+            byte[] serverSpki = agreement.serverPublicKey();
+            byte[] salt = new byte[clientSpki.length + serverSpki.length];
+            System.arraycopy(clientSpki, 0, salt, 0, clientSpki.length);
+            System.arraycopy(serverSpki, 0, salt, clientSpki.length, serverSpki.length);
+            byte[] clientKey = Hkdf.sha256(salt, clientAgreement.generateSecret(),
+                    "customerdatasearch session key".getBytes(StandardCharsets.US_ASCII), 32);
+
+            assertThat(agreement.aesKey().getEncoded()).as(protocol).isEqualTo(clientKey);
+        }
+
+        byte[] p256Key = clientPair(KeyController.ECDH_P256).getPublic().getEncoded();
+        assertThatThrownBy(() -> keys.agreeEcdh(KeyController.ECDH_X25519, p256Key))
+                .isInstanceOf(GeneralSecurityException.class);
+    }
+
+    @Test
+    void hkdfMatchesRfc5869() {
+        HexFormat hex = HexFormat.of();
+        byte[] okm = Hkdf.sha256(hex.parseHex("000102030405060708090a0b0c"),
+                hex.parseHex("0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b0b"),
+                hex.parseHex("f0f1f2f3f4f5f6f7f8f9"), 42);
+        assertThat(hex.formatHex(okm)).isEqualTo(
+                "3cb25f25faacd57a90434f64d0362f2a2d2d0a90cf1a5a4c5db02d56ecc4c5bf34007208d5b887185865");
+    }
+}
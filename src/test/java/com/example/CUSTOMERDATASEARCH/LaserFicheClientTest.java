@@ -0,0 +1,110 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LaserFicheClientTest {
+
+    private final LaserFicheClient client = new LaserFicheClient(new RestTemplate());
+
+    private static InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void decodesStreamBytesIntoSink() throws Exception {
+        byte[] pdf = new byte[256 * 1024 + 7];
+        new Random(42).nextBytes(pdf);
+        String body = "{\"EntryID\":\"991\",\"ResponseCode\":\"200\",\"RespondMessage\":\"Success\","
+                + "\"StreamBytes\":\"" + Base64.getEncoder().encodeToString(pdf) + "\"}";
+
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        LaserFicheClient.FetchResult result = client.readResponse(1, json(body), () -> sink);
+
+        assertThat(result.hasDocument()).isTrue();
+        assertThat(result.getEntryId()).isEqualTo("991");
+        assertThat(result.getBytesWritten()).isEqualTo(pdf.length);
+        assertThat(sink.toByteArray()).isEqualTo(pdf);
+    }
+
+    @Test
+    void acceptsCamelCaseFieldsAndMissingPadding() throws Exception {
+        String body = "{\"responseCode\":\"0\",\"streamBytes\":\"JVBERi0\"}";
+
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        LaserFicheClient.FetchResult result = client.readResponse(1, json(body), () -> sink);
+
+        assertThat(result.isSuccess()).isTrue();
+        assertThat(sink.toString(StandardCharsets.US_ASCII)).isEqualTo("%PDF-");
+    }
+
+    @Test
+    void doesNotOpenSinkForErrorsOrEmptyDocuments() throws Exception {
+        String error = "{\"ResponseCode\":\"404\",\"RespondMessage\":\"Not found\",\"StreamBytes\":\"JVBERi0=\"}";
+        String empty = "{\"ResponseCode\":\"200\",\"StreamBytes\":\"\"}";
+
+        LaserFicheClient.FetchResult failed = client.readResponse(1, json(error), () -> {
+            throw new AssertionError("sink opened for an error response");
+        });
+        LaserFicheClient.FetchResult blank = client.readResponse(1, json(empty), () -> {
+            throw new AssertionError("sink opened for an empty document");
+        });
+
+        assertThat(failed.isSuccess()).isFalse();
+        assertThat(failed.getRespondMessage()).isEqualTo("Not found");
+        assertThat(blank.hasDocument()).isFalse();
+    }
+
+    @Test
+    void splitsTimeBetweenUpstreamDecodeAndSink() throws Exception {
+        byte[] pdf = new byte[64 * 1024];
+        new Random(7).nextBytes(pdf);
+        String body = "{\"ResponseCode\":\"200\",\"StreamBytes\":\"" + Base64.getEncoder().encodeToString(pdf) + "\"}";
+        // A Laserfiche that takes its time over every read, and a client that does too
+        InputStream slowBody = new FilterInputStream(json(body)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                sleep(2);
+                return super.read(b, off, Math.min(len, 8192));
+            }
+        };
+        OutputStream slowClient = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                sleep(2);
+            }
+        };
+
+        LaserFicheClient.FetchResult result = client.readResponse(1, slowBody, () -> slowClient);
+
+        long reads = body.length() / 8192;
+        assertThat(result.getUpstreamNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(2 * reads));
+        assertThat(result.getSinkNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(2));
+        assertThat(result.getDecodeNanos()).isPositive().isLessThan(result.getUpstreamNanos());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LaserFicheGuardTest {
+
+    private static final long FAST = Duration.ofMillis(100).toNanos();
+    private static final long SLOW = Duration.ofSeconds(10).toNanos();
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private LaserFicheGuard guard(int initialLimit) {
+        // No queue: over the limit is refused at once
+        return new LaserFicheGuard(initialLimit, 1, 10, 0, Duration.ZERO, Duration.ofSeconds(5), 0.5, 10, 4, 0.5,
+                Duration.ofSeconds(30), now::get);
+    }
+
+    @Test
+    void refusesOverTheLimitAndAdaptsToLatency() {
+        LaserFicheGuard guard = guard(4);
+        List<LaserFicheGuard.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            permits.add(guard.acquire());
+        }
+        assertThatThrownBy(guard::acquire)
+                .isInstanceOfSatisfying(LaserFicheUnavailableException.class, e -> {
+                    assertThat(e.getReason()).isEqualTo(LaserFicheGuard.REASON_LIMIT);
+                    assertThat(e.getRetryAfterSeconds()).isEqualTo(1);
+                });
+
+        // Slow answers halve the limit each time, down to the minimum
+        permits.forEach(permit -> permit.completed(SLOW));
+        assertThat(guard.getLimit()).isEqualTo(1);
+        assertThat(guard.getInFlight()).isZero();
+
+        // Fast answers grow it again, but only while it is in use: one call at a time stops at 2.5
+        for (int i = 0; i < 6; i++) {
+            guard.acquire().completed(FAST);
+        }
+        assertThat(guard.getLimit()).isEqualTo(2.5);
+        assertThat(guard.getState()).isEqualTo(LaserFicheGuard.CircuitState.CLOSED);
+    }
+
+    @Test
+    void opensOnFailuresAndClosesAfterATrialCall() {
+        LaserFicheGuard guard = guard(10);
+        guard.acquire().completed(FAST);
+        guard.acquire().completed(FAST);
+        guard.acquire().failed(SLOW);
+        assertThat(guard.getState()).isEqualTo(LaserFicheGuard.CircuitState.CLOSED);
+        guard.acquire().failed(SLOW);
+        assertThat(guard.getState()).isEqualTo(LaserFicheGuard.CircuitState.OPEN);
+
+        now.addAndGet(10_000);
+        assertThatThrownBy(guard::acquire)
+                .isInstanceOfSatisfying(LaserFicheUnavailableException.class, e -> {
+                    assertThat(e.getReason()).isEqualTo(LaserFicheGuard.REASON_CIRCUIT_OPEN);
+                    assertThat(e.getRetryAfterSeconds()).isEqualTo(20);
+                });
+
+        // One trial at a time once the open period is over
+        now.addAndGet(20_000);
+        LaserFicheGuard.Permit trial = guard.acquire();
+        assertThat(guard.getState()).isEqualTo(LaserFicheGuard.CircuitState.HALF_OPEN);
+        assertThatThrownBy(guard::acquire).isInstanceOf(LaserFicheUnavailableException.class);
+        trial.failed(SLOW);
+        assertThat(guard.getState()).isEqualTo(LaserFicheGuard.CircuitState.OPEN);
+
+        now.addAndGet(30_000);
+        guard.acquire().cancelled();
+        guard.acquire().completed(FAST);
+        assertThat(guard.getState()).isEqualTo(LaserFicheGuard.CircuitState.CLOSED);
+        assertThat(guard.getStats()).containsEntry("rejectedByCircuit", 2L);
+    }
+
+    @Test
+    void queuesABurstOverTheLimitBriefly() {
+        // Limit fixed at one, one place in the queue
+        LaserFicheGuard guard = new LaserFicheGuard(1, 1, 1, 1, Duration.ofSeconds(5), Duration.ofSeconds(5), 0.5,
+                10, 1, 0.5, Duration.ofSeconds(30), now::get);
+        LaserFicheGuard.Permit first = guard.acquire();
+        CompletableFuture<LaserFicheGuard.Permit> waiting = guard.acquireAsync();
+        assertThat(waiting).isNotDone();
+        assertThat(guard.getWaiting()).isEqualTo(1);
+        assertThat(guard.acquireAsync()).isCompletedExceptionally();
+
+        first.completed(FAST);
+        assertThat(waiting).isCompleted();
+        assertThat(guard.getInFlight()).isEqualTo(1);
+
+        // Whoever is still waiting when the circuit opens is turned away
+        CompletableFuture<LaserFicheGuard.Permit> turnedAway = guard.acquireAsync();
+        waiting.join().failed(SLOW);
+        assertThat(guard.getState()).isEqualTo(LaserFicheGuard.CircuitState.OPEN);
+        assertThatThrownBy(turnedAway::join)
+                .hasCauseInstanceOf(LaserFicheUnavailableException.class);
+        assertThat(guard.getInFlight()).isZero();
+        assertThat(guard.getStats()).containsEntry("queued", 2L).containsEntry("rejectedByLimit", 1L);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LaserFicheHealthProberTest {
+
+    private static long millis(long value) {
+        return Duration.ofMillis(value).toNanos();
+    }
+
+    @Test
+    void summarisesTheLastProbesAndGoesDownAfterRepeatedFailures() {
+        LaserFicheHealthProber prober = new LaserFicheHealthProber(5, 2, () -> 0L);
+        assertThat(prober.health().getStatus()).isEqualTo(Status.UNKNOWN);
+        // One failure is no verdict yet
+        prober.record(503, null, millis(30));
+        assertThat(prober.health().getStatus()).isEqualTo(Status.UNKNOWN);
+
+        prober.record(405, null, millis(10));
+        prober.record(200, null, millis(40));
+        prober.record(503, null, millis(20));
+        LaserFicheHealthProber.Snapshot snapshot = prober.getSnapshot();
+        assertThat(snapshot.status()).isEqualTo(Status.UP);
+        assertThat(snapshot.details())
+                .containsEntry("latencyP50Ms", 20.0)
+                .containsEntry("latencyMaxMs", 40.0)
+                .containsEntry("probes", 4)
+                .containsEntry("consecutiveFailures", 1)
+                .containsEntry("errorRate", 0.5);
+
+        prober.record(LaserFicheHealthProber.NO_RESPONSE, "Not accessible - Network error: timed out", millis(5000));
+        assertThat(prober.health().getStatus()).isEqualTo(Status.DOWN);
+        assertThat(prober.getSnapshot().connectivity()).startsWith("Not accessible");
+
+        // The oldest probe leaves the window; one success is enough to come back
+        prober.record(401, null, millis(30));
+        snapshot = prober.getSnapshot();
+        assertThat(snapshot.status()).isEqualTo(Status.UP);
+        assertThat(snapshot.connectivity()).isEqualTo("Connected - Authentication failed");
+        assertThat(snapshot.details()).containsEntry("probes", 5).containsEntry("errorRate", 0.4);
+    }
+}
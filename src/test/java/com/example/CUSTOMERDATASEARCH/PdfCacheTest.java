@@ -0,0 +1,95 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PdfCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static PdfDocument document(int size, byte fill) {
+        byte[] content = new byte[size];
+        Arrays.fill(content, fill);
+        return new PdfDocument(content, "entry-" + fill, System.currentTimeMillis());
+    }
+
+    private PdfCache cache(long maxBytes, Duration ttl, boolean disk) throws Exception {
+        return new PdfCache(true, DataSize.ofBytes(maxBytes), DataSize.ofBytes(maxBytes), ttl,
+                disk, tempDir.toString(), DataSize.ofMegabytes(1), "");
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedByBytes() throws Exception {
+        PdfCache cache = cache(3000, Duration.ofMinutes(1), false);
+        cache.put("1", document(1000, (byte) 1));
+        cache.put("2", document(1000, (byte) 2));
+        cache.put("3", document(1000, (byte) 3));
+        cache.get("1");
+
+        cache.put("4", document(1000, (byte) 4));
+
+        assertThat(cache.get("2")).isNull();
+        assertThat(cache.get("1")).isNotNull();
+        assertThat(cache.getMemoryBytes()).isEqualTo(3000);
+        assertThat(cache.getStats()).containsEntry("evictions", 1L);
+    }
+
+    @Test
+    void skipsOversizedEntriesAndExpiresOldOnes() throws Exception {
+        PdfCache cache = cache(1000, Duration.ZERO, false);
+        cache.put("big", document(1001, (byte) 1));
+        assertThat(cache.getMemoryEntryCount()).isZero();
+
+        cache.put("old", new PdfDocument(new byte[10], null, System.currentTimeMillis() - 5));
+        assertThat(cache.get("old")).isNull();
+        assertThat(cache.getStats()).containsEntry("expirations", 1L);
+    }
+
+    @Test
+    void spillsToEncryptedDiskAndPromotesBack() throws Exception {
+        PdfCache cache = cache(1000, Duration.ofMinutes(1), true);
+        PdfDocument first = document(800, (byte) 'A');
+        cache.put("1", first);
+        cache.put("2", document(800, (byte) 'B'));
+
+        Path entries = tempDir.resolve("entries");
+        try (Stream<Path> files = Files.list(entries)) {
+            Path spilled = files.findFirst().orElseThrow();
+            byte[] onDisk = Files.readAllBytes(spilled);
+            assertThat(spilled.getFileName().toString()).matches("[0-9a-f]{64}\\.bin");
+            // Not the plain SHA-256 of the key, which anyone could recompute
+            assertThat(spilled.getFileName().toString()).doesNotStartWith(
+                    HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest("1".getBytes())));
+            assertThat(Files.getPosixFilePermissions(entries)).isEqualTo(PosixFilePermissions.fromString("rwx------"));
+            assertThat(Files.getPosixFilePermissions(spilled)).isEqualTo(PosixFilePermissions.fromString("rw-------"));
+            // 800 plaintext 'A's would be hard to miss
+            assertThat(new String(onDisk)).doesNotContain("AAAAAAAA");
+        }
+
+        PdfDocument promoted = cache.get("1");
+        assertThat(promoted.getContent()).isEqualTo(first.getContent());
+        assertThat(promoted.getContentHash()).isEqualTo(first.getContentHash());
+        assertThat(promoted.getEntryId()).isEqualTo("entry-65");
+        assertThat(cache.getStats()).containsEntry("diskHits", 1L);
+    }
+
+    @Test
+    void leavesOtherFilesInTheDiskDirectoryAlone() throws Exception {
+        Path unrelated = Files.writeString(tempDir.resolve("report.bin"), "keep me");
+        cache(1000, Duration.ofMinutes(1), true);
+        assertThat(unrelated).exists();
+    }
+}
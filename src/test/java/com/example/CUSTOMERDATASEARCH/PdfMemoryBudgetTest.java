@@ -0,0 +1,63 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PdfMemoryBudgetTest {
+
+    @Test
+    void queuesInOrderForRoomAndRefusesBeyondTheQueue() {
+        PdfMemoryBudget budget = new PdfMemoryBudget(1000, 200, 2, Duration.ofMinutes(1));
+        PdfMemoryBudget.Reservation first = budget.reserve(600);
+        CompletableFuture<PdfMemoryBudget.Reservation> large = budget.reserveAsync(700);
+        // Would fit, but waits behind the larger request
+        CompletableFuture<PdfMemoryBudget.Reservation> small = budget.reserveAsync(100);
+        assertThat(large).isNotDone();
+        assertThat(small).isNotDone();
+        assertThatThrownBy(() -> budget.reserve(1))
+                .isInstanceOf(LaserFicheUnavailableException.class)
+                .hasMessageContaining(PdfMemoryBudget.REASON_MEMORY);
+
+        // A fetch already admitted may grow into whatever is free, without queueing
+        assertThat(first.growTo(900)).isTrue();
+        assertThat(first.growTo(1100)).isFalse();
+        assertThat(first.getBytes()).isEqualTo(900);
+
+        first.close();
+        first.close();
+        assertThat(large.join().getBytes()).isEqualTo(700);
+        assertThat(small.join().getBytes()).isEqualTo(100);
+        assertThat(budget.getReservedBytes()).isEqualTo(800);
+        assertThat(budget.getStats())
+                .containsEntry("queued", 2L)
+                .containsEntry("rejectedQueueFull", 1L)
+                .containsEntry("growthRefused", 1L);
+
+        // Unknown sizes get the default; documents too large to keep need nothing
+        assertThat(budget.expectedBytes(-1, 500)).isEqualTo(200);
+        assertThat(budget.expectedBytes(300, 500)).isEqualTo(300);
+        assertThat(budget.expectedBytes(900, 500)).isZero();
+    }
+
+    @Test
+    void givesUpWaitingAfterMaxWait() {
+        PdfMemoryBudget budget = new PdfMemoryBudget(1000, 200, 10, Duration.ofMillis(50));
+        PdfMemoryBudget.Reservation held = budget.reserve(1000);
+        assertThatThrownBy(() -> budget.reserve(10))
+                .isInstanceOf(LaserFicheUnavailableException.class)
+                .satisfies(e -> assertThat(((LaserFicheUnavailableException) e).getRetryAfterSeconds()).isEqualTo(1));
+        assertThat(budget.getWaiting()).isZero();
+
+        held.close();
+        try (PdfMemoryBudget.Reservation reservation = budget.reserve(10)) {
+            assertThat(reservation.getBytes()).isEqualTo(10);
+        }
+        assertThat(budget.getReservedBytes()).isZero();
+        assertThat(budget.getStats()).containsEntry("rejectedTimeout", 1L);
+    }
+}
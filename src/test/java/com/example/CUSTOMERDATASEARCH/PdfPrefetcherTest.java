@@ -0,0 +1,76 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PdfPrefetcherTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private PdfPrefetcher prefetcher(int concurrency, long maxBytes) {
+        return new PdfPrefetcher(concurrency, maxBytes, maxBytes, 4, Duration.ofSeconds(30), now::get, false);
+    }
+
+    private static PdfDocument pdf(int size) {
+        return new PdfDocument(new byte[size], "entry", System.currentTimeMillis());
+    }
+
+    @Test
+    void handsTheDocumentToTheSessionOnce() {
+        PdfPrefetcher prefetcher = prefetcher(2, 1000);
+        CompletableFuture<PdfDocument> fetch = new CompletableFuture<>();
+        prefetcher.prefetch("s1", "42|PDF", () -> fetch);
+        // A second reference while the first is in flight starts nothing
+        prefetcher.prefetch("s1", "42|PDF", () -> { throw new AssertionError("fetched twice"); });
+
+        assertThat(prefetcher.take("s1", "42|PDF")).isNull();
+        PdfDocument document = pdf(400);
+        fetch.complete(document);
+        assertThat(prefetcher.getHeldBytes()).isEqualTo(400);
+
+        assertThat(prefetcher.take("s2", "42|PDF")).isNull();
+        assertThat(prefetcher.take("s1", "42|PDF")).isSameAs(document);
+        assertThat(prefetcher.take("s1", "42|PDF")).isNull();
+        assertThat(prefetcher.getHeldBytes()).isZero();
+        assertThat(prefetcher.getStats())
+                .containsEntry("hits", 1L)
+                .containsEntry("pending", 1L)
+                .containsEntry("misses", 2L)
+                .containsEntry("hitRatio", 1.0);
+    }
+
+    @Test
+    void staysWithinItsBoundsAndDropsWhatNobodyTook() {
+        PdfPrefetcher prefetcher = prefetcher(1, 1000);
+        CompletableFuture<PdfDocument> first = new CompletableFuture<>();
+        prefetcher.prefetch("s1", "1|PDF", () -> first);
+        // No free slot: not prefetched at all
+        prefetcher.prefetch("s1", "2|PDF", () -> { throw new AssertionError("over concurrency"); });
+        first.complete(pdf(800));
+
+        // Over the byte budget: fetched but not kept
+        prefetcher.prefetch("s1", "3|PDF", () -> CompletableFuture.completedFuture(pdf(300)));
+        assertThat(prefetcher.take("s1", "3|PDF")).isNull();
+        assertThat(prefetcher.getHeldBytes()).isEqualTo(800);
+
+        // Closing the session frees its buffer, and a fetch landing afterwards keeps nothing
+        CompletableFuture<PdfDocument> late = new CompletableFuture<>();
+        prefetcher.prefetch("s1", "4|PDF", () -> late);
+        prefetcher.cancelSession("s1");
+        late.complete(pdf(100));
+        assertThat(prefetcher.getHeldBytes()).isZero();
+        assertThat(prefetcher.getInFlight()).isZero();
+
+        // Unclaimed documents expire
+        prefetcher.prefetch("s2", "5|PDF", () -> CompletableFuture.completedFuture(pdf(100)));
+        now.addAndGet(31_000);
+        prefetcher.sweep();
+        assertThat(prefetcher.getHeldBytes()).isZero();
+        assertThat(prefetcher.take("s2", "5|PDF")).isNull();
+    }
+}
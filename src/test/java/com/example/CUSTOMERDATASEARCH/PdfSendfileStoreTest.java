@@ -0,0 +1,109 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PdfSendfileStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private static PdfDocument pdf(int size, int fill) {
+        byte[] content = new byte[size];
+        Arrays.fill(content, (byte) fill);
+        return new PdfDocument(content, "entry", System.currentTimeMillis());
+    }
+
+    @Test
+    void handsTheConnectorAFileWrittenOnce() throws Exception {
+        PdfSendfileStore store = new PdfSendfileStore(dir, 1000, 100, Duration.ofMinutes(10), now::get, false);
+        PdfDocument document = pdf(400, 1);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        // Not a connector that can sendfile: the caller writes the body
+        assertThat(store.serve(request, document, 0, 400)).isFalse();
+        assertThat(request.getAttribute(PdfSendfileStore.SENDFILE_FILENAME_ATTR)).isNull();
+
+        request.setAttribute(PdfSendfileStore.SENDFILE_SUPPORTED_ATTR, Boolean.TRUE);
+        assertThat(store.serve(request, pdf(50, 2), 0, 50)).isFalse();
+        assertThat(store.serve(request, document, 100, 200)).isTrue();
+        Path file = Path.of((String) request.getAttribute(PdfSendfileStore.SENDFILE_FILENAME_ATTR));
+        assertThat(Files.readAllBytes(file)).isEqualTo(document.getContent());
+        assertThat(file.getFileName().toString()).doesNotContain("entry");
+        assertThat(request.getAttribute(PdfSendfileStore.SENDFILE_START_ATTR)).isEqualTo(100L);
+        assertThat(request.getAttribute(PdfSendfileStore.SENDFILE_END_ATTR)).isEqualTo(300L);
+
+        assertThat(store.locate(document)).isEqualTo(file);
+        assertThat(store.getStats())
+                .containsEntry("writes", 1L)
+                .containsEntry("responses", 1L)
+                .containsEntry("sentBytes", 200L)
+                .containsEntry("unsupported", 1L);
+    }
+
+    @Test
+    void deletesEvictedAndExpiredFilesAfterAGracePeriod() throws Exception {
+        PdfSendfileStore store = new PdfSendfileStore(dir, 1000, 1, Duration.ofMinutes(10), now::get, false);
+        Path first = store.locate(pdf(600, 1));
+        Path second = store.locate(pdf(600, 2));
+        assertThat(store.getFileCount()).isEqualTo(1);
+        assertThat(store.getBytes()).isEqualTo(600);
+
+        // The connector may still be about to open the evicted file
+        store.sweep();
+        assertThat(first).exists();
+        now.addAndGet(Duration.ofSeconds(30).toMillis());
+        store.sweep();
+        assertThat(first).doesNotExist();
+        assertThat(second).exists();
+
+        now.addAndGet(Duration.ofMinutes(10).toMillis());
+        store.sweep();
+        assertThat(store.getFileCount()).isZero();
+        now.addAndGet(Duration.ofSeconds(30).toMillis());
+        store.sweep();
+        assertThat(second).doesNotExist();
+
+        store.locate(pdf(600, 3));
+        store.destroy();
+        try (var files = Files.list(dir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void keepsThePlaintextCopiesOwnerOnly() throws Exception {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Files.setPosixFilePermissions(dir, PosixFilePermissions.fromString("rwxr-xr-x"));
+
+        PdfSendfileStore store = new PdfSendfileStore(dir, 1000, 1, Duration.ofMinutes(10), now::get, false);
+        Path file = store.locate(pdf(400, 1));
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(dir))).isEqualTo("rwx------");
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file))).isEqualTo("rw-------");
+        store.destroy();
+    }
+
+    @Test
+    void refusesToStartWithoutAnExplicitDirectory() {
+        assertThatThrownBy(() -> new PdfSendfileStore("", DataSize.ofMegabytes(1), DataSize.ofBytes(1),
+                Duration.ofMinutes(10)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("pdf.sendfile.dir");
+    }
+}
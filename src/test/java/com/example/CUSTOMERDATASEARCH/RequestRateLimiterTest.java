@@ -0,0 +1,90 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    public static class Handlers {
+        @RateLimited("download")
+        public void download() {}
+
+        public void unlimited() {}
+    }
+
+    private static HandlerMethod handler(String name) throws NoSuchMethodException {
+        return new HandlerMethod(new Handlers(), Handlers.class.getMethod(name));
+    }
+
+    private RequestRateLimiter limiter(String perSession, String perClient) {
+        return new RequestRateLimiter(Map.of("download", new RequestRateLimiter.Limit[] {
+                RequestRateLimiter.Limit.parse(perSession), RequestRateLimiter.Limit.parse(perClient)}),
+                now::get, null);
+    }
+
+    private static MockHttpServletRequest request(String sessionId, String client) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/customers/download/x");
+        request.setParameter("sessionId", sessionId);
+        request.setRemoteAddr(client);
+        return request;
+    }
+
+    private MockHttpServletResponse call(RequestRateLimiter limiter, String handler, String sessionId, String client)
+            throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        boolean allowed = limiter.preHandle(request(sessionId, client), response, handler(handler));
+        assertThat(allowed).isEqualTo(response.getStatus() == 200);
+        return response;
+    }
+
+    @Test
+    void refusesASessionOverItsLimitWith429AndRefills() throws Exception {
+        RequestRateLimiter limiter = limiter("3/3s", "0");
+        for (int i = 0; i < 3; i++) {
+            assertThat(call(limiter, "download", "s1", "10.0.0.1").getStatus()).isEqualTo(200);
+        }
+        MockHttpServletResponse refused = call(limiter, "download", "s1", "10.0.0.1");
+        assertThat(refused.getStatus()).isEqualTo(429);
+        assertThat(refused.getHeader(RequestRateLimiter.LIMIT_HEADER)).isEqualTo("3");
+        assertThat(refused.getHeader(RequestRateLimiter.REMAINING_HEADER)).isEqualTo("0");
+        assertThat(refused.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+
+        // Other sessions and unmarked methods are not affected
+        assertThat(call(limiter, "download", "s2", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(call(limiter, "unlimited", "s1", "10.0.0.1").getStatus()).isEqualTo(200);
+
+        // One request's worth refills per second
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertThat(call(limiter, "download", "s1", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(call(limiter, "download", "s1", "10.0.0.1").getStatus()).isEqualTo(429);
+        assertThat(limiter.getStats()).containsEntry("download", Map.of("session", 2L, "client", 0L));
+    }
+
+    @Test
+    void limitsAClientAcrossSessionsAndSweepsRefilledBuckets() throws Exception {
+        RequestRateLimiter limiter = limiter("10/1m", "2/1m");
+        assertThat(call(limiter, "download", "s1", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(call(limiter, "download", "s2", "10.0.0.1").getStatus()).isEqualTo(200);
+        assertThat(call(limiter, "download", "s3", "10.0.0.1").getStatus()).isEqualTo(429);
+        assertThat(call(limiter, "download", "s3", "10.0.0.2").getStatus()).isEqualTo(200);
+        // s3's first refused request never reached its session bucket
+        assertThat(limiter.getBucketCount()).isEqualTo(5);
+
+        limiter.sweep();
+        assertThat(limiter.getBucketCount()).isEqualTo(5);
+        now.addAndGet(Duration.ofMinutes(1).toNanos());
+        limiter.sweep();
+        assertThat(limiter.getBucketCount()).isZero();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RsaKeyRingTest {
+
+    private static final long HOUR = 3_600_000;
+
+    @TempDir
+    Path keystore;
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000);
+    private final byte[] secret = new byte[32];
+
+    private RsaKeyRing ring() {
+        // Scheduled rotation and refresh off; the test drives them by hand
+        return new RsaKeyRing(keystore, secret, 1, Duration.ZERO, Duration.ofHours(1), Duration.ZERO, now::get);
+    }
+
+    private static void awaitSpare(RsaKeyRing keys) throws InterruptedException {
+        for (int i = 0; i < 300 && keys.spareCount() == 0; i++) {
+            Thread.sleep(100);
+        }
+        assertThat(keys.spareCount()).isEqualTo(1);
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(keystore)) {
+            return files.map(path -> path.getFileName().toString()).filter(name -> name.endsWith(".key"))
+                    .sorted().toList();
+        }
+    }
+
+    @Test
+    void restartServesTheSameKeyWithoutGenerating() throws Exception {
+        RsaKeyRing first = ring();
+        RsaKeyRing.KeyEntry current = first.current();
+        awaitSpare(first);
+        first.destroy();
+        assertThat(files()).hasSize(2);
+
+        RsaKeyRing second = ring();
+        // Loaded, not generated: available immediately
+        assertThat(second.find(current.keyId())).isNotNull();
+        assertThat(second.current().keyPair().getPublic()).isEqualTo(current.keyPair().getPublic());
+        assertThat(second.spareCount()).isEqualTo(1);
+        second.destroy();
+    }
+
+    @Test
+    void rotationKeepsTheOldKeyForTheGraceWindow() throws Exception {
+        RsaKeyRing keys = ring();
+        String oldId = keys.current().keyId();
+        awaitSpare(keys);
+
+        keys.rotate();
+        String newId = keys.current().keyId();
+        assertThat(newId).isNotEqualTo(oldId);
+        assertThat(keys.find(oldId)).isNotNull();
+        assertThat(files()).anyMatch(name -> name.startsWith("retired-" + oldId));
+
+        now.addAndGet(HOUR);
+        assertThat(keys.find(oldId)).isNull();
+        assertThat(keys.find(newId)).isNotNull();
+
+        keys.rotate();
+        assertThat(files()).noneMatch(name -> name.contains(oldId));
+        assertThat(files()).anyMatch(name -> name.equals("current-" + keys.current().keyId() + ".key"));
+        keys.destroy();
+    }
+
+    @Test
+    void nodesSharingAKeystoreFollowTheOneWriter() throws Exception {
+        RsaKeyRing writer = ring();
+        String firstId = writer.current().keyId();
+        awaitSpare(writer);
+
+        RsaKeyRing reader = ring();
+        assertThat(reader.current().keyId()).isEqualTo(firstId);
+        assertThat(reader.spareCount()).isZero();
+        reader.rotate();
+        assertThat(files()).contains("current-" + firstId + ".key");
+
+        writer.rotate();
+        String secondId = writer.current().keyId();
+        // A client that got the new key from the writer, before the reader's next refresh
+        assertThat(reader.find(secondId)).isNotNull();
+        assertThat(reader.current().keyId()).isEqualTo(secondId);
+        assertThat(reader.find(firstId)).isNotNull();
+
+        // The writer stops and the reader takes over rotation
+        writer.destroy();
+        reader.refresh();
+        assertThat(reader.spareCount()).isEqualTo(1);
+        reader.rotate();
+        assertThat(reader.current().keyId()).isNotIn(firstId, secondId);
+        assertThat(files()).filteredOn(name -> name.startsWith("current-")).hasSize(1);
+        reader.destroy();
+    }
+}
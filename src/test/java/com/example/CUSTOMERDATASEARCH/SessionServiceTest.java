@@ -0,0 +1,60 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionServiceTest {
+
+    private static final long MINUTE = 60_000;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final SessionService sessions = new SessionService(
+            Duration.ofMinutes(30), Duration.ofSeconds(5), now::get, false);
+    private final SecretKey key = new SecretKeySpec(new byte[32], "AES");
+
+    private void advance(long millis) {
+        now.addAndGet(millis);
+        sessions.cleanupExpiredSessions();
+    }
+
+    @Test
+    void sweepExpiresIdleSessionsAndKeepsUsedOnes() {
+        sessions.storeSession("idle", key);
+        sessions.storeSession("busy", key);
+        sessions.storeSession("closed", key);
+        sessions.removeSession("closed");
+        assertThat(sessions.getActiveSessionCount()).isEqualTo(2);
+
+        advance(20 * MINUTE);
+        assertThat(sessions.getSessionKey("busy")).isSameAs(key);
+
+        advance(11 * MINUTE);
+        assertThat(sessions.getActiveSessionCount()).isEqualTo(1);
+        assertThat(sessions.getSessionKey("idle")).isNull();
+        assertThat(sessions.getSessionKey("busy")).isSameAs(key);
+
+        advance(31 * MINUTE);
+        assertThat(sessions.getActiveSessionCount()).isZero();
+        assertThat(sessions.getSessionKey("busy")).isNull();
+    }
+
+    @Test
+    void lookupRejectsExpiredSessionBeforeTheSweep() {
+        sessions.storeSession("s", key);
+        sessions.storeSession("s", key);
+        assertThat(sessions.getActiveSessionCount()).isEqualTo(1);
+
+        now.addAndGet(30 * MINUTE + 1);
+        assertThat(sessions.getSessionKey("s")).isNull();
+        assertThat(sessions.getActiveSessionCount()).isZero();
+
+        advance(MINUTE);
+        assertThat(sessions.getActiveSessionCount()).isZero();
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionTokenSealerTest {
+
+    private static final long MINUTE = 60_000;
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000);
+    private final byte[] secret = new byte[32];
+    private final SecretKey key = new SecretKeySpec(new byte[] {
+            1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16}, "AES");
+
+    private SessionService node() {
+        SessionTokenSealer sealer = new SessionTokenSealer(
+                secret, Duration.ofMinutes(10), Duration.ofMinutes(30), 100, now::get);
+        return new SessionService(Duration.ofMinutes(30), Duration.ofSeconds(5), now::get, false, sealer);
+    }
+
+    @Test
+    void anyNodeWithTheSecretOpensTheTokenUntilItExpires() {
+        SessionService first = node();
+        SessionService second = node();
+
+        String token = first.createSession(key);
+        assertThat(token).startsWith(SessionTokenSealer.TOKEN_PREFIX);
+        assertThat(first.getActiveSessionCount()).isZero();
+        assertThat(second.getSessionKey(token).getEncoded()).isEqualTo(key.getEncoded());
+
+        // Sealed two rotations ago, still inside its lifetime
+        now.addAndGet(29 * MINUTE);
+        assertThat(node().getSessionKey(token)).isNotNull();
+
+        now.addAndGet(MINUTE);
+        assertThat(second.getSessionKey(token)).isNull();
+        assertThat(node().getSessionKey(token)).isNull();
+    }
+
+    @Test
+    void rejectsRevokedTamperedAndForeignTokens() {
+        SessionService sessions = node();
+        String token = sessions.createSession(key);
+        String other = sessions.createSession(key);
+
+        sessions.removeSession(token);
+        assertThat(sessions.getSessionKey(token)).isNull();
+        assertThat(sessions.getSessionKey(other)).isNotNull();
+
+        char[] chars = other.toCharArray();
+        int middle = chars.length / 2;
+        chars[middle] = chars[middle] == 'A' ? 'B' : 'A';
+        assertThat(sessions.getSessionKey(new String(chars))).isNull();
+
+        Arrays.fill(secret, (byte) 7);
+        assertThat(node().getSessionKey(other)).isNull();
+    }
+
+    @Test
+    void acceptsTokensFromANodeOneRotationAhead() {
+        // Just past a rotation on the sealing node, just before it on the other
+        now.set(1667 * 10 * MINUTE + 500);
+        String token = node().createSession(key);
+        SessionTokenSealer behind = new SessionTokenSealer(
+                secret, Duration.ofMinutes(10), Duration.ofMinutes(30), 100, () -> now.get() - 1000);
+        assertThat(behind.unseal(token)).isNotNull();
+
+        SessionTokenSealer farBehind = new SessionTokenSealer(
+                secret, Duration.ofMinutes(10), Duration.ofMinutes(30), 100, () -> now.get() - 11 * MINUTE);
+        assertThat(farBehind.unseal(token)).isNull();
+    }
+}
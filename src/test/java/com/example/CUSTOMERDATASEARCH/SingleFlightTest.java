@@ -0,0 +1,67 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<SingleFlight.Outcome<String>>> outcomes = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                outcomes.add(pool.submit(() -> flights.execute("42|national id", () -> {
+                    loads.incrementAndGet();
+                    release.await();
+                    return "pdf";
+                })));
+            }
+            while (flights.getLeaderCount() + flights.getFollowerCount() < callers) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            int shared = 0;
+            for (Future<SingleFlight.Outcome<String>> outcome : outcomes) {
+                assertThat(outcome.get(5, TimeUnit.SECONDS).getValue()).isEqualTo("pdf");
+                shared += outcome.get().isShared() ? 1 : 0;
+            }
+            assertThat(loads.get()).isEqualTo(1);
+            assertThat(shared).isEqualTo(callers - 1);
+            assertThat(flights.getInFlightCount()).isZero();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void failuresAreNotHandedToLaterCallers() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<>();
+
+        assertThatThrownBy(() -> flights.execute("1", () -> {
+            throw new IOException("upstream down");
+        })).isInstanceOf(IOException.class);
+
+        SingleFlight.Outcome<String> retry = flights.execute("1", () -> "pdf");
+        assertThat(retry.getValue()).isEqualTo("pdf");
+        assertThat(retry.isShared()).isFalse();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamBytesDecoderTest {
+
+    private final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+
+    private LaserFicheClient.FetchResult decode(String json, int sliceSize) throws IOException {
+        StreamBytesDecoder decoder = new StreamBytesDecoder(chunk ->
+                decoded.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining()));
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        for (int off = 0; off < bytes.length; off += sliceSize) {
+            decoder.feed(ByteBuffer.wrap(bytes, off, Math.min(sliceSize, bytes.length - off)));
+        }
+        return decoder.finish();
+    }
+
+    @Test
+    void decodesStreamBytesSplitAtEveryOffset() throws IOException {
+        byte[] pdf = new byte[100_003];
+        new Random(7).nextBytes(pdf);
+        // Escaped slashes and a trailing nested value, as some serializers produce
+        String base64 = Base64.getEncoder().encodeToString(pdf).replace("/", "\\/");
+        String json = "{ \"entryId\": 42, \"RESPONSECODE\": \"200\", \"respondMessage\": \"Caf\\u00e9 \\\"ok\\\"\","
+                + " \"StreamBytes\": \"" + base64 + "\", \"Extra\": {\"a\": [1, \"}\"]} }";
+
+        for (int slice : new int[] { 1, 3, 4096 }) {
+            decoded.reset();
+            LaserFicheClient.FetchResult result = decode(json, slice);
+            assertThat(decoded.toByteArray()).isEqualTo(pdf);
+            assertThat(result.getBytesWritten()).isEqualTo(pdf.length);
+            assertThat(result.getEntryId()).isEqualTo("42");
+            assertThat(result.getRespondMessage()).isEqualTo("Café \"ok\"");
+            assertThat(result.hasDocument()).isTrue();
+        }
+    }
+
+    @Test
+    void skipsStreamBytesAfterFailingResponseCode() throws IOException {
+        LaserFicheClient.FetchResult result = decode(
+                "{\"ResponseCode\":\"404\",\"RespondMessage\":\"Not found\",\"StreamBytes\":\"JVBERi0=\"}", 5);
+
+        assertThat(decoded.size()).isZero();
+        assertThat(result.getResponseCode()).isEqualTo("404");
+        assertThat(result.hasDocument()).isFalse();
+    }
+
+    @Test
+    void decodesUtf8StringsLikeTheBlockingClient() throws IOException {
+        String message = "Dokument nicht gefunden: Müller – 文書 😀";
+        for (int slice : new int[] { 1, 2, 7 }) {
+            LaserFicheClient.FetchResult result = decode(
+                    "{\"ResponseCode\":\"404\",\"RespondMessage\":\"" + message + " \\ud83d\\ude00\"}", slice);
+            assertThat(result.getRespondMessage()).isEqualTo(message + " 😀");
+        }
+
+        assertThatThrownBy(() -> decode("{\"RespondMessage\":\"\\u00zz\"}", 4))
+                .isInstanceOf(IOException.class).hasMessageContaining("\\u escape");
+        assertThatThrownBy(() -> decode("{\"RespondMessage\":\"\\x\"}", 4))
+                .isInstanceOf(IOException.class);
+        // A two-byte sequence cut short by an ASCII byte
+        byte[] truncated = "{\"RespondMessage\":\"M\u00c3u\"}".getBytes(StandardCharsets.ISO_8859_1);
+        assertThatThrownBy(() -> new StreamBytesDecoder(chunk -> { }).feed(ByteBuffer.wrap(truncated)))
+                .isInstanceOf(IOException.class).hasMessageContaining("UTF-8");
+    }
+
+    @Test
+    void rejectsTruncatedOrCorruptResponses() {
+        assertThatThrownBy(() -> decode("{\"ResponseCode\":\"200\",\"StreamBytes\":\"JVBE", 8))
+                .isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> decode("{\"StreamBytes\":\"JVB*\"}", 8))
+                .isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.CUSTOMERDATASEARCH;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives many concurrent downloads against a deliberately slow stand-in
+ * Laserfiche endpoint, on the platform-thread Tomcat pool, on virtual threads
+ * and on the non-blocking async path, and reports how many were in progress
+ * at the same time and how many platform threads the JVM needed.
+ *
+ * Not part of the normal build; run with {@code -Dloadtest=true}.
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class VirtualThreadLoadTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 400);
+    private static final int UPSTREAM_DELAY_MS = Integer.getInteger("loadtest.upstreamDelayMs", 1000);
+    private static final int PLATFORM_THREADS = Integer.getInteger("loadtest.platformThreads", 50);
+
+    private static HttpServer upstream;
+    private static byte[] responseBody;
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicInteger peakInFlight = new AtomicInteger();
+
+    @BeforeAll
+    static void startSlowUpstream() throws Exception {
+        byte[] pdf;
+        try (InputStream in = VirtualThreadLoadTest.class.getResourceAsStream("/pdfs/customer1.pdf")) {
+            pdf = in.readAllBytes();
+        }
+        responseBody = ("{\"EntryID\":\"1\",\"ResponseCode\":\"200\",\"RespondMessage\":\"Success\",\"StreamBytes\":\""
+                + Base64.getEncoder().encodeToString(pdf) + "\"}").getBytes(StandardCharsets.US_ASCII);
+
+        upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1000);
+        upstream.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        upstream.createContext("/GetDocument", exchange -> {
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try (exchange) {
+                exchange.getRequestBody().readAllBytes();
+                Thread.sleep(UPSTREAM_DELAY_MS);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, responseBody.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(responseBody);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        upstream.start();
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        if (upstream != null) {
+            upstream.stop(0);
+        }
+    }
+
+    @Test
+    void virtualThreadsSustainMoreConcurrentSlowDownloads() throws Exception {
+        Report platform = run("platform");
+        Report virtual = run("virtual");
+        Report async = run("async");
+
+        System.out.printf("%n%-9s %11s %9s %10s %9s %9s %15s %12s%n",
+                "mode", "concurrency", "succeeded", "wall(ms)", "p50(ms)", "p99(ms)", "peak upstream", "peak threads");
+        for (Report report : List.of(platform, virtual, async)) {
+            System.out.printf("%-9s %11d %9d %10d %9d %9d %15d %12d%n", report.mode, CONCURRENCY,
+                    report.succeeded, report.wallMillis, report.p50, report.p99, report.peakUpstream,
+                    report.peakThreads);
+        }
+
+        assertThat(virtual.succeeded).isEqualTo(CONCURRENCY);
+        assertThat(async.succeeded).isEqualTo(CONCURRENCY);
+        assertThat(platform.peakUpstream).isLessThanOrEqualTo(PLATFORM_THREADS);
+        assertThat(virtual.peakUpstream).isGreaterThan(PLATFORM_THREADS);
+        assertThat(async.peakUpstream).isGreaterThan(PLATFORM_THREADS);
+    }
+
+    private Report run(String mode) throws Exception {
+        peakInFlight.set(0);
+        // Command-line arguments so they win over application.properties
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(CustomerdatasearchApplication.class)
+                .run("--server.port=0",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.com.example.CUSTOMERDATASEARCH=WARN",
+                        "--spring.threads.virtual.enabled=" + mode.equals("virtual"),
+                        "--pdf.download.async.enabled=" + mode.equals("async"),
+                        "--server.tomcat.threads.max=" + PLATFORM_THREADS,
+                        "--server.tomcat.accept-count=" + CONCURRENCY,
+                        "--laserfiche.api.url=http://127.0.0.1:" + upstream.getAddress().getPort() + "/GetDocument",
+                        "--http.client.max.connections=" + CONCURRENCY,
+                        "--http.client.max.connections.per.route=" + CONCURRENCY,
+                        // Admit every download at once, so the mode alone bounds concurrency
+                        "--laserfiche.limit.initial=" + CONCURRENCY,
+                        "--laserfiche.limit.max=" + CONCURRENCY,
+                        "--pdf.memory.budget.max-queue=" + CONCURRENCY,
+                        "--pdf.memory.budget.max-wait=2m",
+                        // Every request must reach the slow upstream
+                        "--pdf.cache.enabled=false");
+        try {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(256);
+            SecretKey key = generator.generateKey();
+            String sessionId = UUID.randomUUID().toString();
+            context.getBean(SessionService.class).storeSession(sessionId, key);
+
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+            // Virtual threads are not counted, so this is the platform threads the mode needs
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            threads.resetPeakThreadCount();
+
+            List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+            AtomicInteger succeeded = new AtomicInteger();
+            List<CompletableFuture<?>> calls = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < CONCURRENCY; i++) {
+                // Distinct CaseIDs so concurrent fetches are not coalesced
+                URI uri = URI.create("http://127.0.0.1:" + port + "/customerdatasearch/api/customers/download/"
+                        + encrypt(key, String.valueOf(i + 1)) + "?sessionId=" + sessionId);
+                long sent = System.nanoTime();
+                calls.add(client.sendAsync(HttpRequest.newBuilder(uri).timeout(Duration.ofMinutes(2)).build(),
+                                HttpResponse.BodyHandlers.ofByteArray())
+                        .thenAccept(response -> {
+                            latencies.add((System.nanoTime() - sent) / 1_000_000);
+                            if (response.statusCode() == 200 && response.body().length > 0) {
+                                succeeded.incrementAndGet();
+                            }
+                        }));
+            }
+            CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).join();
+            long wall = (System.nanoTime() - start) / 1_000_000;
+
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            return new Report(mode, succeeded.get(), wall, sorted.get(sorted.size() / 2),
+                    sorted.get((int) (sorted.size() * 0.99)), peakInFlight.get(), threads.getPeakThreadCount());
+        } finally {
+            context.close();
+        }
+    }
+
+    private static String encrypt(SecretKey key, String customerId) throws Exception {
+        byte[] iv = new byte[12];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        byte[] cipherText = cipher.doFinal(customerId.getBytes(StandardCharsets.UTF_8));
+        byte[] combined = new byte[iv.length + cipherText.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(cipherText, 0, combined, iv.length, cipherText.length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(combined);
+    }
+
+    private record Report(String mode, int succeeded, long wallMillis, long p50, long p99, int peakUpstream,
+                          int peakThreads) {}
+}